@@ -1,14 +1,28 @@
 package com.ecommerce.auth_service;
 
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.ecommerce.common.JwtClaimsVerifier;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -22,13 +36,19 @@ import lombok.extern.slf4j.Slf4j;
 public class AuthController {
     
     private final AuthService authService;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final BatchTokenValidator batchTokenValidator;
+    
+    // Set by the proxy in front of the service, empty to use the socket address
+    @Value("${auth.rate-limit.client-ip-header:X-Real-IP}")
+    private String clientIpHeader;
     
     @PostMapping(value="/login", consumes = {MediaType.APPLICATION_JSON_VALUE,MediaType.TEXT_PLAIN_VALUE}, 
             produces = MediaType.APPLICATION_JSON_VALUE)
     //@CircuitBreaker(name = "authService", fallbackMethod = "loginFallback")
-    public ResponseEntity<AuthResponse> login( @RequestBody AuthRequest request) {
+    public ResponseEntity<AuthResponse> login( @RequestBody AuthRequest request, HttpServletRequest httpRequest) {
         log.info("Login request for user: {}", request.getUsername());
-        AuthResponse response = authService.authenticate(request);
+        AuthResponse response = authService.authenticate(request, clientIp(httpRequest));
         return ResponseEntity.ok(response);
     }
     
@@ -40,8 +60,8 @@ public class AuthController {
     
     @PostMapping(value="/register",consumes = {MediaType.APPLICATION_JSON_VALUE,MediaType.TEXT_PLAIN_VALUE}, 
             produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<User> register( @RequestBody User user) {
-        User registeredUser = authService.register(user);
+    public ResponseEntity<User> register( @RequestBody User user, HttpServletRequest httpRequest) {
+        User registeredUser = authService.register(user, clientIp(httpRequest));
         return ResponseEntity.ok(registeredUser);
     }
     
@@ -53,6 +73,30 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Accepts a JSON array of tokens, or one token per line as NDJSON, and streams one
+     * ValidateTokenResponse per token back as NDJSON in the same order. Admins only: a batch
+     * occupies the verification pool, which logins and refreshes share.
+     */
+    @PostMapping(value="/validate/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> validateTokens(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            HttpServletRequest httpRequest) {
+        Optional<JwtPrincipal> caller = jwtTokenProvider.verifyAccessToken(bearerToken(authorization));
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!caller.get().getRoles().contains(JwtClaimsVerifier.ADMIN_ROLE)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(httpRequest.getContentType()));
+        StreamingResponseBody body = out -> batchTokenValidator.validate(httpRequest.getInputStream(), ndjson, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
     @PostMapping(value="/refresh",consumes = {MediaType.APPLICATION_JSON_VALUE,MediaType.TEXT_PLAIN_VALUE}, 
             produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<AuthResponse> refreshToken(
@@ -61,6 +105,45 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
     
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody(required = false) RefreshTokenRequest request) {
+        boolean revoked = authService.logout(bearerToken(authorization),
+                request != null ? request.getRefreshToken() : null);
+        return revoked ? ResponseEntity.noContent().build() : ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+    
+    @PostMapping("/logout-all")
+    public ResponseEntity<Void> logoutEverywhere(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        boolean revoked = authService.logoutEverywhere(bearerToken(authorization));
+        return revoked ? ResponseEntity.noContent().build() : ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+    
+    private String bearerToken(String authorization) {
+        return authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+    }
+    
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                .body(jwtTokenProvider.getJwks());
+    }
+    
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<Void> throttled(LoginThrottledException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .build();
+    }
+    
+    private String clientIp(HttpServletRequest request) {
+        String forwarded = clientIpHeader.isEmpty() ? null : request.getHeader(clientIpHeader);
+        return forwarded != null && !forwarded.isBlank() ? forwarded.trim() : request.getRemoteAddr();
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Auth Service is healthy");
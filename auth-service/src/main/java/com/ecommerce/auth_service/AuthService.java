@@ -28,11 +28,19 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final CustomAuthenticationManager customAuthenticationManager;
     private final JwtTokenProvider tokenProvider;
+    private final PasswordHashingPool passwordHashingPool;
+    private final LoginRateLimiter loginRateLimiter;
+    private final TokenRevocationService tokenRevocationService;
+    private final UserSecurityCache userSecurityCache;
     
     //@CircuitBreaker(name = "authService", fallbackMethod = "authenticateFallback")
-    public AuthResponse authenticate(AuthRequest request) {
+    public AuthResponse authenticate(AuthRequest request, String clientIp) {
     	log.info("Authenticating user: {}", request.getUsername());
     	
+    	// Refuse throttled logins before touching the database or the hashing pool
+    	loginRateLimiter.checkLogin(request.getUsername(), clientIp);
+    	passwordHashingPool.admit();
+    	
     	Authentication authentication = null;
     	
     	try {
@@ -82,7 +90,10 @@ public class AuthService {
     
     
     @Transactional
-    public User register(User user) {
+    public User register(User user, String clientIp) {
+        loginRateLimiter.checkIp(clientIp);
+        passwordHashingPool.admit();
+        
         if (userRepository.existsByUsername(user.getUsername())) {
             throw new RuntimeException("Username already exists");
         }
@@ -91,7 +102,7 @@ public class AuthService {
             throw new RuntimeException("Email already exists");
         }
         
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordHashingPool.encode(user.getPassword()));
         
         if (user.getRoles().isEmpty()) {
             user.getRoles().add("ROLE_USER");
@@ -101,38 +112,31 @@ public class AuthService {
     }
     
     public ValidateTokenResponse validateToken(String token) {
-        try {
-            if (tokenProvider.validateToken(token)) {
-                String username = tokenProvider.getUsernameFromToken(token);
-                List<String> roles = tokenProvider.getRolesFromToken(token);
-                
-                return new ValidateTokenResponse(
+        return tokenProvider.verifyAccessToken(token)
+                .map(principal -> new ValidateTokenResponse(
                         true,
-                        username,
-                        roles,
+                        principal.getSubject(),
+                        principal.getRoles(),
                         "Token is valid"
-                );
-            }
-        } catch (Exception e) {
-            log.error("Token validation failed", e);
-        }
-        
-        return new ValidateTokenResponse(
-                false,
-                null,
-                null,
-                "Token is invalid"
-        );
+                ))
+                .orElseGet(() -> new ValidateTokenResponse(
+                        false,
+                        null,
+                        null,
+                        "Token is invalid"
+                ));
     }
     
     public AuthResponse refreshToken(String refreshToken) {
-        if (!tokenProvider.validateToken(refreshToken)) {
-            throw new RuntimeException("Invalid refresh token");
-        }
+        String username = tokenProvider.verifyRefreshToken(refreshToken)
+                .map(JwtPrincipal::getSubject)
+                .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
         
-        String username = tokenProvider.getUsernameFromToken(refreshToken);
-        User user = userRepository.findByUsername(username)
+        UserSecurity user = userSecurityCache.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        if (!user.isEnabled()) {
+            throw new RuntimeException("Account is disabled");
+        }
         
         Authentication authentication = new UsernamePasswordAuthenticationToken(
                 user.getUsername(),
@@ -155,6 +159,28 @@ public class AuthService {
         );
     }
     
+    public boolean logout(String accessToken, String refreshToken) {
+        JwtPrincipal principal = tokenProvider.verifyAccessToken(accessToken).orElse(null);
+        if (principal == null) {
+            return false;
+        }
+        tokenRevocationService.revokeToken(principal);
+        
+        tokenProvider.verifyRefreshToken(refreshToken)
+                .filter(refresh -> refresh.getSubject().equals(principal.getSubject()))
+                .ifPresent(tokenRevocationService::revokeToken);
+        return true;
+    }
+    
+    public boolean logoutEverywhere(String accessToken) {
+        return tokenProvider.verifyAccessToken(accessToken)
+                .map(principal -> {
+                    tokenRevocationService.revokeAllTokens(principal.getSubject());
+                    return true;
+                })
+                .orElse(false);
+    }
+    
     private Throwable getRootCause(Throwable throwable) {
         Throwable rootCause = throwable;
         while (rootCause.getCause() != null) {
@@ -2,10 +2,14 @@ package com.ecommerce.auth_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+
+import com.ecommerce.common.TokenRevocationList;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 
 @SpringBootApplication
+@Import({TokenRevocationList.class})
 public class AuthServiceApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,149 @@
+package com.ecommerce.auth_service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Validates a stream of tokens and writes one {@link ValidateTokenResponse} per input
+ * token, in input order, as newline-delimited JSON. Tokens are read incrementally and
+ * verified on a pool sized to the cores, with a bounded window of in-flight results so
+ * neither side of the stream is buffered whole. Repeated tokens in a batch are verified once.
+ */
+@Component
+@Slf4j
+public class BatchTokenValidator {
+
+	private static final byte[] NEWLINE = { '\n' };
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AuthService authService;
+	private final ExecutorService executor;
+	private final int maxTokens;
+	private final int window;
+
+	public BatchTokenValidator(AuthService authService,
+			@Value("${auth.validate.batch.threads:0}") int threads,
+			@Value("${auth.validate.batch.max-tokens:10000}") int maxTokens,
+			@Value("${auth.validate.batch.window:512}") int window) {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		AtomicInteger threadCount = new AtomicInteger();
+		this.authService = authService;
+		this.maxTokens = maxTokens;
+		this.window = window;
+		this.executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+			Thread thread = new Thread(runnable, "token-validation-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * @param ndjson one raw token per line when true, otherwise a JSON array of strings
+	 */
+	public void validate(InputStream in, boolean ndjson, OutputStream out) throws IOException {
+		TokenSource source = ndjson ? lines(in) : jsonArray(in);
+		Map<String, CompletableFuture<ValidateTokenResponse>> unique = new HashMap<>();
+		Deque<CompletableFuture<ValidateTokenResponse>> pending = new ArrayDeque<>();
+
+		int count = 0;
+		try {
+			String token;
+			while ((token = source.next()) != null) {
+				if (count++ == maxTokens) {
+					drain(pending, out);
+					write(out, new ValidateTokenResponse(false, null, null, "Batch limit of " + maxTokens + " tokens exceeded"));
+					break;
+				}
+				pending.add(unique.computeIfAbsent(token,
+						key -> CompletableFuture.supplyAsync(() -> authService.validateToken(key), executor)));
+				if (pending.size() >= window) {
+					// Head of the window is usually done by now, write it and keep reading
+					write(out, pending.poll().join());
+				}
+			}
+			drain(pending, out);
+		} catch (IOException e) {
+			log.warn("Batch token validation aborted after {} tokens: {}", count, e.getMessage());
+			pending.forEach(result -> result.cancel(false));
+			throw e;
+		}
+		out.flush();
+		log.debug("Validated {} tokens ({} unique)", count, unique.size());
+	}
+
+	private void drain(Deque<CompletableFuture<ValidateTokenResponse>> pending, OutputStream out) throws IOException {
+		CompletableFuture<ValidateTokenResponse> result;
+		while ((result = pending.poll()) != null) {
+			write(out, result.join());
+		}
+	}
+
+	private void write(OutputStream out, ValidateTokenResponse response) throws IOException {
+		out.write(objectMapper.writeValueAsBytes(response));
+		out.write(NEWLINE);
+	}
+
+	private TokenSource lines(InputStream in) {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		return () -> {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty()) {
+					return line;
+				}
+			}
+			return null;
+		};
+	}
+
+	private TokenSource jsonArray(InputStream in) throws IOException {
+		JsonParser parser = objectMapper.getFactory().createParser(in);
+		if (parser.nextToken() != JsonToken.START_ARRAY) {
+			throw new IOException("Expected a JSON array of tokens");
+		}
+		return () -> {
+			JsonToken next = parser.nextToken();
+			if (next == null || next == JsonToken.END_ARRAY) {
+				return null;
+			}
+			if (next == JsonToken.VALUE_STRING) {
+				return parser.getText();
+			}
+			// Anything but a string is answered as an invalid token
+			parser.skipChildren();
+			return "";
+		};
+	}
+
+	private interface TokenSource {
+		String next() throws IOException;
+	}
+}
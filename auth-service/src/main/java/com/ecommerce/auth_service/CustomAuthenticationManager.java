@@ -9,7 +9,6 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import lombok.RequiredArgsConstructor;
@@ -19,8 +18,8 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CustomAuthenticationManager implements AuthenticationManager {
 
-	private final UserRepository userRepository;
-	private final PasswordEncoder passwordEncoder;
+	private final UserSecurityCache userSecurityCache;
+	private final PasswordHashingPool passwordHashingPool;
 
 	@Override
 	public Authentication authenticate(Authentication authentication) throws AuthenticationException {
@@ -29,12 +28,12 @@ public class CustomAuthenticationManager implements AuthenticationManager {
 
 		log.info("Attempting authentication for user: {}", username);
 
-		User user = userRepository.findByUsername(username).orElseThrow(() -> {
+		UserSecurity user = userSecurityCache.findByUsername(username).orElseThrow(() -> {
 			log.error("User not found: {}", username);
 			return new BadCredentialsException("Invalid username or password");
 		});
 
-		if (!passwordEncoder.matches(password, user.getPassword())) {
+		if (!passwordHashingPool.matches(password, user.getPasswordHash())) {
 			log.error("Invalid password for user: {}", username);
 			throw new BadCredentialsException("Invalid username or password");
 		}
@@ -2,6 +2,7 @@ package com.ecommerce.auth_service;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -39,9 +40,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 		 
 		String token = getJwtFromRequest(request);
 		
-		if(token != null && jwtTokenProvider.validateToken(token)) {
-			String userName = jwtTokenProvider.getUsernameFromToken(token);
-			List<String> roles = jwtTokenProvider.getRolesFromToken(token);
+		Optional<JwtPrincipal> principal = jwtTokenProvider.verifyAccessToken(token);
+		if(principal.isPresent()) {
+			String userName = principal.get().getSubject();
+			List<String> roles = principal.get().getRoles();
 			
 			List<SimpleGrantedAuthority> authorities = roles.stream()
                     .map(SimpleGrantedAuthority::new)
@@ -0,0 +1,30 @@
+package com.ecommerce.auth_service;
+
+import java.time.Instant;
+import java.util.List;
+
+import com.ecommerce.common.JwtClaimsVerifier;
+
+import lombok.Value;
+
+/**
+ * Result of verifying a token once: everything callers need from the claims,
+ * so the same token never has to be parsed and HMAC-checked again.
+ */
+@Value
+public class JwtPrincipal {
+    String id;
+    String subject;
+    List<String> roles;
+    Instant issuedAt;
+    Instant expiresAt;
+    String tokenUse;
+
+    public boolean isRefreshToken() {
+        return JwtClaimsVerifier.REFRESH_TOKEN.equals(tokenUse);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+}
@@ -1,33 +1,47 @@
 package com.ecommerce.auth_service;
 
-import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
-import javax.crypto.SecretKey;
-
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import com.ecommerce.common.JwtClaimsVerifier;
+import com.ecommerce.common.TokenRevocationList;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.UnsupportedJwtException;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class JwtTokenProvider {
 
-	@Value("${jwt.secret}")
-	private String jwtSecret;
+	private final JwtSigningKeys signingKeys;
+	private final TokenRevocationList revocationList;
 	
 	@Value("${jwt.expiration}")
     private long jwtExpiration;
@@ -35,10 +49,59 @@ public class JwtTokenProvider {
     @Value("${jwt.refresh-expiration}")
     private long refreshExpiration;
     
-    private SecretKey getSigningKey() {
-    	return Keys.hmacShaKeyFor(
-    	        jwtSecret.getBytes(StandardCharsets.UTF_8)
-    	    );
+    @Value("${jwt.validation-cache.max-size:10000}")
+    private int validationCacheMaxSize;
+    
+    private JwtParser jwtParser;
+    
+    // Verified tokens, each dropped once the token itself expires; at max-size Caffeine evicts in constant time
+    private Cache<String, JwtPrincipal> verifiedTokens;
+    
+    @PostConstruct
+    public void init() {
+    	verifiedTokens = Caffeine.newBuilder()
+    			.maximumSize(validationCacheMaxSize)
+    			.expireAfter(new Expiry<String, JwtPrincipal>() {
+    				@Override
+    				public long expireAfterCreate(String token, JwtPrincipal principal, long currentTime) {
+    					return Math.max(0, Duration.between(Instant.now(), principal.getExpiresAt()).toNanos());
+    				}
+    				
+    				@Override
+    				public long expireAfterUpdate(String token, JwtPrincipal principal, long currentTime, long currentDuration) {
+    					return expireAfterCreate(token, principal, currentTime);
+    				}
+    				
+    				@Override
+    				public long expireAfterRead(String token, JwtPrincipal principal, long currentTime, long currentDuration) {
+    					return currentDuration;
+    				}
+    			})
+    			.build();
+    	jwtParser = Jwts.parserBuilder()
+    			.setSigningKeyResolver(new SigningKeyResolverAdapter() {
+    				@Override
+    				@SuppressWarnings("rawtypes")
+    				public Key resolveSigningKey(JwsHeader header, Claims claims) {
+    					Key key = signingKeys.getVerificationKey(header.getKeyId());
+    					if (key == null) {
+    						throw new JwtException("Unknown signing key: " + header.getKeyId());
+    					}
+    					return key;
+    				}
+    			})
+    			.build();
+    }
+    
+    private JwtBuilder sign(JwtBuilder builder) {
+    	if (signingKeys.isAsymmetric()) {
+    		builder.setHeaderParam(JwsHeader.KEY_ID, signingKeys.getActiveKid());
+    	}
+    	return builder.signWith(signingKeys.getSigningKey(), signingKeys.getAlgorithm());
+    }
+    
+    public Map<String, Object> getJwks() {
+    	return signingKeys.getJwks();
     }
     
     public String generateToken(Authentication authentication) {
@@ -49,12 +112,13 @@ public class JwtTokenProvider {
     	
     	List<String> roles = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
     	
-    	return Jwts.builder()
+    	return sign(Jwts.builder()
+    			.setId(UUID.randomUUID().toString())
     			.setSubject(userName)
     			.claim("roles",roles)
+    			.claim(JwtClaimsVerifier.TOKEN_USE_CLAIM, JwtClaimsVerifier.ACCESS_TOKEN)
     			.setExpiration(exparyDate)
-    			.setIssuedAt(now)
-    			.signWith(getSigningKey(),SignatureAlgorithm.HS256)
+    			.setIssuedAt(now))
     			.compact();
     }
     
@@ -62,55 +126,112 @@ public class JwtTokenProvider {
     	
     	String userName = authentication.getName();
     	Date now = new Date();
-    	Date exparyDate = new Date(now.getTime() + jwtExpiration);
+    	Date exparyDate = new Date(now.getTime() + refreshExpiration);
     	
-    	return Jwts.builder()
+    	return sign(Jwts.builder()
+    			.setId(UUID.randomUUID().toString())
     			.setSubject(userName)
+    			.claim(JwtClaimsVerifier.TOKEN_USE_CLAIM, JwtClaimsVerifier.REFRESH_TOKEN)
     			.setIssuedAt(now)
-    			.setExpiration(exparyDate)
-    			.signWith(getSigningKey(),SignatureAlgorithm.HS256)
+    			.setExpiration(exparyDate))
     			.compact();
     }
     
-    public String getUsernameFromToken(String token) {
+    /**
+     * Verifies the token and extracts subject, roles and expiry in a single parse.
+     * Results are cached until the token expires, so repeated validation of the
+     * same token skips the signature check entirely.
+     */
+    public Optional<JwtPrincipal> verifyAndExtract(String token) {
+    	if (token == null || token.isEmpty()) {
+    		return Optional.empty();
+    	}
     	
-    	Claims claims = Jwts.parserBuilder()
-    			        .setSigningKey(getSigningKey())
-    			        .build()
-    			        .parseClaimsJws(token)
-    			        .getBody();
-    	return claims.getSubject();
+    	Instant now = Instant.now();
+    	JwtPrincipal principal = verifiedTokens.getIfPresent(token);
+    	if (principal != null) {
+    		if (principal.isExpired(now)) {
+    			verifiedTokens.invalidate(token);
+    			log.error("Expired JWT token");
+    			return Optional.empty();
+    		}
+    	} else {
+    		try {
+    			principal = toPrincipal(jwtParser.parseClaimsJws(token).getBody());
+    		} catch (ExpiredJwtException ex) {
+    	        log.error("Expired JWT token");
+    	        return Optional.empty();
+    	    } catch (MalformedJwtException ex) {
+    	        log.error("Invalid JWT token");
+    	        return Optional.empty();
+    	    } catch (UnsupportedJwtException ex) {
+    	        log.error("Unsupported JWT token");
+    	        return Optional.empty();
+    	    } catch (JwtException ex) {
+    	        log.error("JWT token rejected: {}", ex.getMessage());
+    	        return Optional.empty();
+    	    } catch (IllegalArgumentException ex) {
+    	        log.error("JWT claims string is empty");
+    	        return Optional.empty();
+    	    }
+    		cache(token, principal);
+    	}
+    	
+    	// Checked on every call, revocations also apply to already cached tokens
+    	if (revocationList.isRevoked(principal.getId(), principal.getSubject(), principal.getIssuedAt())) {
+    		log.warn("Revoked JWT token for user: {}", principal.getSubject());
+    		return Optional.empty();
+    	}
+    	return Optional.of(principal);
+    }
+    
+    // Refresh tokens only work at /refresh and logout, never as credentials for a request
+    public Optional<JwtPrincipal> verifyAccessToken(String token) {
+    	return verifyAndExtract(token).filter(principal -> !principal.isRefreshToken());
+    }
+    
+    public Optional<JwtPrincipal> verifyRefreshToken(String token) {
+    	return verifyAndExtract(token).filter(JwtPrincipal::isRefreshToken);
+    }
+    
+    public String getUsernameFromToken(String token) {
+    	return parsePrincipal(token).getSubject();
     }
     
-    @SuppressWarnings("unchecked")
 	public List<String> getRolesFromToken(String token){
-    	
-    	Claims claims = Jwts.parserBuilder()
-    			        .setSigningKey(getSigningKey())
-    			        .build()
-    			        .parseClaimsJws(token)
-    			        .getBody();
-    	
-    	return claims.get("roles",List.class);
+    	return parsePrincipal(token).getRoles();
     }
     
     public boolean validateToken(String token) {
-    	
-    	try { Jwts.parserBuilder()
-    			        .setSigningKey(getSigningKey())
-    			        .build()
-    			        .parseClaimsJws(token);
-    	   return true;
-    	
-		    } catch (MalformedJwtException ex) {
-		        log.error("Invalid JWT token");
-		    } catch (ExpiredJwtException ex) {
-		        log.error("Expired JWT token");
-		    } catch (UnsupportedJwtException ex) {
-		        log.error("Unsupported JWT token");
-		    } catch (IllegalArgumentException ex) {
-		        log.error("JWT claims string is empty");
-		    }
-		    return false;
-		    }
+    	return verifyAccessToken(token).isPresent();
+    }
+    
+    private JwtPrincipal parsePrincipal(String token) {
+    	JwtPrincipal cached = verifiedTokens.getIfPresent(token);
+    	if (cached != null && !cached.isExpired(Instant.now())) {
+    		return cached;
+    	}
+    	return toPrincipal(jwtParser.parseClaimsJws(token).getBody());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private JwtPrincipal toPrincipal(Claims claims) {
+    	List<String> roles = claims.get("roles", List.class);
+    	Date issuedAt = claims.getIssuedAt();
+    	Date expiration = claims.getExpiration();
+    	return new JwtPrincipal(
+    			claims.getId(),
+    			claims.getSubject(),
+    			roles == null ? List.of() : List.copyOf(roles),
+    			issuedAt == null ? null : issuedAt.toInstant(),
+    			expiration == null ? null : expiration.toInstant(),
+    			claims.get(JwtClaimsVerifier.TOKEN_USE_CLAIM, String.class));
+    }
+    
+    private void cache(String token, JwtPrincipal principal) {
+    	if (principal.getExpiresAt() == null) {
+    		return;
+    	}
+    	verifiedTokens.put(token, principal);
+    }
 }
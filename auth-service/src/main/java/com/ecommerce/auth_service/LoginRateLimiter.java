@@ -0,0 +1,108 @@
+package com.ecommerce.auth_service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-user and per-IP login limits, checked before any password hashing. Each key keeps
+ * a single theoretical-arrival-time (GCRA), updated with compare-and-set, so checks take
+ * no locks and cost one cache lookup and a CAS. Beyond max-tracked-keys the cache evicts
+ * rarely seen keys in constant time; new keys are still limited.
+ */
+@Component
+@Slf4j
+public class LoginRateLimiter {
+
+	private final Limit perUser;
+	private final Limit perIp;
+	private final Counter userRejectedCounter;
+	private final Counter ipRejectedCounter;
+
+	public LoginRateLimiter(MeterRegistry meterRegistry,
+			@Value("${auth.rate-limit.per-user.rate-per-minute:10}") int userRatePerMinute,
+			@Value("${auth.rate-limit.per-user.burst:5}") int userBurst,
+			@Value("${auth.rate-limit.per-ip.rate-per-minute:60}") int ipRatePerMinute,
+			@Value("${auth.rate-limit.per-ip.burst:20}") int ipBurst,
+			@Value("${auth.rate-limit.max-tracked-keys:100000}") int maxTrackedKeys) {
+		this.perUser = new Limit(userRatePerMinute, userBurst, maxTrackedKeys);
+		this.perIp = new Limit(ipRatePerMinute, ipBurst, maxTrackedKeys);
+		this.userRejectedCounter = Counter.builder("auth.login.rejected")
+				.description("Logins and registrations refused before hashing")
+				.tag("reason", "user-rate")
+				.register(meterRegistry);
+		this.ipRejectedCounter = Counter.builder("auth.login.rejected")
+				.description("Logins and registrations refused before hashing")
+				.tag("reason", "ip-rate")
+				.register(meterRegistry);
+	}
+
+	public void checkLogin(String username, String clientIp) {
+		checkIp(clientIp);
+		if (username != null && !perUser.tryAcquire(username.toLowerCase())) {
+			userRejectedCounter.increment();
+			log.warn("Login rate limit exceeded for user: {}", username);
+			throw new LoginThrottledException("user-rate", perUser.retryAfterSeconds(username.toLowerCase()));
+		}
+	}
+
+	public void checkIp(String clientIp) {
+		if (clientIp != null && !perIp.tryAcquire(clientIp)) {
+			ipRejectedCounter.increment();
+			log.warn("Login rate limit exceeded for client: {}", clientIp);
+			throw new LoginThrottledException("ip-rate", perIp.retryAfterSeconds(clientIp));
+		}
+	}
+
+	private static final class Limit {
+		private final Cache<String, AtomicLong> arrivals;
+		private final long intervalNanos;
+		private final long toleranceNanos;
+
+		private Limit(int ratePerMinute, int burst, int maxTrackedKeys) {
+			this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(ratePerMinute, 1);
+			this.toleranceNanos = intervalNanos * Math.max(burst - 1, 0);
+			// A key idle this long has its arrival time in the past, it is back to a full burst
+			// and dropping it changes nothing
+			this.arrivals = Caffeine.newBuilder()
+					.maximumSize(maxTrackedKeys)
+					.expireAfterAccess(Duration.ofNanos(toleranceNanos + intervalNanos))
+					.build();
+		}
+
+		private boolean tryAcquire(String key) {
+			long now = System.nanoTime();
+			AtomicLong arrival = arrivals.get(key, k -> new AtomicLong(now));
+
+			while (true) {
+				long current = arrival.get();
+				long next = Math.max(current, now) + intervalNanos;
+				if (next - now > toleranceNanos + intervalNanos) {
+					return false;
+				}
+				if (arrival.compareAndSet(current, next)) {
+					return true;
+				}
+			}
+		}
+
+		private long retryAfterSeconds(String key) {
+			AtomicLong arrival = arrivals.getIfPresent(key);
+			if (arrival == null) {
+				return 1;
+			}
+			long waitNanos = arrival.get() - System.nanoTime() - toleranceNanos;
+			return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+		}
+	}
+}
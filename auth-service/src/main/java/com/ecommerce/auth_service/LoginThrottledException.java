@@ -0,0 +1,19 @@
+package com.ecommerce.auth_service;
+
+import lombok.Getter;
+
+/**
+ * Login or registration refused before any password hashing, answered with 429.
+ */
+@Getter
+public class LoginThrottledException extends RuntimeException {
+
+	private final String reason;
+	private final long retryAfterSeconds;
+
+	public LoginThrottledException(String reason, long retryAfterSeconds) {
+		super("Too many requests: " + reason);
+		this.reason = reason;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+}
@@ -0,0 +1,140 @@
+package com.ecommerce.auth_service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs bcrypt on a small dedicated pool instead of the request threads. The pool has
+ * one thread per core and a bounded queue; once the queue is full new work is refused
+ * straight away, so a login burst is throttled with 429s while token validation and
+ * refresh keep their CPU.
+ */
+@Component
+@Slf4j
+public class PasswordHashingPool {
+
+	private final PasswordEncoder passwordEncoder;
+	private final ThreadPoolExecutor executor;
+	private final long maxWaitMs;
+	private final Timer matchesTimer;
+	private final Timer encodeTimer;
+	private final Timer queueWaitTimer;
+	private final MeterRegistry meterRegistry;
+
+	public PasswordHashingPool(PasswordEncoder passwordEncoder,
+			MeterRegistry meterRegistry,
+			@Value("${auth.hashing.threads:0}") int threads,
+			@Value("${auth.hashing.queue-capacity:100}") int queueCapacity,
+			@Value("${auth.hashing.max-wait-ms:5000}") long maxWaitMs) {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		AtomicInteger threadCount = new AtomicInteger();
+		this.passwordEncoder = passwordEncoder;
+		this.meterRegistry = meterRegistry;
+		this.maxWaitMs = maxWaitMs;
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet()),
+				new ThreadPoolExecutor.AbortPolicy());
+
+		this.matchesTimer = Timer.builder("auth.password.hash")
+				.description("Time spent hashing passwords on the hashing pool")
+				.tag("operation", "matches")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.encodeTimer = Timer.builder("auth.password.hash")
+				.description("Time spent hashing passwords on the hashing pool")
+				.tag("operation", "encode")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.queueWaitTimer = Timer.builder("auth.password.hash.queue.wait")
+				.description("Time hashing requests waited for a free worker")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		Gauge.builder("auth.password.hash.queue", executor, pool -> pool.getQueue().size())
+				.description("Hashing requests waiting for a worker")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Cheap check before any database or hashing work, so requests are turned away
+	 * while the queue is already full.
+	 */
+	public void admit() {
+		if (executor.getQueue().remainingCapacity() == 0) {
+			throw reject("hashing-queue-full");
+		}
+	}
+
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return submit(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+	}
+
+	public String encode(CharSequence rawPassword) {
+		return submit(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private <T> T submit(Timer timer, Callable<T> hashing) {
+		long queuedAt = System.nanoTime();
+		Future<T> result;
+		try {
+			result = executor.submit(() -> {
+				long startedAt = System.nanoTime();
+				queueWaitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+				T value = hashing.call();
+				timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+				return value;
+			});
+		} catch (RejectedExecutionException e) {
+			throw reject("hashing-queue-full");
+		}
+
+		try {
+			return result.get(maxWaitMs, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			result.cancel(true);
+			throw reject("hashing-timeout");
+		} catch (InterruptedException e) {
+			result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while hashing password", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("Password hashing failed", e.getCause());
+		}
+	}
+
+	private LoginThrottledException reject(String reason) {
+		Counter.builder("auth.login.rejected")
+				.description("Logins and registrations refused before hashing")
+				.tag("reason", reason)
+				.register(meterRegistry)
+				.increment();
+		log.warn("Rejecting password hashing request ({}, {} waiting)", reason, executor.getQueue().size());
+		return new LoginThrottledException(reason, 1);
+	}
+}
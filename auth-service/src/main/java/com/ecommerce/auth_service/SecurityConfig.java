@@ -41,6 +41,7 @@ public class SecurityConfig {
     	     .sessionManagement( session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
     	     .authorizeHttpRequests( auth -> auth
     	    		    .requestMatchers("/api/auth/**").permitAll()
+    	    		    .requestMatchers("/api/admin/**").hasRole("ADMIN")
     	                .requestMatchers("/actuator/**").permitAll()
     	                .requestMatchers("/error").permitAll()
     	    		 .anyRequest().authenticated())
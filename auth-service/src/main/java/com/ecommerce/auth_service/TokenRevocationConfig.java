@@ -0,0 +1,25 @@
+package com.ecommerce.auth_service;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+import com.ecommerce.common.TokenRevocationList;
+
+@Configuration
+public class TokenRevocationConfig {
+
+	// Compacted per key, and deleted once no token an entry could match is still valid
+	@Bean
+	public NewTopic tokenRevocationsTopic(@Value("${jwt.revocation.retention-ms:691200000}") long retentionMs) {
+		return TopicBuilder.name(TokenRevocationList.TOPIC)
+				.partitions(3)
+				.config(TopicConfig.CLEANUP_POLICY_CONFIG,
+						TopicConfig.CLEANUP_POLICY_COMPACT + "," + TopicConfig.CLEANUP_POLICY_DELETE)
+				.config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(retentionMs))
+				.build();
+	}
+}
@@ -0,0 +1,45 @@
+package com.ecommerce.auth_service;
+
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import com.ecommerce.common.TokenRevocation;
+import com.ecommerce.common.TokenRevocationList;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes revocations to the token-revocations topic that every service replicates
+ * through {@link TokenRevocationList}. Entries are applied locally first, so this
+ * instance rejects the token before the record has been consumed back.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationService {
+
+	private final KafkaTemplate<String, Object> kafkaTemplate;
+	private final TokenRevocationList revocationList;
+
+	public void revokeToken(JwtPrincipal principal) {
+		TokenRevocation revocation = new TokenRevocation(
+				principal.getId(),
+				principal.getSubject(),
+				principal.getExpiresAt() != null ? principal.getExpiresAt().toEpochMilli() : null,
+				null);
+		publish(TokenRevocationList.JTI_PREFIX + principal.getId(), revocation);
+		log.info("Revoked token {} of user: {}", principal.getId(), principal.getSubject());
+	}
+
+	public void revokeAllTokens(String subject) {
+		TokenRevocation revocation = new TokenRevocation(null, subject, null, System.currentTimeMillis());
+		publish(TokenRevocationList.USER_PREFIX + subject, revocation);
+		log.info("Revoked all tokens of user: {}", subject);
+	}
+
+	private void publish(String key, TokenRevocation revocation) {
+		revocationList.apply(key, revocation);
+		kafkaTemplate.send(TokenRevocationList.TOPIC, key, revocation);
+	}
+}
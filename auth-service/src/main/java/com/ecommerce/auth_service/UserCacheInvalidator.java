@@ -0,0 +1,37 @@
+package com.ecommerce.auth_service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JPA listener on {@link User} that drops the cached snapshot on insert, update and
+ * delete, again after commit so a concurrent lookup cannot re-cache the old row.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCacheInvalidator {
+
+	private final UserSecurityCache userSecurityCache;
+
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	public void userChanged(User user) {
+		String username = user.getUsername();
+		userSecurityCache.invalidate(username);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					userSecurityCache.invalidate(username);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.ecommerce.auth_service;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of a bulk user import, committed together with each chunk so a re-run
+ * with the same importId continues after the last committed input line.
+ */
+@Entity
+@Table(name = "user_import_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportCheckpoint {
+    @Id
+    private String importId;
+    
+    private long linesProcessed;
+    private long imported;
+    private long skipped;
+    private boolean completed;
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
@@ -0,0 +1,8 @@
+package com.ecommerce.auth_service;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserImportCheckpointRepository extends JpaRepository<UserImportCheckpoint, String> {
+}
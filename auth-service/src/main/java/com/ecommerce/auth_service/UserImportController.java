@@ -0,0 +1,59 @@
+package com.ecommerce.auth_service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping("/api/admin/users")
+@RequiredArgsConstructor
+@Slf4j
+public class UserImportController {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final UserImportService userImportService;
+    
+    /**
+     * Streams users as NDJSON from the request body and answers with one progress line
+     * per committed chunk. Re-sending the same file with the same importId resumes.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importUsers(@RequestParam String importId, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        log.info("Starting user import: {}", importId);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        userImportService.importUsers(importId, request.getInputStream(), checkpoint -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(checkpoint));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
+    @GetMapping(value = "/import/{importId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UserImportCheckpoint> importStatus(@PathVariable String importId) {
+        UserImportCheckpoint checkpoint = userImportService.getCheckpoint(importId);
+        return checkpoint != null ? ResponseEntity.ok(checkpoint) : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,29 @@
+package com.ecommerce.auth_service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a bulk import. Either password (hashed during the import) or
+ * passwordHash (an existing bcrypt hash, stored as is) must be set.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserImportRecord {
+    private String username;
+    private String email;
+    private String password;
+    private String passwordHash;
+    private String firstName;
+    private String lastName;
+    private Set<String> roles = new HashSet<>();
+    private boolean enabled = true;
+}
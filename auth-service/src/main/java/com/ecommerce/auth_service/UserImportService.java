@@ -0,0 +1,261 @@
+package com.ecommerce.auth_service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Imports users from newline-delimited JSON in chunks. Per chunk, existing usernames and
+ * emails are looked up with one query each, passwords are hashed in parallel (or an
+ * existing bcrypt hash is kept) and users and roles are written with JDBC batches in a
+ * single transaction that also advances the import's checkpoint.
+ */
+@Service
+@Slf4j
+public class UserImportService {
+
+	private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}$");
+
+	private static final String INSERT_USER = "INSERT INTO users "
+			+ "(username, password, email, first_name, last_name, enabled, created_at, updated_at) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+	// Users are inserted in the same transaction, so their ids are resolved by username
+	private static final String INSERT_ROLE = "INSERT INTO user_roles (user_id, role) "
+			+ "SELECT id, ? FROM users WHERE username = ?";
+	private static final String UPSERT_CHECKPOINT = "INSERT INTO user_import_checkpoints "
+			+ "(import_id, lines_processed, imported, skipped, completed, updated_at) VALUES (?, ?, ?, ?, ?, ?) "
+			+ "ON CONFLICT (import_id) DO UPDATE SET lines_processed = EXCLUDED.lines_processed, "
+			+ "imported = EXCLUDED.imported, skipped = EXCLUDED.skipped, "
+			+ "completed = EXCLUDED.completed, updated_at = EXCLUDED.updated_at";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final JdbcTemplate jdbcTemplate;
+	private final NamedParameterJdbcTemplate namedJdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final PasswordEncoder passwordEncoder;
+	private final UserImportCheckpointRepository checkpointRepository;
+	private final UserSecurityCache userSecurityCache;
+	private final ExecutorService hashingExecutor;
+	private final int chunkSize;
+
+	public UserImportService(JdbcTemplate jdbcTemplate,
+			NamedParameterJdbcTemplate namedJdbcTemplate,
+			TransactionTemplate transactionTemplate,
+			PasswordEncoder passwordEncoder,
+			UserImportCheckpointRepository checkpointRepository,
+			UserSecurityCache userSecurityCache,
+			@Value("${auth.import.hashing-threads:0}") int hashingThreads,
+			@Value("${auth.import.chunk-size:1000}") int chunkSize) {
+		// Half the cores by default, logins keep the rest during an import
+		int poolSize = hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		AtomicInteger threadCount = new AtomicInteger();
+		this.jdbcTemplate = jdbcTemplate;
+		this.namedJdbcTemplate = namedJdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.passwordEncoder = passwordEncoder;
+		this.checkpointRepository = checkpointRepository;
+		this.userSecurityCache = userSecurityCache;
+		this.chunkSize = chunkSize;
+		this.hashingExecutor = Executors.newFixedThreadPool(poolSize, runnable -> {
+			Thread thread = new Thread(runnable, "import-hashing-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		hashingExecutor.shutdownNow();
+	}
+
+	public UserImportCheckpoint getCheckpoint(String importId) {
+		return checkpointRepository.findById(importId).orElse(null);
+	}
+
+	/**
+	 * Imports the stream, skipping input lines already committed under this importId.
+	 * The progress callback receives the checkpoint after every committed chunk.
+	 */
+	public UserImportCheckpoint importUsers(String importId, InputStream in, Consumer<UserImportCheckpoint> progress)
+			throws IOException {
+		UserImportCheckpoint checkpoint = checkpointRepository.findById(importId)
+				.orElseGet(() -> new UserImportCheckpoint(importId, 0, 0, 0, false, LocalDateTime.now()));
+		long resumeAfter = checkpoint.getLinesProcessed();
+		if (resumeAfter > 0) {
+			log.info("Resuming user import {} after line {}", importId, resumeAfter);
+		}
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		List<String> chunk = new ArrayList<>(chunkSize);
+		long lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (++lineNumber <= resumeAfter) {
+				continue;
+			}
+			chunk.add(line);
+			if (chunk.size() == chunkSize) {
+				importChunk(checkpoint, chunk, false);
+				progress.accept(checkpoint);
+				chunk.clear();
+			}
+		}
+		importChunk(checkpoint, chunk, true);
+		progress.accept(checkpoint);
+
+		log.info("User import {} finished: {} imported, {} skipped", importId, checkpoint.getImported(), checkpoint.getSkipped());
+		return checkpoint;
+	}
+
+	private void importChunk(UserImportCheckpoint checkpoint, List<String> lines, boolean last) {
+		List<UserImportRecord> candidates = new ArrayList<>(lines.size());
+		int skipped = 0;
+		for (String line : lines) {
+			if (line.isBlank()) {
+				continue;
+			}
+			UserImportRecord record = parse(line);
+			if (record == null) {
+				skipped++;
+			} else {
+				candidates.add(record);
+			}
+		}
+
+		List<UserImportRecord> accepted;
+		try {
+			accepted = withoutExisting(candidates);
+			commitChunk(checkpoint, accepted, lines.size(), skipped + candidates.size() - accepted.size(), last);
+		} catch (DataIntegrityViolationException e) {
+			// A user was registered between the existence check and the insert, check again once
+			log.warn("Unique conflict while importing chunk, retrying: {}", e.getMessage());
+			accepted = withoutExisting(candidates);
+			commitChunk(checkpoint, accepted, lines.size(), skipped + candidates.size() - accepted.size(), last);
+		}
+
+		accepted.forEach(record -> userSecurityCache.invalidate(record.getUsername()));
+		log.info("User import {}: {} lines processed, {} imported, {} skipped",
+				checkpoint.getImportId(), checkpoint.getLinesProcessed(), checkpoint.getImported(), checkpoint.getSkipped());
+	}
+
+	private UserImportRecord parse(String line) {
+		UserImportRecord record;
+		try {
+			record = objectMapper.readValue(line, UserImportRecord.class);
+		} catch (JsonProcessingException e) {
+			log.debug("Skipping unreadable import line: {}", e.getOriginalMessage());
+			return null;
+		}
+		if (record.getUsername() == null || record.getUsername().isBlank()) {
+			return null;
+		}
+		if (record.getPasswordHash() != null) {
+			return BCRYPT_HASH.matcher(record.getPasswordHash()).matches() ? record : null;
+		}
+		return record.getPassword() != null && !record.getPassword().isEmpty() ? record : null;
+	}
+
+	// Drops duplicates within the chunk and users whose username or email already exists
+	private List<UserImportRecord> withoutExisting(List<UserImportRecord> candidates) {
+		if (candidates.isEmpty()) {
+			return List.of();
+		}
+		Set<String> usernames = new HashSet<>();
+		Set<String> emails = new HashSet<>();
+		candidates.forEach(record -> {
+			usernames.add(record.getUsername());
+			if (record.getEmail() != null) {
+				emails.add(record.getEmail());
+			}
+		});
+
+		Set<String> takenUsernames = new HashSet<>(namedJdbcTemplate.queryForList(
+				"SELECT username FROM users WHERE username IN (:usernames)", Map.of("usernames", usernames), String.class));
+		Set<String> takenEmails = emails.isEmpty() ? new HashSet<>() : new HashSet<>(namedJdbcTemplate.queryForList(
+				"SELECT email FROM users WHERE email IN (:emails)", Map.of("emails", emails), String.class));
+
+		List<UserImportRecord> accepted = new ArrayList<>(candidates.size());
+		for (UserImportRecord record : candidates) {
+			if (!takenUsernames.add(record.getUsername())) {
+				continue;
+			}
+			if (record.getEmail() != null && !takenEmails.add(record.getEmail())) {
+				continue;
+			}
+			accepted.add(record);
+		}
+		return accepted;
+	}
+
+	private void commitChunk(UserImportCheckpoint checkpoint, List<UserImportRecord> records, int lines, int skipped,
+			boolean last) {
+		List<String> hashes = hash(records);
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+		List<Object[]> users = new ArrayList<>(records.size());
+		List<Object[]> roles = new ArrayList<>(records.size());
+		for (int i = 0; i < records.size(); i++) {
+			UserImportRecord record = records.get(i);
+			users.add(new Object[] { record.getUsername(), hashes.get(i), record.getEmail(), record.getFirstName(),
+					record.getLastName(), record.isEnabled(), now, now });
+			Set<String> userRoles = record.getRoles() == null || record.getRoles().isEmpty()
+					? Set.of("ROLE_USER") : record.getRoles();
+			userRoles.forEach(role -> roles.add(new Object[] { role, record.getUsername() }));
+		}
+
+		long linesProcessed = checkpoint.getLinesProcessed() + lines;
+		long imported = checkpoint.getImported() + records.size();
+		long skippedTotal = checkpoint.getSkipped() + skipped;
+		transactionTemplate.executeWithoutResult(status -> {
+			if (!users.isEmpty()) {
+				jdbcTemplate.batchUpdate(INSERT_USER, users);
+				jdbcTemplate.batchUpdate(INSERT_ROLE, roles);
+			}
+			jdbcTemplate.update(UPSERT_CHECKPOINT, checkpoint.getImportId(), linesProcessed, imported, skippedTotal, last, now);
+		});
+
+		checkpoint.setLinesProcessed(linesProcessed);
+		checkpoint.setImported(imported);
+		checkpoint.setSkipped(skippedTotal);
+		checkpoint.setCompleted(last);
+		checkpoint.setUpdatedAt(now.toLocalDateTime());
+	}
+
+	private List<String> hash(List<UserImportRecord> records) {
+		List<CompletableFuture<String>> hashes = records.stream()
+				.map(record -> record.getPasswordHash() != null
+						? CompletableFuture.completedFuture(record.getPasswordHash())
+						: CompletableFuture.supplyAsync(() -> passwordEncoder.encode(record.getPassword()), hashingExecutor))
+				.toList();
+		return hashes.stream().map(CompletableFuture::join).toList();
+	}
+}
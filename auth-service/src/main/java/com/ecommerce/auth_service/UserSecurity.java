@@ -0,0 +1,21 @@
+package com.ecommerce.auth_service;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Immutable view of what authentication needs from a {@link User}, safe to share
+ * between requests without touching the persistence context.
+ */
+@Value
+public class UserSecurity {
+    String username;
+    String passwordHash;
+    boolean enabled;
+    List<String> roles;
+
+    public static UserSecurity from(User user) {
+        return new UserSecurity(user.getUsername(), user.getPassword(), user.isEnabled(), List.copyOf(user.getRoles()));
+    }
+}
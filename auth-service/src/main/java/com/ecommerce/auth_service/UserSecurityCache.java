@@ -0,0 +1,124 @@
+package com.ecommerce.auth_service;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded cache of {@link UserSecurity} snapshots keyed by username, so repeat logins
+ * and refreshes skip the user and user_roles queries. Entries expire after a TTL and
+ * are invalidated by {@link UserCacheInvalidator} whenever a user row changes. Unknown
+ * usernames can be cached briefly too, which makes enumeration attempts cheap to answer.
+ */
+@Component
+@Slf4j
+public class UserSecurityCache {
+
+	private final UserRepository userRepository;
+	// Empty for usernames that do not exist
+	private final Cache<String, Optional<UserSecurity>> entries;
+	private final boolean negativeEnabled;
+	private final Counter hits;
+	private final Counter negativeHits;
+	private final Counter misses;
+
+	public UserSecurityCache(UserRepository userRepository,
+			MeterRegistry meterRegistry,
+			@Value("${auth.user-cache.max-size:10000}") int maxSize,
+			@Value("${auth.user-cache.ttl-ms:300000}") long ttlMs,
+			@Value("${auth.user-cache.negative.enabled:true}") boolean negativeEnabled,
+			@Value("${auth.user-cache.negative.ttl-ms:30000}") long negativeTtlMs) {
+		this.userRepository = userRepository;
+		this.negativeEnabled = negativeEnabled;
+		// Evicts in constant time per insert, a full cache costs a miss nothing extra
+		this.entries = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfter(new Ttl(TimeUnit.MILLISECONDS.toNanos(ttlMs), TimeUnit.MILLISECONDS.toNanos(negativeTtlMs)))
+				.build();
+		this.hits = counter(meterRegistry, "hit");
+		this.negativeHits = counter(meterRegistry, "negative-hit");
+		this.misses = counter(meterRegistry, "miss");
+		Gauge.builder("auth.user.cache.size", entries, Cache::estimatedSize)
+				.description("User security snapshots held in memory")
+				.register(meterRegistry);
+	}
+
+	public Optional<UserSecurity> findByUsername(String username) {
+		if (username == null) {
+			return Optional.empty();
+		}
+
+		Optional<UserSecurity> cached = entries.getIfPresent(username);
+		if (cached != null) {
+			if (cached.isEmpty()) {
+				negativeHits.increment();
+			} else {
+				hits.increment();
+			}
+			return cached;
+		}
+
+		misses.increment();
+		// Concurrent misses share one query; an invalidation waits for it and then removes the result
+		Optional<UserSecurity> user = entries.get(username, this::load);
+		return user != null ? user : Optional.empty();
+	}
+
+	public void invalidate(String username) {
+		if (username != null && entries.asMap().remove(username) != null) {
+			log.debug("Invalidated cached user: {}", username);
+		}
+	}
+
+	// Null leaves an unknown username uncached
+	private Optional<UserSecurity> load(String username) {
+		Optional<UserSecurity> user = userRepository.findByUsername(username).map(UserSecurity::from);
+		return user.isPresent() || negativeEnabled ? user : null;
+	}
+
+	private static Counter counter(MeterRegistry meterRegistry, String result) {
+		return Counter.builder("auth.user.cache.requests")
+				.description("User security lookups by cache result")
+				.tag("result", result)
+				.register(meterRegistry);
+	}
+
+	// Unknown usernames expire sooner than users
+	private static final class Ttl implements Expiry<String, Optional<UserSecurity>> {
+		private final long ttlNanos;
+		private final long negativeTtlNanos;
+
+		private Ttl(long ttlNanos, long negativeTtlNanos) {
+			this.ttlNanos = ttlNanos;
+			this.negativeTtlNanos = negativeTtlNanos;
+		}
+
+		@Override
+		public long expireAfterCreate(String username, Optional<UserSecurity> user, long currentTime) {
+			return user.isPresent() ? ttlNanos : negativeTtlNanos;
+		}
+
+		@Override
+		public long expireAfterUpdate(String username, Optional<UserSecurity> user, long currentTime,
+				long currentDuration) {
+			return expireAfterCreate(username, user, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(String username, Optional<UserSecurity> user, long currentTime,
+				long currentDuration) {
+			return currentDuration;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.ecommerce.auth_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class BatchTokenValidatorTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AuthService authService = mock(AuthService.class);
+	// Two threads, at most 5 tokens and a window of 2, so the window turns over within a batch
+	private final BatchTokenValidator validator = new BatchTokenValidator(authService, 2, 5, 2);
+
+	@BeforeEach
+	void setUp() {
+		when(authService.validateToken(anyString())).thenAnswer(invocation -> {
+			String token = invocation.getArgument(0);
+			return token.startsWith("good-")
+					? new ValidateTokenResponse(true, token.substring(5), List.of("ROLE_USER"), "Token is valid")
+					: new ValidateTokenResponse(false, null, null, "Token is invalid");
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		validator.shutdown();
+	}
+
+	@Test
+	void answersEveryTokenOfAJsonArrayInInputOrder() throws IOException {
+		List<ValidateTokenResponse> responses = validate("[\"good-alice\",\"bad\",\"good-bob\",\"good-carol\"]", false);
+
+		assertThat(responses).extracting(ValidateTokenResponse::getUsername)
+				.containsExactly("alice", null, "bob", "carol");
+		assertThat(responses).extracting(ValidateTokenResponse::isValid).containsExactly(true, false, true, true);
+	}
+
+	@Test
+	void answersEveryLineOfNdjsonSkippingBlankLines() throws IOException {
+		List<ValidateTokenResponse> responses = validate("good-alice\n\n  good-bob  \nbad\n", true);
+
+		assertThat(responses).extracting(ValidateTokenResponse::getUsername).containsExactly("alice", "bob", null);
+	}
+
+	@Test
+	void repeatedTokensAreVerifiedOnceButAnsweredEachTime() throws IOException {
+		List<ValidateTokenResponse> responses = validate("good-alice\ngood-bob\ngood-alice\ngood-alice\ngood-bob\n", true);
+
+		assertThat(responses).extracting(ValidateTokenResponse::getUsername)
+				.containsExactly("alice", "bob", "alice", "alice", "bob");
+		verify(authService, times(1)).validateToken("good-alice");
+		verify(authService, times(1)).validateToken("good-bob");
+	}
+
+	@Test
+	void tokensPastTheLimitAreCutOffWithOneError() throws IOException {
+		List<ValidateTokenResponse> responses = validate("t1\nt2\nt3\nt4\nt5\ngood-t6\ngood-t7\n", true);
+
+		assertThat(responses).hasSize(6);
+		assertThat(responses.subList(0, 5)).extracting(ValidateTokenResponse::getMessage).containsOnly("Token is invalid");
+		assertThat(responses.get(5).isValid()).isFalse();
+		assertThat(responses.get(5).getMessage()).isEqualTo("Batch limit of 5 tokens exceeded");
+		verify(authService, never()).validateToken("good-t6");
+		verify(authService, never()).validateToken("good-t7");
+	}
+
+	@Test
+	void batchOfExactlyTheLimitIsNotCutOff() throws IOException {
+		List<ValidateTokenResponse> responses = validate("[\"t1\",\"t2\",\"t3\",\"t4\",\"t5\"]", false);
+
+		assertThat(responses).hasSize(5).extracting(ValidateTokenResponse::getMessage).containsOnly("Token is invalid");
+	}
+
+	@Test
+	void nonStringArrayEntriesAreAnsweredAsInvalid() throws IOException {
+		List<ValidateTokenResponse> responses = validate("[\"good-alice\",42,{\"token\":\"good-bob\"},null]", false);
+
+		assertThat(responses).hasSize(4);
+		assertThat(responses).extracting(ValidateTokenResponse::isValid).containsExactly(true, false, false, false);
+		verify(authService, never()).validateToken("good-bob");
+	}
+
+	@Test
+	void bodyThatIsNotAnArrayIsRejected() {
+		assertThatThrownBy(() -> validate("{\"tokens\":[]}", false)).isInstanceOf(IOException.class)
+				.hasMessageContaining("JSON array");
+	}
+
+	private List<ValidateTokenResponse> validate(String body, boolean ndjson) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		validator.validate(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), ndjson, out);
+		List<ValidateTokenResponse> responses = new ArrayList<>();
+		for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+			if (!line.isEmpty()) {
+				responses.add(objectMapper.readValue(line, ValidateTokenResponse.class));
+			}
+		}
+		return responses;
+	}
+}
@@ -0,0 +1,77 @@
+package com.ecommerce.auth_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LoginRateLimiterTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	// 10 per minute and a burst of 5 per user, 60 per minute and a burst of 20 per IP
+	private final LoginRateLimiter limiter = new LoginRateLimiter(meterRegistry, 10, 5, 60, 20, 1000);
+
+	@Test
+	void allowsTheBurstThenThrottlesTheUser() {
+		for (int i = 0; i < 5; i++) {
+			limiter.checkLogin("alice", "10.0.0." + i);
+		}
+
+		LoginThrottledException e = catchThrowableOfType(LoginThrottledException.class,
+				() -> limiter.checkLogin("alice", "10.0.0.9"));
+
+		assertThat(e.getReason()).isEqualTo("user-rate");
+		// The next slot opens one interval (6 s) after the burst
+		assertThat(e.getRetryAfterSeconds()).isBetween(6L, 7L);
+		assertThat(meterRegistry.get("auth.login.rejected").tag("reason", "user-rate").counter().count())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void usernamesAreLimitedRegardlessOfCase() {
+		for (int i = 0; i < 5; i++) {
+			limiter.checkLogin(i % 2 == 0 ? "Alice" : "alice", "10.0.0." + i);
+		}
+
+		assertThat(catchThrowableOfType(LoginThrottledException.class,
+				() -> limiter.checkLogin("ALICE", "10.0.0.9"))).isNotNull();
+	}
+
+	@Test
+	void usersDoNotShareALimit() {
+		for (int i = 0; i < 5; i++) {
+			limiter.checkLogin("alice", "10.0.0." + i);
+		}
+
+		assertThatCode(() -> limiter.checkLogin("bob", "10.0.0.9")).doesNotThrowAnyException();
+	}
+
+	@Test
+	void throttlesTheClientAcrossUsers() {
+		for (int i = 0; i < 20; i++) {
+			limiter.checkLogin("user" + i, "10.0.0.1");
+		}
+
+		LoginThrottledException e = catchThrowableOfType(LoginThrottledException.class,
+				() -> limiter.checkLogin("someone-else", "10.0.0.1"));
+
+		assertThat(e.getReason()).isEqualTo("ip-rate");
+		assertThat(e.getRetryAfterSeconds()).isBetween(1L, 2L);
+	}
+
+	@Test
+	void refillsAtTheConfiguredRate() throws InterruptedException {
+		// 6000 per minute, a slot every 10 ms
+		LoginRateLimiter fast = new LoginRateLimiter(meterRegistry, 6000, 2, 6000, 2, 1000);
+		fast.checkIp("10.0.0.1");
+		fast.checkIp("10.0.0.1");
+		assertThat(catchThrowableOfType(LoginThrottledException.class, () -> fast.checkIp("10.0.0.1"))).isNotNull();
+
+		Thread.sleep(30);
+
+		assertThatCode(() -> fast.checkIp("10.0.0.1")).doesNotThrowAnyException();
+	}
+}
@@ -0,0 +1,171 @@
+package com.ecommerce.auth_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class UserImportServiceTests {
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final NamedParameterJdbcTemplate namedJdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+	private final PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+	private final UserImportCheckpointRepository checkpointRepository = mock(UserImportCheckpointRepository.class);
+	private final UserSecurityCache userSecurityCache = mock(UserSecurityCache.class);
+	// Usernames in the users table, and of each users batch in the order the batches were sent
+	private final Set<String> registered = new HashSet<>();
+	private final List<List<String>> insertedUsers = new ArrayList<>();
+	private final List<UserImportCheckpoint> progress = new ArrayList<>();
+
+	private UserImportService importService;
+
+	@BeforeEach
+	void setUp() {
+		when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+		when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hashed-" + invocation.getArgument(0));
+		when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+		when(namedJdbcTemplate.queryForList(startsWith("SELECT username"), anyMap(), eq(String.class)))
+				.thenAnswer(invocation -> {
+					Map<String, Collection<String>> parameters = invocation.getArgument(1);
+					return parameters.get("usernames").stream().filter(registered::contains).toList();
+				});
+		when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO users"), anyList())).thenAnswer(this::insertUsers);
+		// Chunks of two lines
+		importService = new UserImportService(jdbcTemplate, namedJdbcTemplate, new TransactionTemplate(transactionManager),
+				passwordEncoder, checkpointRepository, userSecurityCache, 1, 2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		importService.shutdown();
+	}
+
+	@Test
+	void importsInChunksAndAdvancesTheCheckpointWithEach() throws IOException {
+		UserImportCheckpoint checkpoint = importUsers("first", user("alice"), user("bob"), user("carol"));
+
+		assertThat(insertedUsers).containsExactly(List.of("alice", "bob"), List.of("carol"));
+		assertThat(progress).hasSize(2);
+		assertThat(checkpoint.getLinesProcessed()).isEqualTo(3);
+		assertThat(checkpoint.getImported()).isEqualTo(3);
+		assertThat(checkpoint.isCompleted()).isTrue();
+		verify(jdbcTemplate).update(startsWith("INSERT INTO user_import_checkpoints"), eq("first"), eq(2L), eq(2L),
+				eq(0L), eq(false), any());
+		verify(jdbcTemplate).update(startsWith("INSERT INTO user_import_checkpoints"), eq("first"), eq(3L), eq(3L),
+				eq(0L), eq(true), any());
+		verify(passwordEncoder, times(3)).encode(anyString());
+	}
+
+	@Test
+	void rerunResumesAfterTheLastCommittedLine() throws IOException {
+		when(checkpointRepository.findById("resumed")).thenReturn(
+				Optional.of(new UserImportCheckpoint("resumed", 2, 1, 1, false, null)));
+
+		UserImportCheckpoint checkpoint = importUsers("resumed", user("alice"), "not json", user("carol"), user("dave"));
+
+		// Lines 1 and 2 were committed by the interrupted run and are not read again
+		assertThat(insertedUsers).containsExactly(List.of("carol", "dave"));
+		assertThat(checkpoint.getLinesProcessed()).isEqualTo(4);
+		assertThat(checkpoint.getImported()).isEqualTo(3);
+		assertThat(checkpoint.getSkipped()).isEqualTo(1);
+		assertThat(checkpoint.isCompleted()).isTrue();
+	}
+
+	@Test
+	void unreadableDuplicateAndExistingUsersAreSkipped() throws IOException {
+		registered.add("bob");
+
+		UserImportCheckpoint checkpoint = importUsers("skips", user("alice"), user("alice"), user("bob"),
+				"{\"username\":\"carol\"}", "", "{");
+
+		assertThat(insertedUsers).containsExactly(List.of("alice"));
+		assertThat(checkpoint.getLinesProcessed()).isEqualTo(6);
+		assertThat(checkpoint.getImported()).isEqualTo(1);
+		// The second alice is a duplicate, bob exists, carol has no password and "{" is not JSON
+		assertThat(checkpoint.getSkipped()).isEqualTo(4);
+	}
+
+	@Test
+	void uniqueConflictIsRetriedWithoutTheUserRegisteredMeanwhile() throws IOException {
+		when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO users"), anyList()))
+				.thenAnswer(invocation -> {
+					// bob registers between the existence check and the insert
+					registered.add("bob");
+					throw new DuplicateKeyException("users_username_key");
+				})
+				.thenAnswer(this::insertUsers);
+
+		UserImportCheckpoint checkpoint = importUsers("conflict", user("alice"), user("bob"));
+
+		assertThat(insertedUsers).containsExactly(List.of("alice"));
+		assertThat(checkpoint.getImported()).isEqualTo(1);
+		assertThat(checkpoint.getSkipped()).isEqualTo(1);
+		assertThat(checkpoint.getLinesProcessed()).isEqualTo(2);
+		verify(transactionManager).rollback(any());
+		// Only the retry advanced the checkpoint
+		verify(jdbcTemplate).update(startsWith("INSERT INTO user_import_checkpoints"), eq("conflict"), eq(2L), eq(1L),
+				eq(1L), eq(false), any());
+		verify(userSecurityCache).invalidate("alice");
+	}
+
+	@Test
+	void existingBcryptHashIsKeptAndOtherHashesAreRejected() throws IOException {
+		String hash = "$2a$10$" + "a".repeat(53);
+
+		UserImportCheckpoint checkpoint = importUsers("hashes",
+				"{\"username\":\"alice\",\"passwordHash\":\"" + hash + "\"}",
+				"{\"username\":\"bob\",\"passwordHash\":\"md5:abc\"}");
+
+		assertThat(insertedUsers).containsExactly(List.of("alice"));
+		assertThat(checkpoint.getSkipped()).isEqualTo(1);
+		verify(passwordEncoder, times(0)).encode(anyString());
+	}
+
+	private int[] insertUsers(InvocationOnMock invocation) {
+		List<Object[]> rows = invocation.getArgument(1);
+		List<String> usernames = rows.stream().map(row -> (String) row[0]).toList();
+		registered.addAll(usernames);
+		insertedUsers.add(usernames);
+		return new int[rows.size()];
+	}
+
+	private UserImportCheckpoint importUsers(String importId, String... lines) throws IOException {
+		byte[] body = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+		return importService.importUsers(importId, new ByteArrayInputStream(body), progress::add);
+	}
+
+	private static String user(String username) {
+		return "{\"username\":\"" + username + "\",\"email\":\"" + username + "@example.com\",\"password\":\"secret\"}";
+	}
+}
@@ -0,0 +1,47 @@
+package com.ecommerce.common;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports LAGGING when any of the service's consumer groups is more than kafka.lag.max-lag
+ * records behind, for an autoscaler polling /actuator/health/lag. LAGGING still answers
+ * 200, the instance is healthy, just short of capacity.
+ */
+// Named explicitly, imported components are otherwise registered under the class name and
+// the health group includes the contributor as consumerLag
+@Component("consumerLagHealthIndicator")
+public class ConsumerLagHealthIndicator implements HealthIndicator {
+
+	public static final Status LAGGING = new Status("LAGGING", "Consumer lag above kafka.lag.max-lag");
+
+	private final ConsumerLagMonitor lagMonitor;
+	private final long maxLag;
+
+	public ConsumerLagHealthIndicator(ConsumerLagMonitor lagMonitor, @Value("${kafka.lag.max-lag:1000}") long maxLag) {
+		this.lagMonitor = lagMonitor;
+		this.maxLag = maxLag;
+	}
+
+	@Override
+	public Health health() {
+		long lastUpdatedMs = lagMonitor.getLastUpdatedMs();
+		// Missed refreshes mean the broker could not be asked, the last value says nothing
+		if (lastUpdatedMs == 0 || System.currentTimeMillis() - lastUpdatedMs > 3 * lagMonitor.getIntervalMs()) {
+			return Health.unknown().withDetail("lastUpdatedMs", lastUpdatedMs).build();
+		}
+
+		Health.Builder builder = Health.up();
+		for (String group : lagMonitor.getGroups()) {
+			long lag = lagMonitor.getTotalLag(group);
+			if (lag > maxLag) {
+				builder.status(LAGGING);
+			}
+			builder.withDetail(group, lag);
+		}
+		return builder.withDetail("maxLag", maxLag).withDetail("lastUpdatedMs", lastUpdatedMs).build();
+	}
+}
@@ -0,0 +1,139 @@
+package com.ecommerce.common;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Computes consumer lag from the broker's side: the committed offsets of this service's
+ * consumer groups against the end offsets of their partitions, on a fixed interval.
+ * Unlike the client's records-lag metric this keeps reporting when a listener is stuck
+ * or not running at all. Exported per partition as kafka.consumer.group.lag and per group
+ * as kafka.consumer.group.lag.total.
+ */
+@Component
+@Slf4j
+public class ConsumerLagMonitor {
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "consumer-lag");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Map<String, AtomicLong> totalLag = new ConcurrentHashMap<>();
+	private final KafkaAdmin kafkaAdmin;
+	private final List<String> groups;
+	private final long intervalMs;
+	private final MultiGauge partitionLag;
+
+	private AdminClient adminClient;
+	private volatile long lastUpdatedMs;
+
+	public ConsumerLagMonitor(KafkaAdmin kafkaAdmin, MeterRegistry meterRegistry,
+			@Value("${kafka.lag.groups:${spring.kafka.consumer.group-id}}") List<String> groups,
+			@Value("${kafka.lag.interval-ms:15000}") long intervalMs) {
+		this.kafkaAdmin = kafkaAdmin;
+		this.groups = groups;
+		this.intervalMs = intervalMs;
+		this.partitionLag = MultiGauge.builder("kafka.consumer.group.lag")
+				.description("Records between the group's committed offset and the end of the partition")
+				.baseUnit("records")
+				.register(meterRegistry);
+		groups.forEach(group -> Gauge.builder("kafka.consumer.group.lag.total",
+						totalLag.computeIfAbsent(group, g -> new AtomicLong()), AtomicLong::get)
+				.description("Consumer lag summed over all partitions of the group")
+				.baseUnit("records")
+				.tag("group", group)
+				.register(meterRegistry));
+	}
+
+	@PostConstruct
+	public void start() {
+		adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				refresh();
+			} catch (Exception e) {
+				log.warn("Could not compute consumer lag: {}", e.getMessage());
+			}
+		}, 0, intervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		scheduler.shutdownNow();
+		adminClient.close(Duration.ofSeconds(5));
+	}
+
+	public List<String> getGroups() {
+		return groups;
+	}
+
+	public long getTotalLag(String group) {
+		return totalLag.get(group).get();
+	}
+
+	public long getLastUpdatedMs() {
+		return lastUpdatedMs;
+	}
+
+	public long getIntervalMs() {
+		return intervalMs;
+	}
+
+	private void refresh() throws Exception {
+		List<MultiGauge.Row<?>> rows = new ArrayList<>();
+		for (String group : groups) {
+			Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(group)
+					.partitionsToOffsetAndMetadata().get(intervalMs, TimeUnit.MILLISECONDS)
+					.entrySet().stream()
+					.filter(entry -> entry.getValue() != null)
+					.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+			long total = 0;
+			if (!committed.isEmpty()) {
+				Map<TopicPartition, ListOffsetsResultInfo> endOffsets = adminClient.listOffsets(committed.keySet().stream()
+						.collect(Collectors.toMap(partition -> partition, partition -> OffsetSpec.latest())))
+						.all().get(intervalMs, TimeUnit.MILLISECONDS);
+				for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+					ListOffsetsResultInfo end = endOffsets.get(entry.getKey());
+					if (end == null) {
+						continue;
+					}
+					long lag = Math.max(0, end.offset() - entry.getValue().offset());
+					total += lag;
+					rows.add(MultiGauge.Row.of(Tags.of("group", group, "topic", entry.getKey().topic(),
+							"partition", Integer.toString(entry.getKey().partition())), lag));
+				}
+			}
+			totalLag.get(group).set(total);
+		}
+		// Partitions that are gone (reassigned topics, deleted retry topics) drop out
+		partitionLag.register(rows, true);
+		lastUpdatedMs = System.currentTimeMillis();
+	}
+}
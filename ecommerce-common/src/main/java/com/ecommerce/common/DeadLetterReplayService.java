@@ -0,0 +1,150 @@
+package com.ecommerce.common;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Re-injects dead-lettered records into this service's first retry topic, so only
+ * this consumer group sees them again. Progress is committed under a dedicated
+ * group, which makes repeated calls continue where the previous one stopped. Only topics
+ * whose dead-letter topic one of this service's listeners consumes can be replayed.
+ */
+@Service
+@Slf4j
+public class DeadLetterReplayService {
+
+	private final ConsumerFactory<?, ?> consumerFactory;
+	private final KafkaListenerEndpointRegistry listenerRegistry;
+	private final KafkaTemplate<Object, Object> retryKafkaTemplate;
+	private final String applicationName;
+	private final int maxRatePerSecond;
+	private final int maxRecordsPerCall;
+	private final long maxDurationNanos;
+
+	public DeadLetterReplayService(ConsumerFactory<?, ?> consumerFactory, KafkaListenerEndpointRegistry listenerRegistry,
+			@Qualifier("retryKafkaTemplate") KafkaTemplate<Object, Object> retryKafkaTemplate,
+			@Value("${spring.application.name}") String applicationName,
+			@Value("${kafka.retry.replay.max-rate-per-second:100}") int maxRatePerSecond,
+			@Value("${kafka.retry.replay.max-records:1000}") int maxRecordsPerCall,
+			@Value("${kafka.retry.replay.max-duration-ms:60000}") long maxDurationMs) {
+		this.consumerFactory = consumerFactory;
+		this.listenerRegistry = listenerRegistry;
+		this.retryKafkaTemplate = retryKafkaTemplate;
+		this.applicationName = applicationName;
+		this.maxRatePerSecond = maxRatePerSecond;
+		this.maxRecordsPerCall = maxRecordsPerCall;
+		this.maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+	}
+
+	public String deadLetterTopic(String topic) {
+		return topic + "-" + applicationName + "-dlt";
+	}
+
+	public boolean isReplayable(String topic) {
+		return topic != null && listenedTopics().contains(deadLetterTopic(topic));
+	}
+
+	// The retry topic support registers a container per retry and dead-letter topic
+	private Set<String> listenedTopics() {
+		return listenerRegistry.getAllListenerContainers().stream()
+				.map(MessageListenerContainer::getContainerProperties)
+				.filter(properties -> properties.getTopics() != null)
+				.flatMap(properties -> Stream.of(properties.getTopics()))
+				.collect(Collectors.toSet());
+	}
+
+	private String firstRetryTopic(String topic) {
+		return topic + "-" + applicationName + "-retry-0";
+	}
+
+	/**
+	 * Runs on the caller's thread, so maxRecords is capped at kafka.retry.replay.max-records and
+	 * the call returns after kafka.retry.replay.max-duration-ms whatever the rate; call again
+	 * for the rest.
+	 */
+	@SuppressWarnings("unchecked")
+	public int replay(String topic, int requestedRecords, int ratePerSecond) {
+		if (!isReplayable(topic)) {
+			throw new IllegalArgumentException("No dead-letter topic for " + topic + " in " + applicationName);
+		}
+		String dltTopic = deadLetterTopic(topic);
+		String targetTopic = firstRetryTopic(topic);
+		int maxRecords = Math.min(requestedRecords, maxRecordsPerCall);
+		long pauseNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, Math.min(ratePerSecond, maxRatePerSecond));
+		long deadline = System.nanoTime() + maxDurationNanos;
+
+		Properties overrides = new Properties();
+		overrides.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+		overrides.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+		overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+		overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+
+		int replayed = 0;
+		try (Consumer<byte[], byte[]> consumer = (Consumer<byte[], byte[]>) consumerFactory.createConsumer(
+				applicationName + "-dlt-replay", null, "-dlt-replay", overrides)) {
+
+			List<TopicPartition> partitions = consumer.partitionsFor(dltTopic).stream()
+					.map(info -> new TopicPartition(info.topic(), info.partition()))
+					.toList();
+			consumer.assign(partitions);
+			// Stop at the end offsets seen now, records dead-lettered during the replay wait for the next call
+			Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+			while (replayed < maxRecords && System.nanoTime() - deadline < 0 && !reachedEnd(consumer, endOffsets)) {
+				for (ConsumerRecord<byte[], byte[]> record : consumer.poll(Duration.ofMillis(500))) {
+					TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+					// Skipped records are not committed, the next call gets them again
+					if (replayed >= maxRecords || System.nanoTime() - deadline >= 0
+							|| record.offset() >= endOffsets.get(partition)) {
+						continue;
+					}
+
+					ProducerRecord<Object, Object> retry = new ProducerRecord<>(targetTopic, record.key(), record.value());
+					for (Header header : record.headers()) {
+						if (!header.key().startsWith("kafka_dlt-") && !header.key().startsWith("retry_topic-")) {
+							retry.headers().add(header);
+						}
+					}
+					retryKafkaTemplate.send(retry).join();
+					consumer.commitSync(Map.of(partition, new OffsetAndMetadata(record.offset() + 1)));
+					replayed++;
+
+					LockSupport.parkNanos(pauseNanos);
+				}
+			}
+		}
+
+		log.info("Replayed {} records from '{}' to '{}'", replayed, dltTopic, targetTopic);
+		return replayed;
+	}
+
+	private boolean reachedEnd(Consumer<byte[], byte[]> consumer, Map<TopicPartition, Long> endOffsets) {
+		return endOffsets.entrySet().stream()
+				.allMatch(entry -> consumer.position(entry.getKey()) >= entry.getValue());
+	}
+}
@@ -0,0 +1,168 @@
+package com.ecommerce.common;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Public keys published by auth-service, so tokens are verified locally. The key set is
+ * refreshed in the background on a fixed interval and as soon as a token arrives with an
+ * unknown kid (a rotation); such refreshes are single-flight and rate limited so forged
+ * key ids cannot turn into a request per token against the JWKS endpoint.
+ */
+@Component
+@Slf4j
+public class JwksKeyCache {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "jwks-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicReference<CompletableFuture<Void>> pendingRefresh = new AtomicReference<>();
+	private final RestClient restClient;
+	private final String jwksUri;
+	private final long refreshIntervalMs;
+	private final long minRefreshIntervalMs;
+	private final long unknownKidWaitMs;
+
+	private volatile Map<String, PublicKey> keys = Map.of();
+	private volatile long lastRefreshMs;
+
+	public JwksKeyCache(@Value("${jwt.jwks.uri:http://localhost:8084/api/auth/.well-known/jwks.json}") String jwksUri,
+			@Value("${jwt.jwks.refresh-interval-ms:300000}") long refreshIntervalMs,
+			@Value("${jwt.jwks.min-refresh-interval-ms:10000}") long minRefreshIntervalMs,
+			@Value("${jwt.jwks.unknown-kid-wait-ms:1000}") long unknownKidWaitMs,
+			@Value("${jwt.jwks.timeout-ms:2000}") int timeoutMs) {
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setConnectTimeout(timeoutMs);
+		requestFactory.setReadTimeout(timeoutMs);
+		this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+		this.jwksUri = jwksUri;
+		this.refreshIntervalMs = refreshIntervalMs;
+		this.minRefreshIntervalMs = minRefreshIntervalMs;
+		this.unknownKidWaitMs = unknownKidWaitMs;
+	}
+
+	@PostConstruct
+	public void start() {
+		// First fetch happens in the background too, startup does not depend on auth-service
+		refresher.scheduleWithFixedDelay(() -> {
+			try {
+				refresh();
+			} catch (Exception e) {
+				log.warn("Could not refresh JWKS from {}: {}", jwksUri, e.getMessage());
+			}
+		}, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		refresher.shutdownNow();
+	}
+
+	/**
+	 * Key for the given kid, or null if auth-service does not publish it. An unknown kid
+	 * triggers a refresh and waits briefly for it, so the first token signed with a
+	 * freshly rotated key is still accepted.
+	 */
+	public PublicKey getKey(String kid) {
+		if (kid == null) {
+			return null;
+		}
+		PublicKey key = keys.get(kid);
+		if (key != null) {
+			return key;
+		}
+
+		CompletableFuture<Void> refresh = requestRefresh();
+		if (refresh != null) {
+			try {
+				refresh.get(unknownKidWaitMs, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException | ExecutionException e) {
+				log.debug("JWKS refresh for kid {} did not complete: {}", kid, e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return keys.get(kid);
+	}
+
+	private CompletableFuture<Void> requestRefresh() {
+		CompletableFuture<Void> pending = pendingRefresh.get();
+		if (pending != null) {
+			return pending;
+		}
+		if (System.currentTimeMillis() - lastRefreshMs < minRefreshIntervalMs) {
+			return null;
+		}
+
+		CompletableFuture<Void> refresh = new CompletableFuture<>();
+		if (!pendingRefresh.compareAndSet(null, refresh)) {
+			return pendingRefresh.get();
+		}
+		refresher.execute(() -> {
+			try {
+				refresh();
+				refresh.complete(null);
+			} catch (Exception e) {
+				log.warn("Could not refresh JWKS from {}: {}", jwksUri, e.getMessage());
+				refresh.completeExceptionally(e);
+			} finally {
+				pendingRefresh.set(null);
+			}
+		});
+		return refresh;
+	}
+
+	private void refresh() throws Exception {
+		lastRefreshMs = System.currentTimeMillis();
+		JsonNode jwks = objectMapper.readTree(restClient.get().uri(jwksUri).retrieve().body(String.class));
+
+		Map<String, PublicKey> fetched = new HashMap<>();
+		for (JsonNode jwk : jwks.path("keys")) {
+			if (!"RSA".equals(jwk.path("kty").asText()) || !jwk.hasNonNull("kid")
+					|| !"sig".equals(jwk.path("use").asText("sig"))) {
+				continue;
+			}
+			fetched.put(jwk.get("kid").asText(), toPublicKey(jwk));
+		}
+
+		if (!fetched.keySet().equals(keys.keySet())) {
+			log.info("Loaded {} JWT verification keys: {}", fetched.size(), fetched.keySet());
+		}
+		keys = Map.copyOf(fetched);
+	}
+
+	private static PublicKey toPublicKey(JsonNode jwk) throws GeneralSecurityException {
+		Base64.Decoder decoder = Base64.getUrlDecoder();
+		BigInteger modulus = new BigInteger(1, decoder.decode(jwk.path("n").asText()));
+		BigInteger exponent = new BigInteger(1, decoder.decode(jwk.path("e").asText()));
+		return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(modulus, exponent));
+	}
+}
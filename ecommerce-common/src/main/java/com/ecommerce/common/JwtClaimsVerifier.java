@@ -0,0 +1,96 @@
+package com.ecommerce.common;
+
+import java.security.Key;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks tokens RS256-signed by auth-service against its JWKS and the revocation list.
+ * Services turn the claims into whatever their web stack needs; needs {@link JwksKeyCache}
+ * and {@link TokenRevocationList} imported alongside.
+ */
+@Component
+@Slf4j
+public class JwtClaimsVerifier {
+
+	public static final String ADMIN_ROLE = "ROLE_ADMIN";
+	// "access" or "refresh", tokens issued before the claim existed have none and count as access tokens
+	public static final String TOKEN_USE_CLAIM = "token_use";
+	public static final String ACCESS_TOKEN = "access";
+	public static final String REFRESH_TOKEN = "refresh";
+
+	private final JwtParser jwtParser;
+	private final TokenRevocationList revocationList;
+
+	public JwtClaimsVerifier(JwksKeyCache jwksKeyCache, TokenRevocationList revocationList) {
+		this.revocationList = revocationList;
+		// Keys come from auth-service's JWKS by kid
+		this.jwtParser = Jwts.parserBuilder()
+				.setSigningKeyResolver(new SigningKeyResolverAdapter() {
+					@Override
+					@SuppressWarnings("rawtypes")
+					public Key resolveSigningKey(JwsHeader header, Claims claims) {
+						if (!SignatureAlgorithm.forName(header.getAlgorithm()).isRsa()) {
+							throw new JwtException("Unexpected signing algorithm: " + header.getAlgorithm());
+						}
+						Key key = jwksKeyCache.getKey(header.getKeyId());
+						if (key == null) {
+							throw new JwtException("Unknown signing key: " + header.getKeyId());
+						}
+						return key;
+					}
+				})
+				.build();
+	}
+
+	public Optional<Claims> verify(String token) {
+		if (token == null || token.isBlank()) {
+			return Optional.empty();
+		}
+		Claims claims;
+		try {
+			claims = jwtParser.parseClaimsJws(token).getBody();
+		} catch (JwtException | IllegalArgumentException ex) {
+			log.debug("Invalid JWT token: {}", ex.getMessage());
+			return Optional.empty();
+		}
+		if (REFRESH_TOKEN.equals(claims.get(TOKEN_USE_CLAIM, String.class))) {
+			log.warn("Refresh token presented as access token for user: {}", claims.getSubject());
+			return Optional.empty();
+		}
+		if (revocationList.isRevoked(claims.getId(), claims.getSubject(),
+				claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null)) {
+			log.warn("Revoked JWT token for user: {}", claims.getSubject());
+			return Optional.empty();
+		}
+		return Optional.of(claims);
+	}
+
+	public Optional<Claims> verifyBearer(String authorizationHeader) {
+		if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+			return Optional.empty();
+		}
+		return verify(authorizationHeader.substring(7));
+	}
+
+	@SuppressWarnings("unchecked")
+	public static List<String> roles(Claims claims) {
+		List<String> roles = claims.get("roles", List.class);
+		return roles == null ? List.of() : roles;
+	}
+
+	public static boolean isAdmin(Claims claims) {
+		return roles(claims).contains(ADMIN_ROLE);
+	}
+}
@@ -0,0 +1,30 @@
+package com.ecommerce.common;
+
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaConsumerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Consumer instrumentation shared by every listener. Boot already binds the Kafka client
+ * metrics (fetch rate, records-lag, commit latency) to the registry; this adds per
+ * partition throughput and poll sizes through {@link ListenerPollInterceptor}. Processing
+ * time comes from {@link ListenerLatencyInterceptor}, lag from {@link ConsumerLagMonitor},
+ * which is imported along with its health indicator.
+ */
+@Configuration
+@Import({ConsumerLagMonitor.class, ConsumerLagHealthIndicator.class})
+public class KafkaMetricsConfig {
+
+	@Bean
+	public DefaultKafkaConsumerFactoryCustomizer listenerPollMetrics(MeterRegistry meterRegistry) {
+		return consumerFactory -> consumerFactory.updateConfigs(Map.of(
+				ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG, ListenerPollInterceptor.class.getName(),
+				ListenerPollInterceptor.METER_REGISTRY_CONFIG, meterRegistry));
+	}
+}
@@ -0,0 +1,64 @@
+package com.ecommerce.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.annotation.EnableKafkaRetryTopic;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+/**
+ * Retry topics for the services' @RetryableTopic listeners and the templates that feed
+ * them; brings {@link DeadLetterReplayService} along since it sends through the same one.
+ */
+@Configuration
+@EnableKafkaRetryTopic
+@Import(DeadLetterReplayService.class)
+public class KafkaRetryConfig {
+
+	// Declaring any KafkaTemplate turns off Boot's default one, so keep it here as the primary.
+	// Observation continues the current trace into the record headers.
+	@Bean
+	@Primary
+	public KafkaTemplate<?, ?> kafkaTemplate(ProducerFactory<Object, Object> producerFactory) {
+		KafkaTemplate<Object, Object> template = new KafkaTemplate<>(producerFactory);
+		template.setObservationEnabled(true);
+		return template;
+	}
+
+	/**
+	 * Template used to move failed records to the retry and dead-letter topics.
+	 * Records that could not be deserialized arrive as raw bytes, everything else
+	 * is re-encoded the same way it was produced.
+	 */
+	@Bean
+	public KafkaTemplate<Object, Object> retryKafkaTemplate(ProducerFactory<Object, Object> producerFactory) {
+		KafkaTemplate<Object, Object> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+				producerFactory.getConfigurationProperties(),
+				byTypeSerializer(),
+				byTypeSerializer()));
+		template.setObservationEnabled(true);
+		return template;
+	}
+
+	private Serializer<Object> byTypeSerializer() {
+		JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+		jsonSerializer.setAddTypeInfo(false);
+
+		Map<Class<?>, Serializer<?>> delegates = new LinkedHashMap<>();
+		delegates.put(byte[].class, new ByteArraySerializer());
+		delegates.put(String.class, new StringSerializer());
+		delegates.put(Object.class, jsonSerializer);
+		return new DelegatingByTypeSerializer(delegates, true);
+	}
+}
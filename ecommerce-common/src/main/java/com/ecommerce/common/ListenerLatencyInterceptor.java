@@ -0,0 +1,101 @@
+package com.ecommerce.common;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Records, per topic and consumer group, how long each record waited between being
+ * produced and reaching a listener (kafka.consumer.dwell) and how long the listener took
+ * (kafka.consumer.processing), both as histograms. The dwell time is also tagged on the
+ * listener's span. Boot applies this interceptor to every listener container it configures once the
+ * service imports it.
+ */
+@Component
+@RequiredArgsConstructor
+public class ListenerLatencyInterceptor implements RecordInterceptor<Object, Object> {
+
+	private final MeterRegistry meterRegistry;
+	private final ObservationRegistry observationRegistry;
+	private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+	// Listener threads handle one record at a time
+	private final ThreadLocal<long[]> startNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+	@Override
+	public ConsumerRecord<Object, Object> intercept(ConsumerRecord<Object, Object> record, Consumer<Object, Object> consumer) {
+		long dwellMs = Math.max(0, System.currentTimeMillis() - producedAt(record));
+		timer("kafka.consumer.dwell", "Time from produce until a listener received the record",
+				record.topic(), groupId(consumer), null).record(dwellMs, TimeUnit.MILLISECONDS);
+
+		Observation observation = observationRegistry.getCurrentObservation();
+		if (observation != null) {
+			observation.highCardinalityKeyValue("messaging.kafka.dwell.ms", Long.toString(dwellMs));
+		}
+		startNanos.get()[0] = System.nanoTime();
+		return record;
+	}
+
+	@Override
+	public void success(ConsumerRecord<Object, Object> record, Consumer<Object, Object> consumer) {
+		recordProcessing(record, consumer, "success");
+	}
+
+	@Override
+	public void failure(ConsumerRecord<Object, Object> record, Exception exception, Consumer<Object, Object> consumer) {
+		recordProcessing(record, consumer, "failure");
+	}
+
+	private void recordProcessing(ConsumerRecord<Object, Object> record, Consumer<Object, Object> consumer, String outcome) {
+		long elapsed = System.nanoTime() - startNanos.get()[0];
+		timer("kafka.consumer.processing", "Time a listener spent on one record",
+				record.topic(), groupId(consumer), outcome).record(elapsed, TimeUnit.NANOSECONDS);
+	}
+
+	// Falls back to the record timestamp for producers that do not stamp the header
+	private long producedAt(ConsumerRecord<Object, Object> record) {
+		Header header = record.headers().lastHeader(ProducedAtInterceptor.PRODUCED_AT_HEADER);
+		if (header != null) {
+			try {
+				return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+			} catch (NumberFormatException e) {
+				// not ours, use the record timestamp
+			}
+		}
+		return record.timestamp();
+	}
+
+	private String groupId(Consumer<Object, Object> consumer) {
+		return consumer.groupMetadata().groupId();
+	}
+
+	private Timer timer(String name, String description, String topic, String group, String outcome) {
+		String key = name + '|' + topic + '|' + group + '|' + outcome;
+		return timers.computeIfAbsent(key, k -> {
+			Timer.Builder builder = Timer.builder(name)
+					.description(description)
+					.tag("topic", topic)
+					.tag("group", group)
+					.publishPercentileHistogram()
+					.minimumExpectedValue(Duration.ofMillis(1))
+					.maximumExpectedValue(Duration.ofMinutes(5));
+			if (outcome != null) {
+				builder.tag("outcome", outcome);
+			}
+			return builder.register(meterRegistry);
+		});
+	}
+}
@@ -0,0 +1,81 @@
+package com.ecommerce.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts what every consumer of the service receives: records per partition
+ * (kafka.consumer.partition.records, rate() gives records/sec) and the size of each
+ * non-empty poll (kafka.consumer.poll.records). Kafka instantiates the interceptor, the
+ * registry is handed over through the consumer configs by {@link KafkaMetricsConfig}.
+ */
+public class ListenerPollInterceptor implements ConsumerInterceptor<Object, Object> {
+
+	public static final String METER_REGISTRY_CONFIG = "ecommerce.metrics.meter-registry";
+
+	private final Map<TopicPartition, Counter> partitionRecords = new ConcurrentHashMap<>();
+	private MeterRegistry meterRegistry;
+	private String group;
+	private DistributionSummary pollRecords;
+	private Counter commits;
+
+	@Override
+	public void configure(Map<String, ?> configs) {
+		meterRegistry = (MeterRegistry) configs.get(METER_REGISTRY_CONFIG);
+		Object groupId = configs.get(ConsumerConfig.GROUP_ID_CONFIG);
+		group = groupId != null ? groupId.toString() : "none";
+		if (meterRegistry == null) {
+			return;
+		}
+		pollRecords = DistributionSummary.builder("kafka.consumer.poll.records")
+				.description("Records returned by one non-empty poll")
+				.baseUnit("records")
+				.tag("group", group)
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		commits = Counter.builder("kafka.consumer.commits")
+				.description("Offset commits completed")
+				.tag("group", group)
+				.register(meterRegistry);
+	}
+
+	@Override
+	public ConsumerRecords<Object, Object> onConsume(ConsumerRecords<Object, Object> records) {
+		// Idle polls return nothing many times a second and would drown the batch sizes
+		if (meterRegistry == null || records.isEmpty()) {
+			return records;
+		}
+		pollRecords.record(records.count());
+		for (TopicPartition partition : records.partitions()) {
+			partitionRecords.computeIfAbsent(partition, tp -> Counter.builder("kafka.consumer.partition.records")
+					.description("Records received per partition")
+					.tag("group", group)
+					.tag("topic", tp.topic())
+					.tag("partition", Integer.toString(tp.partition()))
+					.register(meterRegistry))
+					.increment(records.records(partition).size());
+		}
+		return records;
+	}
+
+	@Override
+	public void onCommit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+		if (commits != null) {
+			commits.increment();
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,39 @@
+package com.ecommerce.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/**
+ * Stamps every outgoing record with the wall clock time it was handed to the producer, so
+ * consumers can measure how long it sat in the broker regardless of the topic's timestamp
+ * type. Registered through spring.kafka.producer.properties.interceptor.classes.
+ */
+public class ProducedAtInterceptor implements ProducerInterceptor<Object, Object> {
+
+	public static final String PRODUCED_AT_HEADER = "produced-at";
+
+	@Override
+	public ProducerRecord<Object, Object> onSend(ProducerRecord<Object, Object> record) {
+		// Retried and replayed records carry the original stamp, each send gets a fresh one
+		record.headers().remove(PRODUCED_AT_HEADER);
+		record.headers().add(PRODUCED_AT_HEADER,
+				Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+		return record;
+	}
+
+	@Override
+	public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+	}
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public void configure(Map<String, ?> configs) {
+	}
+}
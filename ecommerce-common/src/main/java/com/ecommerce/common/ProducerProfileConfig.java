@@ -0,0 +1,27 @@
+package com.ecommerce.common;
+
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Applies the service's producer profile and registers {@link ProducerProfiles} for
+ * topics that send on another one.
+ */
+@Configuration
+@EnableConfigurationProperties(ProducerProfileProperties.class)
+@Import(ProducerProfiles.class)
+@Slf4j
+public class ProducerProfileConfig {
+
+	// The service profile goes onto Boot's producer factory, every template built from it inherits it
+	@Bean
+	public DefaultKafkaProducerFactoryCustomizer producerProfileCustomizer(ProducerProfileProperties properties) {
+		log.info("Kafka producer profile {}, per topic {}", properties.getProfile(), properties.getTopics());
+		return producerFactory -> producerFactory.updateConfigs(properties.configs(properties.getProfile()));
+	}
+}
@@ -0,0 +1,34 @@
+package com.ecommerce.common;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Named sets of Kafka producer settings under kafka.producer.profiles. The service runs
+ * on {@code profile}; {@code topics} moves individual topics to another profile, which
+ * means a separate producer for them.
+ */
+@Data
+@ConfigurationProperties(prefix = "kafka.producer")
+public class ProducerProfileProperties {
+
+	private String profile = "balanced";
+	private Map<String, String> topics = new HashMap<>();
+	private Map<String, Map<String, String>> profiles = new HashMap<>();
+
+	public String profileFor(String topic) {
+		return topics.getOrDefault(topic, profile);
+	}
+
+	public Map<String, Object> configs(String name) {
+		Map<String, String> configs = profiles.get(name);
+		if (configs == null) {
+			throw new IllegalStateException("Unknown Kafka producer profile: " + name);
+		}
+		return new HashMap<>(configs);
+	}
+}
@@ -0,0 +1,67 @@
+package com.ecommerce.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Picks the template to send with by topic. Topics on the service profile use the primary
+ * template, whose producer already runs on that profile (see {@link ProducerProfileConfig});
+ * a topic mapped to another profile gets its own producer, created on first use. Topics
+ * sharing a producer share its batches and requests to the broker.
+ */
+@Component
+@Slf4j
+public class ProducerProfiles {
+
+	private final Map<String, KafkaTemplate<String, Object>> templates = new ConcurrentHashMap<>();
+	private final ProducerProfileProperties properties;
+	private final ProducerFactory<Object, Object> producerFactory;
+	private final KafkaTemplate<String, Object> kafkaTemplate;
+	private final ApplicationContext applicationContext;
+
+	public ProducerProfiles(ProducerProfileProperties properties, ProducerFactory<Object, Object> producerFactory,
+			KafkaTemplate<String, Object> kafkaTemplate, ApplicationContext applicationContext) {
+		this.properties = properties;
+		this.producerFactory = producerFactory;
+		this.kafkaTemplate = kafkaTemplate;
+		this.applicationContext = applicationContext;
+		// Fail on startup rather than on the first send to a misconfigured topic
+		properties.getTopics().values().forEach(properties::configs);
+	}
+
+	public KafkaTemplate<String, Object> templateFor(String topic) {
+		String profile = properties.profileFor(topic);
+		if (profile.equals(properties.getProfile())) {
+			return kafkaTemplate;
+		}
+		return templates.computeIfAbsent(profile, this::createTemplate);
+	}
+
+	private KafkaTemplate<String, Object> createTemplate(String profile) {
+		Map<String, Object> configs = new HashMap<>(producerFactory.getConfigurationProperties());
+		configs.putAll(properties.configs(profile));
+
+		KafkaTemplate<String, Object> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(configs));
+		template.setObservationEnabled(true);
+		// Picks up the observation registry the way context-managed templates do
+		template.setApplicationContext(applicationContext);
+		template.afterSingletonsInstantiated();
+		log.info("Created Kafka producer for profile {}", profile);
+		return template;
+	}
+
+	@PreDestroy
+	public void close() {
+		templates.values().forEach(template -> template.getProducerFactory().reset());
+	}
+}
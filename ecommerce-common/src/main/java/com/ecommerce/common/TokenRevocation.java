@@ -0,0 +1,23 @@
+package com.ecommerce.common;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entry of the token-revocations topic. Keyed "jti:&lt;id&gt;" for a single token, carrying
+ * its expiry, or "user:&lt;subject&gt;" for every token of a user issued before revokedBefore.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TokenRevocation {
+
+    private String jti;
+    private String subject;
+    private Long expiresAt;
+    private Long revokedBefore;
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.common;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * OUT_OF_SERVICE while {@link TokenRevocationList} is still loading the topic, since every
+ * token is refused until then. Shows up as tokenRevocations under /actuator/health.
+ */
+@Component("tokenRevocationsHealthIndicator")
+@RequiredArgsConstructor
+public class TokenRevocationHealthIndicator implements HealthIndicator {
+
+	private final TokenRevocationList revocationList;
+
+	@Override
+	public Health health() {
+		return (revocationList.isCaughtUp() ? Health.up() : Health.outOfService()).build();
+	}
+}
@@ -0,0 +1,319 @@
+package com.ecommerce.common;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local replica of the compacted token-revocations topic, read from the beginning by
+ * every instance without a consumer group. A bloom filter sits in front of the exact
+ * maps, so a token that was never revoked is answered from memory with a couple of bit
+ * probes and no map lookup. The filter is rebuilt whenever expired entries are pruned.
+ * Until the topic has been read up to where it ended at startup every token counts as
+ * revoked, and {@link TokenRevocationHealthIndicator} keeps the instance out of service;
+ * the same goes while a failed consumer is restarted and catches up again.
+ */
+@Component
+@Import(TokenRevocationHealthIndicator.class)
+@Slf4j
+public class TokenRevocationList {
+
+	public static final String TOPIC = "token-revocations";
+	public static final String JTI_PREFIX = "jti:";
+	public static final String USER_PREFIX = "user:";
+
+	private static final long MIN_BACKOFF_MS = 1000;
+	private static final long MAX_BACKOFF_MS = 30000;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+	private final Map<String, Long> revokedBefore = new ConcurrentHashMap<>();
+	private final ConsumerFactory<?, ?> consumerFactory;
+	private final String applicationName;
+	private final long retentionMs;
+	private final long pruneIntervalMs;
+	private final int expectedInsertions;
+
+	private volatile BloomFilter filter;
+	private volatile boolean running;
+	private volatile boolean caughtUp;
+	private volatile Consumer<String, String> consumer;
+	private Thread poller;
+	private int failures;
+
+	public TokenRevocationList(ConsumerFactory<?, ?> consumerFactory,
+			@Value("${spring.application.name}") String applicationName,
+			@Value("${jwt.revocation.retention-ms:691200000}") long retentionMs,
+			@Value("${jwt.revocation.prune-interval-ms:600000}") long pruneIntervalMs,
+			@Value("${jwt.revocation.bloom.expected-insertions:100000}") int expectedInsertions) {
+		this.consumerFactory = consumerFactory;
+		this.applicationName = applicationName;
+		this.retentionMs = retentionMs;
+		this.pruneIntervalMs = pruneIntervalMs;
+		this.expectedInsertions = expectedInsertions;
+		this.filter = new BloomFilter(expectedInsertions);
+	}
+
+	@PostConstruct
+	public void start() {
+		running = true;
+		poller = new Thread(this::poll, "token-revocations");
+		poller.setDaemon(true);
+		poller.start();
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		Consumer<String, String> current = consumer;
+		if (current != null) {
+			current.wakeup();
+		}
+		poller.join(5000);
+	}
+
+	public boolean isCaughtUp() {
+		return caughtUp;
+	}
+
+	public boolean isRevoked(String jti, String subject, Instant issuedAt) {
+		// Fail closed, a revocation not read yet must not let its token through
+		if (!caughtUp) {
+			return true;
+		}
+		BloomFilter current = filter;
+		if (jti != null && current.mightContain(JTI_PREFIX + jti) && revokedTokens.containsKey(jti)) {
+			return true;
+		}
+		if (subject != null && current.mightContain(USER_PREFIX + subject)) {
+			Long before = revokedBefore.get(subject);
+			// iat only has seconds, a token issued within the second of the revocation counts as before it
+			return before != null && (issuedAt == null || issuedAt.getEpochSecond() <= Math.floorDiv(before, 1000));
+		}
+		return false;
+	}
+
+	/**
+	 * Applies one topic entry; a null value is a tombstone. Also used by the publisher to
+	 * take effect locally before the record has made the round trip through Kafka.
+	 */
+	public void apply(String key, TokenRevocation revocation) {
+		if (key == null) {
+			return;
+		}
+		if (key.startsWith(JTI_PREFIX)) {
+			String jti = key.substring(JTI_PREFIX.length());
+			if (revocation == null) {
+				revokedTokens.remove(jti);
+				return;
+			}
+			revokedTokens.put(jti, revocation.getExpiresAt() != null ? revocation.getExpiresAt() : Long.MAX_VALUE);
+		} else if (key.startsWith(USER_PREFIX)) {
+			String subject = key.substring(USER_PREFIX.length());
+			if (revocation == null || revocation.getRevokedBefore() == null) {
+				revokedBefore.remove(subject);
+				return;
+			}
+			revokedBefore.merge(subject, revocation.getRevokedBefore(), Math::max);
+		} else {
+			return;
+		}
+		filter.put(key);
+	}
+
+	// Restarts the consumer with backoff after a failure, where the failed one stopped
+	private void poll() {
+		Map<TopicPartition, Long> positions = new HashMap<>();
+		while (running) {
+			try {
+				consume(positions);
+			} catch (WakeupException e) {
+				log.debug("Token revocation replica stopped");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				// Fail closed, revocations published meanwhile are not applied until it catches up again
+				caughtUp = false;
+				long backoffMs = Math.min(MAX_BACKOFF_MS, MIN_BACKOFF_MS << Math.min(failures++, 5));
+				log.error("Token revocation replica failed, restarting in {} ms", backoffMs, e);
+				try {
+					Thread.sleep(backoffMs);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private void consume(Map<TopicPartition, Long> positions) throws InterruptedException {
+		Properties overrides = new Properties();
+		overrides.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+		overrides.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+		overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+		overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+
+		@SuppressWarnings("unchecked")
+		Consumer<String, String> created = (Consumer<String, String>) consumerFactory.createConsumer(
+				applicationName + "-token-revocations", null, "-token-revocations", overrides);
+		consumer = created;
+		try (created) {
+			List<TopicPartition> partitions = awaitPartitions(created);
+			created.assign(partitions);
+			for (TopicPartition partition : partitions) {
+				Long position = positions.get(partition);
+				if (position != null) {
+					created.seek(partition, position);
+				} else {
+					created.seekToBeginning(List.of(partition));
+				}
+			}
+			Map<TopicPartition, Long> endOffsets = created.endOffsets(partitions);
+
+			long nextPrune = System.currentTimeMillis() + pruneIntervalMs;
+			while (running) {
+				for (ConsumerRecord<String, String> record : created.poll(Duration.ofMillis(500))) {
+					TokenRevocation revocation = parse(record);
+					if (revocation != null || record.value() == null) {
+						apply(record.key(), revocation);
+					}
+					positions.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+				}
+				if (!caughtUp && partitions.stream().allMatch(tp -> created.position(tp) >= endOffsets.get(tp))) {
+					caughtUp = true;
+					failures = 0;
+					log.info("Token revocation list loaded: {} tokens, {} users", revokedTokens.size(), revokedBefore.size());
+				}
+				if (System.currentTimeMillis() >= nextPrune) {
+					prune();
+					nextPrune = System.currentTimeMillis() + pruneIntervalMs;
+				}
+			}
+		}
+	}
+
+	private List<TopicPartition> awaitPartitions(Consumer<String, String> consumer) throws InterruptedException {
+		while (running) {
+			List<TopicPartition> partitions = consumer.partitionsFor(TOPIC).stream()
+					.map(info -> new TopicPartition(info.topic(), info.partition()))
+					.toList();
+			if (!partitions.isEmpty()) {
+				return partitions;
+			}
+			log.info("Waiting for topic {} to be created", TOPIC);
+			Thread.sleep(5000);
+		}
+		return List.of();
+	}
+
+	private TokenRevocation parse(ConsumerRecord<String, String> record) {
+		if (record.value() == null) {
+			return null;
+		}
+		try {
+			return objectMapper.readValue(record.value(), TokenRevocation.class);
+		} catch (JsonProcessingException e) {
+			log.error("Skipping unreadable token revocation at offset {}: {}", record.offset(), e.getMessage());
+			return null;
+		}
+	}
+
+	private void prune() {
+		long now = System.currentTimeMillis();
+		revokedTokens.values().removeIf(expiresAt -> expiresAt < now);
+		// Every token issued before this point has expired by now
+		revokedBefore.values().removeIf(before -> before < now - retentionMs);
+
+		BloomFilter rebuilt = new BloomFilter(Math.max(expectedInsertions, 2 * (revokedTokens.size() + revokedBefore.size())));
+		fill(rebuilt);
+		filter = rebuilt;
+		// Entries applied to the old filter while rebuilding
+		fill(rebuilt);
+	}
+
+	private void fill(BloomFilter target) {
+		revokedTokens.keySet().forEach(jti -> target.put(JTI_PREFIX + jti));
+		revokedBefore.keySet().forEach(subject -> target.put(USER_PREFIX + subject));
+	}
+
+	private static final class BloomFilter {
+		private static final double FALSE_POSITIVE_RATE = 0.01;
+
+		private final AtomicLongArray words;
+		private final long bits;
+		private final int hashes;
+
+		private BloomFilter(int expectedInsertions) {
+			long size = (long) Math.ceil(-expectedInsertions * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+			this.words = new AtomicLongArray((int) ((size + 63) / 64));
+			this.bits = words.length() * 64L;
+			this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+		}
+
+		private void put(String value) {
+			long hash1 = hash(value);
+			long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+			for (int i = 0; i < hashes; i++) {
+				long bit = Math.floorMod(hash1 + i * hash2, bits);
+				long mask = 1L << bit;
+				int word = (int) (bit >>> 6);
+				words.getAndAccumulate(word, mask, (current, m) -> current | m);
+			}
+		}
+
+		private boolean mightContain(String value) {
+			long hash1 = hash(value);
+			long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+			for (int i = 0; i < hashes; i++) {
+				long bit = Math.floorMod(hash1 + i * hash2, bits);
+				if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// FNV-1a over the chars, finished with the murmur3 mixer
+		private static long hash(String value) {
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0; i < value.length(); i++) {
+				hash ^= value.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+			return mix(hash);
+		}
+
+		private static long mix(long hash) {
+			hash ^= hash >>> 33;
+			hash *= 0xff51afd7ed558ccdL;
+			hash ^= hash >>> 33;
+			hash *= 0xc4ceb9fe1a85ec53L;
+			hash ^= hash >>> 33;
+			return hash;
+		}
+	}
+}
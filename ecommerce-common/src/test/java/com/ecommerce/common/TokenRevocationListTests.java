@@ -0,0 +1,114 @@
+package com.ecommerce.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TokenRevocationListTests {
+
+	private static final long RETENTION_MS = 60_000;
+	private static final long REVOKED_BEFORE = 1_700_000_000_500L;
+
+	private TokenRevocationList list;
+
+	@BeforeEach
+	void setUp() {
+		// Not started, entries are applied directly instead of read from Kafka
+		list = new TokenRevocationList(null, "test", RETENTION_MS, 600_000, 1000);
+		ReflectionTestUtils.setField(list, "caughtUp", true);
+	}
+
+	@Test
+	void everyTokenIsRevokedUntilCaughtUp() {
+		ReflectionTestUtils.setField(list, "caughtUp", false);
+
+		assertThat(list.isRevoked("never-revoked", "alice", Instant.now())).isTrue();
+	}
+
+	@Test
+	void revokedTokensAreFoundBeyondTheFilterSize() {
+		// Five times the expected insertions, the filter saturates but never misses
+		for (int i = 0; i < 5000; i++) {
+			list.apply(TokenRevocationList.JTI_PREFIX + "revoked-" + i, jti("revoked-" + i, Long.MAX_VALUE));
+		}
+
+		for (int i = 0; i < 5000; i++) {
+			assertThat(list.isRevoked("revoked-" + i, "alice", Instant.now())).isTrue();
+			assertThat(list.isRevoked("other-" + i, "alice", Instant.now())).isFalse();
+		}
+	}
+
+	@Test
+	void tombstoneLiftsTheRevocation() {
+		list.apply(TokenRevocationList.JTI_PREFIX + "t1", jti("t1", Long.MAX_VALUE));
+
+		list.apply(TokenRevocationList.JTI_PREFIX + "t1", null);
+
+		assertThat(list.isRevoked("t1", "alice", Instant.now())).isFalse();
+	}
+
+	@Test
+	void userRevocationCoversTokensIssuedUpToItsSecond() {
+		list.apply(TokenRevocationList.USER_PREFIX + "alice", user("alice", REVOKED_BEFORE));
+
+		assertThat(list.isRevoked("t1", "alice", Instant.ofEpochSecond(1_699_999_999))).isTrue();
+		// iat has seconds only, the token may have been issued before the revocation
+		assertThat(list.isRevoked("t1", "alice", Instant.ofEpochSecond(1_700_000_000))).isTrue();
+		assertThat(list.isRevoked("t1", "alice", Instant.ofEpochSecond(1_700_000_001))).isFalse();
+		assertThat(list.isRevoked("t1", "alice", null)).isTrue();
+		assertThat(list.isRevoked("t1", "bob", Instant.ofEpochSecond(1_699_999_999))).isFalse();
+	}
+
+	@Test
+	void laterUserRevocationWins() {
+		list.apply(TokenRevocationList.USER_PREFIX + "alice", user("alice", REVOKED_BEFORE));
+		list.apply(TokenRevocationList.USER_PREFIX + "alice", user("alice", REVOKED_BEFORE - 10_000));
+
+		assertThat(list.isRevoked("t1", "alice", Instant.ofEpochSecond(1_699_999_995))).isTrue();
+	}
+
+	@Test
+	void pruneDropsOnlyWhatCanNoLongerMatter() {
+		long now = System.currentTimeMillis();
+		list.apply(TokenRevocationList.JTI_PREFIX + "expired", jti("expired", now - 1000));
+		list.apply(TokenRevocationList.JTI_PREFIX + "live", jti("live", now + 60_000));
+		list.apply(TokenRevocationList.USER_PREFIX + "old", user("old", now - RETENTION_MS - 1000));
+		list.apply(TokenRevocationList.USER_PREFIX + "recent", user("recent", now - 1000));
+
+		ReflectionTestUtils.invokeMethod(list, "prune");
+
+		Instant longAgo = Instant.ofEpochMilli(now - 2 * RETENTION_MS);
+		assertThat(list.isRevoked("expired", null, null)).isFalse();
+		assertThat(list.isRevoked("live", null, null)).isTrue();
+		assertThat(list.isRevoked(null, "old", longAgo)).isFalse();
+		assertThat(list.isRevoked(null, "recent", longAgo)).isTrue();
+	}
+
+	@Test
+	void entriesAppliedAfterPruneAreFound() {
+		ReflectionTestUtils.invokeMethod(list, "prune");
+
+		list.apply(TokenRevocationList.JTI_PREFIX + "t1", jti("t1", Long.MAX_VALUE));
+
+		assertThat(list.isRevoked("t1", null, null)).isTrue();
+	}
+
+	@Test
+	void unknownKeysAreIgnored() {
+		list.apply("group:admins", user("admins", REVOKED_BEFORE));
+
+		assertThat(list.isRevoked(null, "admins", Instant.ofEpochSecond(1_699_999_999))).isFalse();
+	}
+
+	private static TokenRevocation jti(String jti, long expiresAt) {
+		return new TokenRevocation(jti, null, expiresAt, null);
+	}
+
+	private static TokenRevocation user(String subject, long revokedBefore) {
+		return new TokenRevocation(null, subject, null, revokedBefore);
+	}
+}
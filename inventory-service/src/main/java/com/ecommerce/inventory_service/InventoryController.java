@@ -1,13 +1,22 @@
 package com.ecommerce.inventory_service;
 
+import java.util.Optional;
+
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.ecommerce.common.DeadLetterReplayService;
+import com.ecommerce.common.JwtClaimsVerifier;
+
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -16,6 +25,8 @@ import lombok.RequiredArgsConstructor;
 public class InventoryController {
 
 private final InventoryService inventoryService;
+private final DeadLetterReplayService deadLetterReplayService;
+private final JwtClaimsVerifier jwtClaimsVerifier;
     
     @GetMapping(value="/{productId}",consumes = {MediaType.APPLICATION_JSON_VALUE,MediaType.TEXT_PLAIN_VALUE}, 
             produces = MediaType.APPLICATION_JSON_VALUE)
@@ -31,6 +42,26 @@ private final InventoryService inventoryService;
         return ResponseEntity.ok().build();
     }
     
+    // Admins only, the rest of the API stays open
+    @PostMapping("/dlt/{topic}/replay")
+    public ResponseEntity<String> replayDeadLetters(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                    @PathVariable String topic,
+                                                    @RequestParam(defaultValue = "100") int maxRecords,
+                                                    @RequestParam(defaultValue = "10") int ratePerSecond) {
+        Optional<Claims> caller = jwtClaimsVerifier.verifyBearer(authorization);
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!JwtClaimsVerifier.isAdmin(caller.get())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!deadLetterReplayService.isReplayable(topic)) {
+            return ResponseEntity.notFound().build();
+        }
+        int replayed = deadLetterReplayService.replay(topic, maxRecords, ratePerSecond);
+        return ResponseEntity.ok("Replayed " + replayed + " records from " + deadLetterReplayService.deadLetterTopic(topic));
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Inventory Service is healthy");
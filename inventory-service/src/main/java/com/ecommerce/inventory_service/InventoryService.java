@@ -1,16 +1,26 @@
 package com.ecommerce.inventory_service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
 import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.ecommerce.common.ProducerProfiles;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
@@ -23,8 +33,13 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class InventoryService {
 
+	// Set by order-service, copied onto the inventory events of the order
+	public static final String CORRELATION_ID_HEADER = "correlation-id";
+
 	private final InventoryRepository inventoryRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+	private final ProcessedOrderRepository processedOrderRepository;
+	private final TransactionTemplate transactionTemplate;
+    private final ProducerProfiles producerProfiles;
     private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
     
     @PostConstruct
@@ -49,78 +64,109 @@ public class InventoryService {
     	}
     }
     
+    @RetryableTopic(
+            attempts = "${kafka.retry.attempts:4}",
+            backoff = @Backoff(delayExpression = "${kafka.retry.delay-ms:1000}",
+                    multiplierExpression = "${kafka.retry.multiplier:2.0}",
+                    maxDelayExpression = "${kafka.retry.max-delay-ms:30000}"),
+            numPartitions = "${kafka.retry.partitions:3}",
+            retryTopicSuffix = "-${spring.application.name}-retry",
+            dltTopicSuffix = "-${spring.application.name}-dlt",
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            exclude = JsonProcessingException.class,
+            traversingCauses = "true",
+            kafkaTemplate = "retryKafkaTemplate")
     @KafkaListener(topics = "orders", groupId = "inventory-service-group")
-    public void handleOrderEvent(String  message) {
-    	
-    	try {
-    		log.info("📦 Received raw message from 'orders' topic");
-            
-            
-            // Parse JSON manually
-            OrderEvent event = objectMapper.readValue(message, OrderEvent.class);
+    public void handleOrderEvent(String  message,
+    		@org.springframework.messaging.handler.annotation.Header(name = CORRELATION_ID_HEADER, required = false) byte[] correlationId) throws JsonProcessingException {
     	
+    	log.info("📦 Received raw message from 'orders' topic");
+        
+        // Unparseable payloads are not retried, they go straight to the DLT
+        OrderEvent event = objectMapper.readValue(message, OrderEvent.class);
     	
     	log.info("Processing order event: {} with status: {}", event.getOrderId(), event.getStatus());
     	
     	if(event.getStatus() == OrderEvent.OrderStatus.CREATED) {
-    		 try {
-    			 
-    			 for(OrderEvent.OrderItem item : event.getItems()) {
-    				 
-    				 Optional<ProductInventory> inventoryOpt  = inventoryRepository.findById(item.getProductId());
-    				 
-    				 if(inventoryOpt.isPresent()) {
-    					 
-    					 ProductInventory inventory = inventoryOpt.get();
-    					 
-    					 if(inventory.canReserve(item.getQuantity())) {
-    						 inventory.reserve(item.getQuantity());
-                             inventoryRepository.save(inventory);
-                             
-                             // Send inventory reserved event
-                             InventoryEvent inventoryEvent = new InventoryEvent();
-                             inventoryEvent.setProductId(item.getProductId());
-                             inventoryEvent.setProductName(item.getProductName());
-                             inventoryEvent.setQuantity(item.getQuantity());
-                             inventoryEvent.setUpdateType(InventoryEvent.InventoryUpdateType.RESERVED);
-                             inventoryEvent.setOrderId(event.getOrderId());
-                             inventoryEvent.setTimestamp(LocalDateTime.now());
-                             
-                             kafkaTemplate.send("inventory-events",event.getOrderId(), inventoryEvent);
-                             log.info("Inventory reserved for order: {}, product: {}", 
-                                     event.getOrderId(), item.getProductId());
-                             
-                             // Check low stock
-                             if (inventory.getAvailableQuantity() < 10) {
-                                 sendLowStockAlert(inventory);
-                             }
-    					 }else {
-    						 log.warn("Insufficient stock for order: {}, product: {}", 
-                                     event.getOrderId(), item.getProductId());
-    					 }
-    				 }else {
-                         log.error("Product not found: {}", item.getProductId());
+    		// All items or none, a failure rolls back the items already reserved
+    		ProcessedOrder processed = transactionTemplate.execute(status -> reserve(event));
+    		publish(processed, correlationId);
+    	}
+    }
+    
+    // Redeliveries and dead letter replays of an order find it processed and reserve nothing
+    private ProcessedOrder reserve(OrderEvent event) {
+    	Optional<ProcessedOrder> existing = processedOrderRepository.findById(event.getOrderId());
+    	if (existing.isPresent()) {
+    		log.info("Order {} already reserved, skipping", event.getOrderId());
+    		return existing.get();
+    	}
+    	
+    	List<InventoryEvent> events = new ArrayList<>();
+		 for(OrderEvent.OrderItem item : event.getItems()) {
+			 
+			 Optional<ProductInventory> inventoryOpt  = inventoryRepository.findById(item.getProductId());
+			 
+			 if(inventoryOpt.isPresent()) {
+				 
+				 ProductInventory inventory = inventoryOpt.get();
+				 
+				 if(inventory.canReserve(item.getQuantity())) {
+					 inventory.reserve(item.getQuantity());
+                     inventoryRepository.save(inventory);
+                     
+                     // Inventory reserved event, sent once the transaction has committed
+                     InventoryEvent inventoryEvent = new InventoryEvent();
+                     inventoryEvent.setProductId(item.getProductId());
+                     inventoryEvent.setProductName(item.getProductName());
+                     inventoryEvent.setQuantity(item.getQuantity());
+                     inventoryEvent.setUpdateType(InventoryEvent.InventoryUpdateType.RESERVED);
+                     inventoryEvent.setOrderId(event.getOrderId());
+                     inventoryEvent.setTimestamp(LocalDateTime.now());
+                     events.add(inventoryEvent);
+                     
+                     // Check low stock
+                     if (inventory.getAvailableQuantity() < 10) {
+                         sendLowStockAlert(inventory);
                      }
-    			 }
-    			 
-    		 }catch (Exception e) {
-                 log.error("Error processing inventory for order: {}", 
-                         event.getOrderId(), e);
+				 }else {
+					 log.warn("Insufficient stock for order: {}, product: {}", 
+                             event.getOrderId(), item.getProductId());
+				 }
+			 }else {
+                 log.error("Product not found: {}", item.getProductId());
              }
+		 }
+    	// Conflicts with a concurrent delivery of the same order, which rolls this one back
+    	return processedOrderRepository.insert(new ProcessedOrder(event.getOrderId(), events, false, LocalDateTime.now()));
+    }
+    
+    // A failed send is retried from the retry topics, the redelivery sends the recorded events again
+    private void publish(ProcessedOrder processed, byte[] correlationId) {
+    	if (processed.isPublished()) {
+    		return;
     	}
-    	
-    	}catch (Exception e) {
-            log.error("❌ Failed to process message. Error: {}", e.getMessage());
-            
-            // Print the raw message for debugging
-            System.err.println("=".repeat(60));
-            System.err.println("RAW MESSAGE THAT FAILED:");
-            System.err.println(message);
-            System.err.println("=".repeat(60));
-            // Still acknowledge to move past the bad message
-            //acknowledgment.acknowledge();
-        }
-    	
+    	List<CompletableFuture<?>> sends = new ArrayList<>();
+    	for (InventoryEvent inventoryEvent : processed.getEvents()) {
+    		ProducerRecord<String, Object> record = new ProducerRecord<>("inventory-events", processed.getOrderId(), inventoryEvent);
+    		if (correlationId != null) {
+    			record.headers().add(CORRELATION_ID_HEADER, correlationId);
+    		}
+    		sends.add(producerProfiles.templateFor(record.topic()).send(record));
+    		log.info("Inventory reserved for order: {}, product: {}", 
+    				processed.getOrderId(), inventoryEvent.getProductId());
+    	}
+    	CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+    	processed.setPublished(true);
+    	processedOrderRepository.save(processed);
+    }
+    
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, String> record) {
+        Header error = record.headers().lastHeader(KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+        log.error("❌ Order event dead-lettered: Key={}, DLT Offset={}, Error={}", 
+                record.key(), record.offset(), 
+                error == null ? null : new String(error.value(), StandardCharsets.UTF_8));
     }
 
 	private void sendLowStockAlert(ProductInventory inventory) {
@@ -2,16 +2,43 @@ package com.ecommerce.inventory_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.annotation.EnableKafkaStreams;
 
+import com.ecommerce.common.JwksKeyCache;
+import com.ecommerce.common.JwtClaimsVerifier;
+import com.ecommerce.common.KafkaMetricsConfig;
+import com.ecommerce.common.KafkaRetryConfig;
+import com.ecommerce.common.ListenerLatencyInterceptor;
+import com.ecommerce.common.ProducerProfileConfig;
+import com.ecommerce.common.TokenRevocationList;
+
 @SpringBootApplication
 @EnableKafka
 @EnableKafkaStreams
+@Import({
+		KafkaRetryConfig.class,
+		ListenerLatencyInterceptor.class,
+		KafkaMetricsConfig.class,
+		ProducerProfileConfig.class,
+		TokenRevocationList.class,
+		JwksKeyCache.class,
+		JwtClaimsVerifier.class
+})
 public class InventoryServiceApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(InventoryServiceApplication.class, args);
 	}
 
+	// Reservations of an order commit together, MongoDB has to run as a replica set
+	@Bean
+	public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+		return new MongoTransactionManager(databaseFactory);
+	}
+
 }
@@ -18,6 +18,8 @@ public class OrderEvent {
     private BigDecimal totalAmount;
     private String shippingAddress;
     private LocalDateTime timestamp;
+    // Order row version at the time of the event, higher wins for the same order
+    private Long version;
     
     @Data
     @NoArgsConstructor
@@ -0,0 +1,29 @@
+package com.ecommerce.inventory_service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.*;
+
+/**
+ * An order whose items were reserved, written in the same transaction as the reservations.
+ * Holds the inventory events to send until they are published, so a redelivered order event
+ * re-sends them instead of reserving again. Kept as long as the orders topic keeps a record
+ * by default, then expired by MongoDB.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "processed_orders")
+public class ProcessedOrder {
+    @Id
+    private String orderId;
+    private List<InventoryEvent> events;
+    private boolean published;
+    @Indexed(expireAfter = "7d")
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,7 @@
+package com.ecommerce.inventory_service;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ProcessedOrderRepository extends MongoRepository<ProcessedOrder, String> {
+
+}
@@ -0,0 +1,158 @@
+package com.ecommerce.load_test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One HDR histogram per hop, recorded in microseconds. The report directory holds a
+ * summary.json to diff between builds and a percentile distribution (.hgrm, in
+ * milliseconds) per hop that HdrHistogram's plotter reads directly.
+ */
+@Slf4j
+public class LatencyReport {
+
+	public static final String HTTP = "http";
+	public static final String ORDER_PUBLISHED = "order-published";
+	public static final String RESERVATION = "reservation";
+	public static final String CONFIRMATION = "confirmation";
+	public static final String NOTIFICATION = "notification";
+	public static final String END_TO_END = "end-to-end";
+
+	private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	private static final String[] PERCENTILE_FIELDS = { "p50Ms", "p90Ms", "p99Ms", "p999Ms" };
+
+	private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+
+	public LatencyReport() {
+		for (String hop : new String[] { HTTP, ORDER_PUBLISHED, RESERVATION, CONFIRMATION, NOTIFICATION, END_TO_END }) {
+			recorders.put(hop, new Recorder(HIGHEST_TRACKABLE_MICROS, 3));
+		}
+	}
+
+	public void recordNanos(String hop, long nanos) {
+		record(hop, TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	// Kafka record timestamps and wall clock readings only have millisecond resolution
+	public void recordMillis(String hop, long millis) {
+		record(hop, TimeUnit.MILLISECONDS.toMicros(millis));
+	}
+
+	private void record(String hop, long micros) {
+		recorders.get(hop).recordValue(Math.min(Math.max(micros, 0), HIGHEST_TRACKABLE_MICROS));
+	}
+
+	/**
+	 * Writes the report and returns its directory.
+	 */
+	public Path write(LoadTestSettings settings, Map<String, Object> counters, Instant startedAt) throws IOException {
+		Path directory = settings.getReportDir().resolve(
+				LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + "-" + settings.getLabel());
+		Files.createDirectories(directory);
+
+		Map<String, Object> hops = new LinkedHashMap<>();
+		recorders.forEach((hop, recorder) -> {
+			Histogram histogram = recorder.getIntervalHistogram();
+			hops.put(hop, summarize(histogram));
+			if (histogram.getTotalCount() > 0) {
+				writeDistribution(directory.resolve(hop + ".hgrm"), histogram);
+			}
+		});
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("label", settings.getLabel());
+		summary.put("startedAt", startedAt.toString());
+		summary.put("settings", settings.describe());
+		summary.put("counters", counters);
+		summary.put("hops", hops);
+		objectMapper.writeValue(directory.resolve("summary.json").toFile(), summary);
+
+		log.info("Latency (ms)\n{}", table(hops));
+		if (settings.getCompareTo() != null) {
+			log.info("Compared with {}\n{}", settings.getCompareTo(), compare(hops, settings.getCompareTo()));
+		}
+		return directory;
+	}
+
+	private Map<String, Object> summarize(Histogram histogram) {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("count", histogram.getTotalCount());
+		if (histogram.getTotalCount() == 0) {
+			return summary;
+		}
+		summary.put("meanMs", round(histogram.getMean() / 1000.0));
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			summary.put(PERCENTILE_FIELDS[i], round(histogram.getValueAtPercentile(PERCENTILES[i]) / 1000.0));
+		}
+		summary.put("maxMs", round(histogram.getMaxValue() / 1000.0));
+		return summary;
+	}
+
+	private void writeDistribution(Path file, Histogram histogram) {
+		try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+			histogram.outputPercentileDistribution(out, 1000.0);
+		} catch (IOException e) {
+			log.warn("Failed to write {}: {}", file, e.getMessage());
+		}
+	}
+
+	private String table(Map<String, Object> hops) {
+		StringBuilder table = new StringBuilder(String.format("%-16s %10s %10s %10s %10s %10s %10s%n",
+				"hop", "count", "p50", "p90", "p99", "p999", "max"));
+		hops.forEach((hop, value) -> {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> summary = (Map<String, Object>) value;
+			table.append(String.format("%-16s %10s %10s %10s %10s %10s %10s%n", hop, summary.get("count"),
+					summary.getOrDefault("p50Ms", "-"), summary.getOrDefault("p90Ms", "-"),
+					summary.getOrDefault("p99Ms", "-"), summary.getOrDefault("p999Ms", "-"),
+					summary.getOrDefault("maxMs", "-")));
+		});
+		return table.toString();
+	}
+
+	// Percentage change per hop against an earlier summary.json, positive is slower
+	private String compare(Map<String, Object> hops, Path previousSummary) throws IOException {
+		JsonNode previous = objectMapper.readTree(previousSummary.toFile()).path("hops");
+		StringBuilder table = new StringBuilder(String.format("%-16s %12s %12s %12s%n", "hop", "p50", "p99", "p999"));
+		hops.forEach((hop, value) -> {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> summary = (Map<String, Object>) value;
+			JsonNode before = previous.path(hop);
+			table.append(String.format("%-16s %12s %12s %12s%n", hop, change(summary, before, "p50Ms"),
+					change(summary, before, "p99Ms"), change(summary, before, "p999Ms")));
+		});
+		return table.toString();
+	}
+
+	private static String change(Map<String, Object> summary, JsonNode before, String field) {
+		Object now = summary.get(field);
+		if (now == null || !before.hasNonNull(field) || before.get(field).asDouble() == 0) {
+			return "-";
+		}
+		double previous = before.get(field).asDouble();
+		return String.format("%+.1f%%", (((Number) now).doubleValue() - previous) / previous * 100);
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 1000) / 1000.0;
+	}
+}
@@ -0,0 +1,118 @@
+package com.ecommerce.load_test;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Run parameters, read from {@code --name=value} arguments. Everything has a default so a
+ * bare run gives a short open-model baseline.
+ */
+@Getter
+public class LoadTestSettings {
+
+	public enum Model { OPEN, CLOSED }
+
+	private final String label;
+	private final Model model;
+	// Open model: arrival rate, independent of how fast the pipeline answers
+	private final int rps;
+	// Closed model: virtual users, each waits for its response before the next order
+	private final int concurrency;
+	private final long thinkTimeMs;
+	private final int durationSeconds;
+	private final int warmupSeconds;
+	private final int drainSeconds;
+	private final int maxInFlight;
+	private final String mix;
+	// servlet (Tomcat, JPA, KafkaTemplate) or reactive (Netty, R2DBC, reactor-kafka) order-service
+	private final String orderStack;
+	private final boolean sse;
+	private final int restockQuantity;
+	private final int partitions;
+	private final int basePort;
+	private final String mongoUri;
+	private final Path servicesDir;
+	private final Path reportDir;
+	private final Path compareTo;
+
+	private final Map<String, String> arguments;
+
+	private LoadTestSettings(Map<String, String> arguments) {
+		this.arguments = arguments;
+		this.label = get("label", "baseline");
+		this.model = Model.valueOf(get("model", "open").toUpperCase());
+		this.rps = Integer.parseInt(get("rps", "100"));
+		this.concurrency = Integer.parseInt(get("concurrency", "32"));
+		this.thinkTimeMs = Long.parseLong(get("think-time-ms", "0"));
+		this.durationSeconds = Integer.parseInt(get("duration-seconds", "60"));
+		this.warmupSeconds = Integer.parseInt(get("warmup-seconds", "15"));
+		this.drainSeconds = Integer.parseInt(get("drain-seconds", "30"));
+		this.maxInFlight = Integer.parseInt(get("max-in-flight", "2000"));
+		// product*quantity items joined by '+', '=' relative weight, ';' between order shapes
+		this.mix = get("mix", "prod002*1=60;prod001*1+prod002*2=30;prod001*2=10");
+		this.orderStack = get("order-stack", "servlet");
+		if (!orderStack.equals("servlet") && !orderStack.equals("reactive")) {
+			throw new IllegalArgumentException("--order-stack must be servlet or reactive but got: " + orderStack);
+		}
+		this.sse = Boolean.parseBoolean(get("sse", "true"));
+		this.restockQuantity = Integer.parseInt(get("restock", "1000000"));
+		this.partitions = Integer.parseInt(get("partitions", "3"));
+		// Services listen on basePort + their usual last digit, away from a running compose stack
+		this.basePort = Integer.parseInt(get("base-port", "18080"));
+		this.mongoUri = get("mongo-uri", "mongodb://localhost:27017/loadtest-inventory");
+		this.servicesDir = Path.of(get("services-dir", "..")).toAbsolutePath().normalize();
+		this.reportDir = Path.of(get("report-dir", "reports"));
+		this.compareTo = arguments.containsKey("compare") ? Path.of(arguments.get("compare")) : null;
+	}
+
+	public static LoadTestSettings parse(String[] args) {
+		Map<String, String> arguments = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+			}
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				arguments.put(arg.substring(2), "true");
+			} else {
+				arguments.put(arg.substring(2, separator), arg.substring(separator + 1));
+			}
+		}
+		return new LoadTestSettings(arguments);
+	}
+
+	public int port(int offset) {
+		return basePort + offset;
+	}
+
+	// Written into the report so runs can be compared like for like
+	public Map<String, Object> describe() {
+		Map<String, Object> description = new LinkedHashMap<>();
+		description.put("model", model.name().toLowerCase());
+		if (model == Model.OPEN) {
+			description.put("rps", rps);
+			description.put("maxInFlight", maxInFlight);
+		} else {
+			description.put("concurrency", concurrency);
+			description.put("thinkTimeMs", thinkTimeMs);
+		}
+		description.put("durationSeconds", durationSeconds);
+		description.put("warmupSeconds", warmupSeconds);
+		description.put("mix", mix);
+		description.put("orderStack", orderStack);
+		description.put("sse", sse);
+		description.put("partitions", partitions);
+		description.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+		description.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+		description.put("javaVersion", System.getProperty("java.version"));
+		return description;
+	}
+
+	private String get(String name, String defaultValue) {
+		return arguments.getOrDefault(name, defaultValue);
+	}
+}
@@ -0,0 +1,179 @@
+package com.ecommerce.load_test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Places orders through POST /api/orders. The open model fires on a fixed schedule and
+ * measures every request from the moment it was due, not from when it was actually sent,
+ * so a stalled service shows up as latency instead of as fewer requests (no coordinated
+ * omission). The closed model runs a fixed number of virtual users back to back.
+ */
+@Slf4j
+public class OrderLoadGenerator {
+
+	private final LoadTestSettings settings;
+	private final HttpClient client;
+	private final URI ordersUri;
+	private final String authorization;
+	private final OrderMix mix;
+	private final PipelineObserver observer;
+	private final LatencyReport report;
+	private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong succeeded = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong measuredSucceeded = new AtomicLong();
+
+	private volatile long measureFromNanos;
+
+	public OrderLoadGenerator(LoadTestSettings settings, HttpClient client, String orderServiceUrl, String accessToken,
+			OrderMix mix, PipelineObserver observer, LatencyReport report) {
+		this.settings = settings;
+		this.client = client;
+		this.ordersUri = URI.create(orderServiceUrl + "/api/orders");
+		this.authorization = "Bearer " + accessToken;
+		this.mix = mix;
+		this.observer = observer;
+		this.report = report;
+	}
+
+	/**
+	 * Runs warmup and measurement, returning once the last request has been answered.
+	 */
+	public void run() throws InterruptedException {
+		long startNanos = System.nanoTime();
+		measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(settings.getWarmupSeconds());
+		long endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(settings.getDurationSeconds());
+		log.info("Generating load ({}) for {} s after {} s warmup", settings.describe(),
+				settings.getDurationSeconds(), settings.getWarmupSeconds());
+
+		if (settings.getModel() == LoadTestSettings.Model.OPEN) {
+			runOpen(startNanos, endNanos);
+		} else {
+			runClosed(endNanos);
+		}
+		while (inFlight.get() > 0) {
+			Thread.sleep(10);
+		}
+	}
+
+	private void runOpen(long startNanos, long endNanos) {
+		long periodNanos = TimeUnit.SECONDS.toNanos(1) / settings.getRps();
+		long startMillis = System.currentTimeMillis();
+		for (long i = 0;; i++) {
+			long dueNanos = startNanos + i * periodNanos;
+			if (dueNanos >= endNanos) {
+				return;
+			}
+			long waitNanos = dueNanos - System.nanoTime();
+			if (waitNanos > 0) {
+				LockSupport.parkNanos(waitNanos);
+			}
+			// Falling behind schedule sends immediately, the latency still counts from dueNanos
+			if (inFlight.get() >= settings.getMaxInFlight()) {
+				dropped.incrementAndGet();
+				continue;
+			}
+			fire(dueNanos, startMillis + TimeUnit.NANOSECONDS.toMillis(dueNanos - startNanos));
+		}
+	}
+
+	private void fire(long dueNanos, long dueMillis) {
+		OrderTrace trace = newTrace(dueNanos, dueMillis);
+		inFlight.incrementAndGet();
+		client.sendAsync(request(trace), HttpResponse.BodyHandlers.discarding())
+				.whenComplete((response, error) -> {
+					inFlight.decrementAndGet();
+					completed(trace, error == null ? response.statusCode() : -1);
+				});
+	}
+
+	private void runClosed(long endNanos) throws InterruptedException {
+		List<Thread> users = new ArrayList<>();
+		for (int i = 0; i < settings.getConcurrency(); i++) {
+			Thread user = new Thread(() -> {
+				while (System.nanoTime() < endNanos) {
+					OrderTrace trace = newTrace(System.nanoTime(), System.currentTimeMillis());
+					int status;
+					try {
+						status = client.send(request(trace), HttpResponse.BodyHandlers.discarding()).statusCode();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					} catch (Exception e) {
+						status = -1;
+					}
+					completed(trace, status);
+					if (settings.getThinkTimeMs() > 0) {
+						LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(settings.getThinkTimeMs()));
+					}
+				}
+			}, "virtual-user-" + i);
+			user.start();
+			users.add(user);
+		}
+		for (Thread user : users) {
+			user.join();
+		}
+	}
+
+	private OrderTrace newTrace(long startNanos, long startMillis) {
+		OrderTrace trace = new OrderTrace(runId + "-" + sequence.incrementAndGet(), startNanos, startMillis,
+				startNanos >= measureFromNanos);
+		observer.register(trace);
+		sent.incrementAndGet();
+		return trace;
+	}
+
+	private HttpRequest request(OrderTrace trace) {
+		return HttpRequest.newBuilder(ordersUri)
+				.timeout(Duration.ofSeconds(30))
+				.header("Content-Type", "application/json")
+				.header("Authorization", authorization)
+				.header("X-Correlation-Id", trace.getCorrelationId())
+				.POST(HttpRequest.BodyPublishers.ofByteArray(mix.next()))
+				.build();
+	}
+
+	private void completed(OrderTrace trace, int status) {
+		if (status != 200) {
+			failed.incrementAndGet();
+			observer.forget(trace);
+			return;
+		}
+		succeeded.incrementAndGet();
+		if (trace.isMeasured()) {
+			measuredSucceeded.incrementAndGet();
+			report.recordNanos(LatencyReport.HTTP, System.nanoTime() - trace.getStartNanos());
+		}
+	}
+
+	public Map<String, Object> counters() {
+		Map<String, Object> counters = new LinkedHashMap<>();
+		counters.put("sent", sent.get());
+		counters.put("succeeded", succeeded.get());
+		counters.put("failed", failed.get());
+		counters.put("dropped", dropped.get());
+		counters.put("measuredSucceeded", measuredSucceeded.get());
+		counters.put("achievedRps", Math.round(measuredSucceeded.get() * 10.0 / settings.getDurationSeconds()) / 10.0);
+		return counters;
+	}
+}
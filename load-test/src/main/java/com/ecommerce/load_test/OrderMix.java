@@ -0,0 +1,82 @@
+package com.ecommerce.load_test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Weighted choice between order shapes, e.g. {@code prod002*1=60;prod001*1+prod002*2=30}.
+ * Each shape is serialized once up front so the generator spends no time building bodies.
+ */
+public class OrderMix {
+
+	// Names and prices of the products inventory-service seeds
+	private static final Map<String, Object[]> CATALOG = Map.of(
+			"prod001", new Object[] { "Laptop", new BigDecimal("999.99") },
+			"prod002", new Object[] { "Mouse", new BigDecimal("29.99") });
+
+	private final List<byte[]> bodies = new ArrayList<>();
+	private final int[] cumulativeWeights;
+	private final Set<String> productIds = new LinkedHashSet<>();
+
+	public OrderMix(String specification, String userId) throws JsonProcessingException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		List<Integer> cumulative = new ArrayList<>();
+		int total = 0;
+		for (String shape : specification.split(";")) {
+			String[] itemsAndWeight = shape.trim().split("=");
+			int weight = itemsAndWeight.length > 1 ? Integer.parseInt(itemsAndWeight[1].trim()) : 1;
+			if (weight <= 0) {
+				continue;
+			}
+
+			List<Map<String, Object>> items = new ArrayList<>();
+			for (String item : itemsAndWeight[0].split("\\+")) {
+				String[] productAndQuantity = item.trim().split("\\*");
+				String productId = productAndQuantity[0];
+				Object[] product = CATALOG.getOrDefault(productId, new Object[] { productId, new BigDecimal("10.00") });
+				Map<String, Object> orderItem = new LinkedHashMap<>();
+				orderItem.put("productId", productId);
+				orderItem.put("productName", product[0]);
+				orderItem.put("quantity", productAndQuantity.length > 1 ? Integer.parseInt(productAndQuantity[1]) : 1);
+				orderItem.put("price", product[1]);
+				items.add(orderItem);
+				productIds.add(productId);
+			}
+
+			Map<String, Object> order = new LinkedHashMap<>();
+			order.put("userId", userId);
+			order.put("items", items);
+			order.put("shippingAddress", "1 Load Test Street");
+			bodies.add(objectMapper.writeValueAsBytes(order));
+			total += weight;
+			cumulative.add(total);
+		}
+		if (bodies.isEmpty()) {
+			throw new IllegalArgumentException("Order mix has no shapes: " + specification);
+		}
+		this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	public byte[] next() {
+		int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			if (pick < cumulativeWeights[i]) {
+				return bodies.get(i);
+			}
+		}
+		return bodies.get(bodies.size() - 1);
+	}
+
+	public Set<String> getProductIds() {
+		return productIds;
+	}
+}
@@ -0,0 +1,88 @@
+package com.ecommerce.load_test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.Getter;
+
+/**
+ * Timestamps of one order as it passes the pipeline, keyed by the correlation id the
+ * generator sends as X-Correlation-Id. Kafka stamps are the producer's record timestamps,
+ * the rest are wall clock readings in this JVM, so all of them share one clock. Each stamp
+ * keeps the first value, later records of the same step (one per item) are ignored.
+ */
+@Getter
+public class OrderTrace {
+
+	private final String correlationId;
+	private final long startNanos;
+	private final long startMillis;
+	// Orders started during warmup are followed but not recorded
+	private final boolean measured;
+	private final AtomicBoolean completed = new AtomicBoolean();
+
+	private volatile String orderId;
+	private volatile long publishedMillis;
+	private volatile long reservedMillis;
+	private volatile long confirmedMillis;
+	private volatile long notifiedMillis;
+
+	public OrderTrace(String correlationId, long startNanos, long startMillis, boolean measured) {
+		this.correlationId = correlationId;
+		this.startNanos = startNanos;
+		this.startMillis = startMillis;
+		this.measured = measured;
+	}
+
+	public boolean published(String orderId, long timestamp) {
+		if (publishedMillis != 0) {
+			return false;
+		}
+		this.orderId = orderId;
+		publishedMillis = timestamp;
+		return true;
+	}
+
+	public void reserved(long timestamp) {
+		if (reservedMillis == 0) {
+			reservedMillis = timestamp;
+		}
+	}
+
+	public void confirmed(long timestamp) {
+		if (confirmedMillis == 0) {
+			confirmedMillis = timestamp;
+		}
+	}
+
+	public void notified(long timestamp) {
+		if (notifiedMillis == 0) {
+			notifiedMillis = timestamp;
+		}
+	}
+
+	/**
+	 * True once for the caller that finds the last required stamp in place.
+	 */
+	public boolean tryComplete(boolean requireNotification) {
+		boolean done = confirmedMillis != 0 && (!requireNotification || notifiedMillis != 0);
+		return done && completed.compareAndSet(false, true);
+	}
+
+	public void record(LatencyReport report, boolean withNotification) {
+		if (publishedMillis != 0) {
+			report.recordMillis(LatencyReport.ORDER_PUBLISHED, publishedMillis - startMillis);
+		}
+		if (publishedMillis != 0 && reservedMillis != 0) {
+			report.recordMillis(LatencyReport.RESERVATION, reservedMillis - publishedMillis);
+		}
+		if (reservedMillis != 0) {
+			report.recordMillis(LatencyReport.CONFIRMATION, confirmedMillis - reservedMillis);
+		}
+		if (withNotification) {
+			report.recordMillis(LatencyReport.NOTIFICATION, notifiedMillis - confirmedMillis);
+			report.recordMillis(LatencyReport.END_TO_END, notifiedMillis - startMillis);
+		} else {
+			report.recordMillis(LatencyReport.END_TO_END, confirmedMillis - startMillis);
+		}
+	}
+}
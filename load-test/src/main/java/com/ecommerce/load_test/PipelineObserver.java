@@ -0,0 +1,234 @@
+package com.ecommerce.load_test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Follows the orders of a run through the pipeline: a consumer on the orders,
+ * inventory-events and user-orders topics matches records to traces by their
+ * correlation-id header, and an SSE subscription to notification-service catches the
+ * INVENTORY_RESERVED push, which is only identified by order id.
+ */
+@Slf4j
+public class PipelineObserver implements AutoCloseable {
+
+	public static final String CORRELATION_ID_HEADER = "correlation-id";
+	private static final List<String> TOPICS = List.of("orders", "inventory-events", "user-orders");
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Map<String, OrderTrace> traces = new ConcurrentHashMap<>();
+	private final Map<String, OrderTrace> tracesByOrderId = new ConcurrentHashMap<>();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong uncorrelated = new AtomicLong();
+	private final LatencyReport report;
+	private final boolean sse;
+	private final KafkaConsumer<String, String> consumer;
+	private final Thread poller;
+
+	private volatile boolean running = true;
+	private volatile Stream<String> sseLines;
+	private Thread sseReader;
+
+	public PipelineObserver(String bootstrapServers, LatencyReport report, boolean sse) {
+		this.report = report;
+		this.sse = sse;
+
+		Properties properties = new Properties();
+		properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		properties.put(ConsumerConfig.GROUP_ID_CONFIG, "load-test-" + UUID.randomUUID());
+		properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+		properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+		properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+		properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "2000");
+		this.consumer = new KafkaConsumer<>(properties);
+
+		// Assigned and positioned before any load, so no record of the run is missed
+		List<TopicPartition> partitions = new ArrayList<>();
+		TOPICS.forEach(topic -> consumer.partitionsFor(topic).forEach(
+				info -> partitions.add(new TopicPartition(info.topic(), info.partition()))));
+		consumer.assign(partitions);
+		consumer.seekToEnd(partitions);
+		partitions.forEach(consumer::position);
+
+		this.poller = new Thread(this::poll, "pipeline-observer");
+		poller.setDaemon(true);
+		poller.start();
+	}
+
+	/**
+	 * Opens the SSE stream for the user the generator places orders as.
+	 */
+	public void subscribe(HttpClient client, String notificationUrl, String accessToken) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(notificationUrl + "/api/notifications/stream"))
+				.header("Authorization", "Bearer " + accessToken)
+				.header("Accept", "text/event-stream")
+				.GET()
+				.build();
+		HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+		if (response.statusCode() != 200) {
+			throw new IllegalStateException("Notification stream subscription failed with status " + response.statusCode());
+		}
+		sseLines = response.body();
+		sseReader = new Thread(() -> {
+			try {
+				sseLines.forEach(this::onSseLine);
+			} catch (RuntimeException e) {
+				if (running) {
+					log.warn("Notification stream failed: {}", e.getMessage());
+				}
+			}
+			if (running) {
+				log.warn("Notification stream closed during the run, remaining orders will not complete");
+			}
+		}, "pipeline-observer-sse");
+		sseReader.setDaemon(true);
+		sseReader.start();
+	}
+
+	public void register(OrderTrace trace) {
+		traces.put(trace.getCorrelationId(), trace);
+	}
+
+	// The order was rejected, nothing will follow it through the pipeline
+	public void forget(OrderTrace trace) {
+		traces.remove(trace.getCorrelationId());
+	}
+
+	public int pending() {
+		return traces.size();
+	}
+
+	public long measuredPending() {
+		return traces.values().stream().filter(OrderTrace::isMeasured).count();
+	}
+
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	public long getUncorrelated() {
+		return uncorrelated.get();
+	}
+
+	private void poll() {
+		try {
+			while (running) {
+				for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+					onRecord(record);
+				}
+			}
+		} catch (WakeupException e) {
+			log.debug("Pipeline observer stopped");
+		} finally {
+			consumer.close();
+		}
+	}
+
+	private void onRecord(ConsumerRecord<String, String> record) {
+		Header header = record.headers().lastHeader(CORRELATION_ID_HEADER);
+		if (header == null) {
+			uncorrelated.incrementAndGet();
+			return;
+		}
+		OrderTrace trace = traces.get(new String(header.value(), StandardCharsets.UTF_8));
+		if (trace == null || record.value() == null) {
+			return;
+		}
+
+		switch (record.topic()) {
+			case "orders" -> {
+				if ("CREATED".equals(field(record.value(), "status")) && trace.published(record.key(), record.timestamp())) {
+					tracesByOrderId.put(record.key(), trace);
+				}
+			}
+			case "inventory-events" -> {
+				if ("RESERVED".equals(field(record.value(), "updateType"))) {
+					trace.reserved(record.timestamp());
+				}
+			}
+			case "user-orders" -> {
+				if ("INVENTORY_RESERVED".equals(field(record.value(), "status"))) {
+					trace.confirmed(record.timestamp());
+					complete(trace);
+				}
+			}
+			default -> { }
+		}
+	}
+
+	// Spring writes the event id as "id:<orderId>:<status>"
+	private void onSseLine(String line) {
+		if (!line.startsWith("id:")) {
+			return;
+		}
+		long receivedMillis = System.currentTimeMillis();
+		String id = line.substring(3).trim();
+		int separator = id.lastIndexOf(':');
+		if (separator < 0 || !"INVENTORY_RESERVED".equals(id.substring(separator + 1))) {
+			return;
+		}
+		OrderTrace trace = tracesByOrderId.get(id.substring(0, separator));
+		if (trace != null) {
+			trace.notified(receivedMillis);
+			complete(trace);
+		}
+	}
+
+	private void complete(OrderTrace trace) {
+		if (!trace.tryComplete(sse)) {
+			return;
+		}
+		traces.remove(trace.getCorrelationId());
+		if (trace.getOrderId() != null) {
+			tracesByOrderId.remove(trace.getOrderId());
+		}
+		if (trace.isMeasured()) {
+			trace.record(report, sse);
+			completed.incrementAndGet();
+		}
+	}
+
+	private String field(String json, String name) {
+		try {
+			return objectMapper.readTree(json).path(name).asText(null);
+		} catch (JsonProcessingException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void close() throws InterruptedException {
+		running = false;
+		consumer.wakeup();
+		poller.join(5000);
+		if (sseLines != null) {
+			sseLines.close();
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package com.ecommerce.load_test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the kafka.producer.profiles of order-service at a set of arrival rates. Each
+ * order is sent the way OrderService publishes it, once to orders with its user-id header
+ * (user-orders is derived by a stream, not produced), and timed from when it was due to its
+ * ack, so a producer that falls
+ * behind shows up in the latency. Also reports achieved throughput, produce requests per
+ * order and the compression rate.
+ *
+ * <p>Options besides the common ones: --profiles (default all), --rates (orders/s,
+ * default 500,2000,8000), --profiles-file.
+ */
+@Slf4j
+public class ProducerProfileBenchmark {
+
+	private static final DateTimeFormatter RUN_ID = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+	public static void main(String[] args) throws Exception {
+		LoadTestSettings settings = LoadTestSettings.parse(args);
+		Map<String, String> arguments = settings.getArguments();
+		Path profilesFile = Path.of(arguments.getOrDefault("profiles-file",
+				settings.getServicesDir().resolve("order-service/src/main/resources/application.yaml").toString()));
+		Map<String, Map<String, String>> profiles = readProfiles(profilesFile);
+		if (arguments.containsKey("profiles")) {
+			profiles.keySet().retainAll(List.of(arguments.get("profiles").split(",")));
+		}
+		List<Integer> rates = new ArrayList<>();
+		for (String rate : arguments.getOrDefault("rates", "500,2000,8000").split(",")) {
+			rates.add(Integer.parseInt(rate.trim()));
+		}
+
+		EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, settings.getPartitions(), "orders", "user-orders");
+		broker.afterPropertiesSet();
+		List<Map<String, Object>> results = new ArrayList<>();
+		try {
+			for (Map.Entry<String, Map<String, String>> profile : profiles.entrySet()) {
+				for (int rate : rates) {
+					Map<String, Object> result = run(broker.getBrokersAsString(), profile.getValue(), rate, settings);
+					result.put("profile", profile.getKey());
+					result.put("rate", rate);
+					results.add(result);
+					log.info("{} at {} orders/s: {}", profile.getKey(), rate, result);
+				}
+			}
+		} finally {
+			broker.destroy();
+		}
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("label", settings.getLabel());
+		report.put("profiles", profiles);
+		report.put("durationSeconds", settings.getDurationSeconds());
+		report.put("warmupSeconds", settings.getWarmupSeconds());
+		report.put("partitions", settings.getPartitions());
+		report.put("results", results);
+		Path directory = settings.getReportDir().resolve(RUN_ID.format(Instant.now()) + "-producer-" + settings.getLabel());
+		Files.createDirectories(directory);
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+				.writeValue(directory.resolve("producer-profiles.json").toFile(), report);
+
+		System.out.printf("%n%-16s %8s %10s %8s %8s %8s %8s %10s %12s%n", "profile", "rate", "achieved",
+				"p50 ms", "p99 ms", "p999 ms", "max ms", "req/order", "compression");
+		for (Map<String, Object> result : results) {
+			System.out.printf("%-16s %8d %10.1f %8.2f %8.2f %8.2f %8.2f %10.3f %12.3f%n", result.get("profile"),
+					result.get("rate"), result.get("achievedPerSecond"), result.get("p50Ms"), result.get("p99Ms"),
+					result.get("p999Ms"), result.get("maxMs"), result.get("requestsPerOrder"),
+					result.get("compressionRate"));
+		}
+		log.info("Report written to {}", directory.toAbsolutePath());
+		System.exit(0);
+	}
+
+	private static Map<String, Object> run(String bootstrapServers, Map<String, String> profile, int rate,
+			LoadTestSettings settings) throws Exception {
+		Map<String, Object> configs = new HashMap<>(profile);
+		configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+		configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+		configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+
+		Recorder recorder = new Recorder(TimeUnit.SECONDS.toNanos(60), 3);
+		AtomicLong acked = new AtomicLong();
+		AtomicLong failed = new AtomicLong();
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+
+		try (KafkaProducer<String, String> producer = new KafkaProducer<>(configs)) {
+			long start = System.nanoTime();
+			long measureFrom = start + TimeUnit.SECONDS.toNanos(settings.getWarmupSeconds());
+			long end = measureFrom + TimeUnit.SECONDS.toNanos(settings.getDurationSeconds());
+			double requestsAtStart = 0;
+			long measuredOrders = 0;
+			boolean measuring = false;
+
+			for (long due = start; due < end; due += intervalNanos) {
+				long wait = due - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+				if (!measuring && due >= measureFrom) {
+					requestsAtStart = metric(producer, "request-total");
+					measuring = true;
+				}
+				if (measuring) {
+					measuredOrders++;
+				}
+
+				String orderId = UUID.randomUUID().toString();
+				String userId = "user" + ThreadLocalRandom.current().nextInt(1000);
+				String event = orderEvent(orderId, userId);
+				long dueAt = due;
+				Callback callback = (metadata, exception) -> {
+					if (exception != null) {
+						failed.incrementAndGet();
+					}
+					// Warmup orders are sent but not measured
+					if (dueAt >= measureFrom) {
+						recorder.recordValue(Math.max(0, System.nanoTime() - dueAt));
+						acked.incrementAndGet();
+					}
+				};
+				ProducerRecord<String, String> record = new ProducerRecord<>("orders", orderId, event);
+				record.headers().add("user-id", userId.getBytes(StandardCharsets.UTF_8));
+				producer.send(record, callback);
+			}
+			producer.flush();
+			long elapsedNanos = System.nanoTime() - measureFrom;
+
+			Histogram histogram = recorder.getIntervalHistogram();
+			double requests = metric(producer, "request-total") - requestsAtStart;
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("orders", measuredOrders);
+			result.put("acked", acked.get());
+			result.put("failed", failed.get());
+			result.put("achievedPerSecond", acked.get() * 1e9 / elapsedNanos);
+			result.put("p50Ms", histogram.getValueAtPercentile(50) / 1e6);
+			result.put("p99Ms", histogram.getValueAtPercentile(99) / 1e6);
+			result.put("p999Ms", histogram.getValueAtPercentile(99.9) / 1e6);
+			result.put("maxMs", histogram.getMaxValue() / 1e6);
+			result.put("requestsPerOrder", measuredOrders == 0 ? 0.0 : requests / measuredOrders);
+			result.put("recordsPerRequest", metric(producer, "records-per-request-avg"));
+			result.put("batchSizeAvg", metric(producer, "batch-size-avg"));
+			result.put("compressionRate", metric(producer, "compression-rate-avg"));
+			return result;
+		}
+	}
+
+	private static double metric(KafkaProducer<String, String> producer, String name) {
+		for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+			if (entry.getKey().group().equals("producer-metrics") && entry.getKey().name().equals(name)) {
+				Object value = entry.getValue().metricValue();
+				return value instanceof Number number && !Double.isNaN(number.doubleValue()) ? number.doubleValue() : 0.0;
+			}
+		}
+		return 0.0;
+	}
+
+	// Shaped like OrderEvent as JsonSerializer writes it, so compression sees realistic input
+	private static String orderEvent(String orderId, String userId) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int quantity = 1 + random.nextInt(3);
+		return "{\"orderId\":\"" + orderId + "\",\"userId\":\"" + userId + "\",\"status\":\"CREATED\","
+				+ "\"items\":[{\"productId\":\"prod00" + (1 + random.nextInt(2)) + "\",\"quantity\":" + quantity
+				+ ",\"price\":" + (10 + random.nextInt(990)) + ".99}],\"totalAmount\":" + (10 + random.nextInt(2990))
+				+ ".97,\"timestamp\":\"" + Instant.now() + "\"}";
+	}
+
+	private static Map<String, Map<String, String>> readProfiles(Path file) throws Exception {
+		JsonNode profiles = new YAMLMapper().readTree(file.toFile()).path("kafka").path("producer").path("profiles");
+		if (!profiles.isObject()) {
+			throw new IllegalStateException("No kafka.producer.profiles in " + file);
+		}
+		Map<String, Map<String, String>> result = new LinkedHashMap<>();
+		for (Iterator<Map.Entry<String, JsonNode>> it = profiles.fields(); it.hasNext();) {
+			Map.Entry<String, JsonNode> profile = it.next();
+			Map<String, String> configs = new LinkedHashMap<>();
+			profile.getValue().fields().forEachRemaining(config -> configs.put(config.getKey(), config.getValue().asText()));
+			result.put(profile.getKey(), configs);
+		}
+		return result;
+	}
+}
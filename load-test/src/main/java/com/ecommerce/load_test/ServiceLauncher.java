@@ -0,0 +1,113 @@
+package com.ecommerce.load_test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Boots a service from its Maven build output inside this JVM. Each service gets its own
+ * class loader over {@code target/classes} and the runtime classpath listed in
+ * {@code target/classpath.txt}, so their Spring contexts and dependency versions stay
+ * apart the same way they do in their own containers.
+ */
+@Slf4j
+public class ServiceLauncher {
+
+	private final Path servicesDir;
+
+	public ServiceLauncher(Path servicesDir) {
+		this.servicesDir = servicesDir;
+	}
+
+	public RunningService launch(String service, String mainClass, List<URL> extraClasspath, List<String> arguments)
+			throws Exception {
+		URLClassLoader loader = new URLClassLoader(service, classpath(service, extraClasspath),
+				ClassLoader.getPlatformClassLoader());
+
+		// Spring resolves resources through the context class loader, which threads started
+		// by the service inherit from the one that runs it
+		CompletableFuture<Object> started = new CompletableFuture<>();
+		Thread runner = new Thread(() -> {
+			try {
+				Class<?> application = loader.loadClass(mainClass);
+				Class<?> springApplication = loader.loadClass("org.springframework.boot.SpringApplication");
+				started.complete(springApplication.getMethod("run", Class.class, String[].class)
+						.invoke(null, application, arguments.toArray(String[]::new)));
+			} catch (ReflectiveOperationException | LinkageError e) {
+				started.completeExceptionally(e);
+			}
+		}, service + "-main");
+		runner.setContextClassLoader(loader);
+		runner.start();
+
+		long startNanos = System.nanoTime();
+		Object context = started.get();
+		log.info("Started {} in {} ms", service, (System.nanoTime() - startNanos) / 1_000_000);
+		return new RunningService(service, context, loader);
+	}
+
+	private URL[] classpath(String service, List<URL> extraClasspath) throws IOException {
+		Path target = servicesDir.resolve(service).resolve("target");
+		Path classes = target.resolve("classes");
+		Path classpathFile = target.resolve("classpath.txt");
+		if (!Files.isDirectory(classes) || !Files.isRegularFile(classpathFile)) {
+			throw new IllegalStateException("Build output of " + service + " not found under " + target
+					+ ", run: mvn -f " + service + "/pom.xml compile dependency:build-classpath"
+					+ " -Dmdep.outputFile=target/classpath.txt -Dmdep.includeScope=runtime");
+		}
+
+		List<URL> urls = new ArrayList<>();
+		urls.add(classes.toUri().toURL());
+		for (String entry : Files.readString(classpathFile).trim().split(File.pathSeparator)) {
+			if (!entry.isBlank()) {
+				urls.add(toUrl(entry));
+			}
+		}
+		urls.addAll(extraClasspath);
+		return urls.toArray(URL[]::new);
+	}
+
+	private static URL toUrl(String entry) throws MalformedURLException {
+		return Path.of(entry).toUri().toURL();
+	}
+
+	public static final class RunningService implements AutoCloseable {
+		private final String name;
+		private final Object context;
+		private final URLClassLoader loader;
+
+		private RunningService(String name, Object context, URLClassLoader loader) {
+			this.name = name;
+			this.context = context;
+			this.loader = loader;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void close() {
+			Thread current = Thread.currentThread();
+			ClassLoader previous = current.getContextClassLoader();
+			current.setContextClassLoader(loader);
+			try {
+				context.getClass().getMethod("close").invoke(context);
+				loader.close();
+			} catch (ReflectiveOperationException | IOException e) {
+				log.warn("Failed to stop {}: {}", name, e.getMessage());
+			} finally {
+				current.setContextClassLoader(previous);
+			}
+		}
+	}
+}
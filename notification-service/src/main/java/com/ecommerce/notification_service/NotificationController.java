@@ -1,15 +1,142 @@
 package com.ecommerce.notification_service;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.ecommerce.common.DeadLetterReplayService;
+import com.ecommerce.common.JwtClaimsVerifier;
+
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
 
 @RestController
 @RequestMapping("/api/notifications")
+@RequiredArgsConstructor
 public class NotificationController {
-    
+
+    private final DeadLetterReplayService deadLetterReplayService;
+    private final NotificationJournal notificationJournal;
+    private final OrderStatusBroadcaster orderStatusBroadcaster;
+    private final JwtClaimsVerifier jwtClaimsVerifier;
+    private final NotificationPreferencesStore notificationPreferencesStore;
+
     @GetMapping("/health")
     public String health() {
         return "Notification Service is healthy";
     }
+
+    // EventSource cannot set headers, so the token may also be passed as ?access_token=
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamOrderStatus(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                        @RequestParam(value = "access_token", required = false) String accessToken) {
+        String token = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring(7)
+                : accessToken;
+        return jwtClaimsVerifier.verify(token)
+                .map(Claims::getSubject)
+                .map(username -> ResponseEntity.ok(orderStatusBroadcaster.subscribe(username)))
+                .orElse(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+    }
+
+    @GetMapping("/orders/{orderId}")
+    public ResponseEntity<List<NotificationRecord>> getOrderNotifications(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                                          @PathVariable String orderId,
+                                                                          @RequestParam(defaultValue = "100") int limit) {
+        Optional<Claims> caller = jwtClaimsVerifier.verifyBearer(authorization);
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // Every record of an order carries its owner, someone else's order reads as empty
+        return ResponseEntity.ok(notificationJournal.findByOrderId(orderId, limit).stream()
+                .filter(record -> mayAccess(caller.get(), record.getUserId()))
+                .toList());
+    }
+
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<List<NotificationRecord>> getUserNotifications(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                                         @PathVariable String userId,
+                                                                         @RequestParam(defaultValue = "100") int limit) {
+        Optional<Claims> caller = jwtClaimsVerifier.verifyBearer(authorization);
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!mayAccess(caller.get(), userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(notificationJournal.findByUserId(userId, limit));
+    }
+
+    @GetMapping("/preferences/{userId}")
+    public ResponseEntity<NotificationPreferences> getPreferences(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                                  @PathVariable String userId) {
+        Optional<Claims> caller = jwtClaimsVerifier.verifyBearer(authorization);
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!mayAccess(caller.get(), userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(notificationPreferencesStore.lookup(userId));
+    }
+
+    // Only the user themselves, the change is published to every instance
+    @PutMapping("/preferences/{userId}")
+    public ResponseEntity<Void> updatePreferences(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                  @PathVariable String userId,
+                                                  @RequestBody NotificationPreferences preferences) {
+        Optional<Claims> caller = jwtClaimsVerifier.verifyBearer(authorization);
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!userId.equals(caller.get().getSubject())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        notificationPreferencesStore.update(userId, preferences);
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/dlt/{topic}/replay")
+    public ResponseEntity<String> replayDeadLetters(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                    @PathVariable String topic,
+                                                    @RequestParam(defaultValue = "100") int maxRecords,
+                                                    @RequestParam(defaultValue = "10") int ratePerSecond) {
+        Optional<Claims> caller = jwtClaimsVerifier.verifyBearer(authorization);
+        if (caller.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!JwtClaimsVerifier.isAdmin(caller.get())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!deadLetterReplayService.isReplayable(topic)) {
+            return ResponseEntity.notFound().build();
+        }
+        int replayed = deadLetterReplayService.replay(topic, maxRecords, ratePerSecond);
+        return ResponseEntity.ok("Replayed " + replayed + " records from " + deadLetterReplayService.deadLetterTopic(topic));
+    }
+
+    @ExceptionHandler(PreferencesUnavailableException.class)
+    public ResponseEntity<String> preferencesUnavailable(PreferencesUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(ex.getMessage());
+    }
+
+    // Users get their own notifications and preferences, admins everyone's
+    private static boolean mayAccess(Claims caller, String userId) {
+        return JwtClaimsVerifier.isAdmin(caller) || (userId != null && userId.equals(caller.getSubject()));
+    }
 }
@@ -0,0 +1,299 @@
+package com.ecommerce.notification_service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of dispatched notifications, stored in fixed-size memory-mapped
+ * segment files. Each entry is framed as [length][crc32][json payload]; a zero length
+ * marks the end of the written data. Entries are addressed by (segment id, offset) and
+ * indexed in memory by orderId and userId, the index is rebuilt from the segments on startup.
+ */
+@Component
+@Slf4j
+public class NotificationJournal {
+
+	private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+	private static final String SEGMENT_SUFFIX = ".journal";
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+	private final Path directory;
+	private final int segmentSize;
+	private final int retentionDays;
+
+	private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+	private final Map<String, List<Long>> byOrderId = new ConcurrentHashMap<>();
+	private final Map<String, List<Long>> byUserId = new ConcurrentHashMap<>();
+	private volatile Segment active;
+
+	public NotificationJournal(@Value("${notification.journal.dir:./data/notification-journal}") String directory,
+			@Value("${notification.journal.segment-size-bytes:67108864}") int segmentSize,
+			@Value("${notification.journal.retention-days:30}") int retentionDays) {
+		this.directory = Paths.get(directory);
+		this.segmentSize = segmentSize;
+		this.retentionDays = retentionDays;
+	}
+
+	@PostConstruct
+	public void open() throws IOException {
+		Files.createDirectories(directory);
+
+		List<Path> files;
+		try (Stream<Path> listing = Files.list(directory)) {
+			files = listing.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+		}
+
+		for (Path path : files) {
+			String name = path.getFileName().toString();
+			long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+			Segment segment = Segment.open(id, path, segmentSize);
+			recover(segment);
+			segments.put(id, segment);
+		}
+
+		if (segments.isEmpty()) {
+			segments.put(0L, Segment.open(0L, segmentPath(0L), segmentSize));
+		}
+		active = segments.lastEntry().getValue();
+
+		log.info("Notification journal opened: {} segments, {} orders, {} users indexed",
+				segments.size(), byOrderId.size(), byUserId.size());
+	}
+
+	public void append(NotificationRecord record) {
+		byte[] payload;
+		try {
+			payload = objectMapper.writeValueAsBytes(record);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Could not serialize notification for order " + record.getOrderId(), e);
+		}
+
+		int frameSize = HEADER_SIZE + payload.length;
+		if (frameSize + Integer.BYTES > segmentSize) {
+			throw new IllegalArgumentException("Notification too large for journal segment: " + frameSize + " bytes");
+		}
+
+		long address;
+		synchronized (this) {
+			if (active.writePosition + frameSize + Integer.BYTES > active.buffer.capacity()) {
+				roll();
+			}
+
+			Segment segment = active;
+			int position = segment.writePosition;
+			segment.buffer.put(position + HEADER_SIZE, payload);
+			segment.buffer.putInt(position + Integer.BYTES, checksum(payload));
+			// Terminator for the next frame, so a torn write after this one is never read as data
+			segment.buffer.putInt(position + frameSize, 0);
+			segment.buffer.putInt(position, payload.length);
+			segment.writePosition = position + frameSize;
+			address = address(segment.id, position);
+		}
+
+		index(record, address);
+	}
+
+	public List<NotificationRecord> findByOrderId(String orderId, int limit) {
+		return read(byOrderId.get(orderId), limit);
+	}
+
+	public List<NotificationRecord> findByUserId(String userId, int limit) {
+		return read(byUserId.get(userId), limit);
+	}
+
+	@Scheduled(fixedDelayString = "${notification.journal.flush-interval-ms:1000}")
+	public void flush() {
+		active.buffer.force();
+	}
+
+	@Scheduled(fixedDelayString = "${notification.journal.retention-check-interval-ms:3600000}")
+	public void enforceRetention() throws IOException {
+		Instant cutoff = Instant.now().minus(retentionDays, ChronoUnit.DAYS);
+
+		for (Segment segment : segments.values()) {
+			if (segment == active || Files.getLastModifiedTime(segment.path).toInstant().isAfter(cutoff)) {
+				break;
+			}
+
+			segments.remove(segment.id);
+			prune(byOrderId, segment.id);
+			prune(byUserId, segment.id);
+			segment.close();
+			Files.deleteIfExists(segment.path);
+			log.info("Deleted expired notification journal segment: {}", segment.path);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void close() throws IOException {
+		for (Segment segment : segments.values()) {
+			segment.buffer.force();
+			segment.close();
+		}
+	}
+
+	private void roll() {
+		Segment sealed = active;
+		try {
+			sealed.buffer.force();
+			// mmap writes do not reliably bump mtime, retention relies on it
+			Files.setLastModifiedTime(sealed.path, FileTime.from(Instant.now()));
+
+			long id = sealed.id + 1;
+			Segment segment = Segment.open(id, segmentPath(id), segmentSize);
+			segments.put(id, segment);
+			active = segment;
+			log.info("Rolled notification journal to segment {}", segment.path);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not roll notification journal segment", e);
+		}
+	}
+
+	private void recover(Segment segment) throws IOException {
+		MappedByteBuffer buffer = segment.buffer;
+		int position = 0;
+		while (position + HEADER_SIZE + Integer.BYTES <= buffer.capacity()) {
+			int length = buffer.getInt(position);
+			if (length <= 0 || position + HEADER_SIZE + length + Integer.BYTES > buffer.capacity()) {
+				break;
+			}
+
+			byte[] payload = new byte[length];
+			buffer.get(position + HEADER_SIZE, payload);
+			if (checksum(payload) != buffer.getInt(position + Integer.BYTES)) {
+				log.warn("Truncating torn notification journal entry in {} at offset {}", segment.path, position);
+				break;
+			}
+
+			index(objectMapper.readValue(payload, NotificationRecord.class), address(segment.id, position));
+			position += HEADER_SIZE + length;
+		}
+
+		// Only a torn tail is overwritten, a clean segment's pages stay untouched and keep their mtime
+		if (position + Integer.BYTES <= buffer.capacity() && buffer.getInt(position) != 0) {
+			buffer.putInt(position, 0);
+		}
+		segment.writePosition = position;
+	}
+
+	private List<NotificationRecord> read(List<Long> addresses, int limit) {
+		if (addresses == null) {
+			return List.of();
+		}
+
+		List<Long> snapshot = List.copyOf(addresses);
+		List<NotificationRecord> records = new ArrayList<>(Math.min(snapshot.size(), limit));
+		for (long address : snapshot.subList(Math.max(0, snapshot.size() - limit), snapshot.size())) {
+			Segment segment = segments.get(address >>> 32);
+			if (segment == null) {
+				continue;
+			}
+
+			int position = (int) address;
+			byte[] payload = new byte[segment.buffer.getInt(position)];
+			segment.buffer.get(position + HEADER_SIZE, payload);
+			try {
+				records.add(objectMapper.readValue(payload, NotificationRecord.class));
+			} catch (IOException e) {
+				log.error("Unreadable notification journal entry in {} at offset {}", segment.path, position, e);
+			}
+		}
+		return records;
+	}
+
+	private void index(NotificationRecord record, long address) {
+		if (record.getOrderId() != null) {
+			addAddress(byOrderId, record.getOrderId(), address);
+		}
+		if (record.getUserId() != null) {
+			addAddress(byUserId, record.getUserId(), address);
+		}
+	}
+
+	private void addAddress(Map<String, List<Long>> index, String key, long address) {
+		index.compute(key, (k, addresses) -> {
+			List<Long> list = addresses == null ? new CopyOnWriteArrayList<>() : addresses;
+			list.add(address);
+			return list;
+		});
+	}
+
+	private void prune(Map<String, List<Long>> index, long segmentId) {
+		for (String key : index.keySet()) {
+			index.computeIfPresent(key, (k, addresses) -> {
+				addresses.removeIf(address -> (address >>> 32) <= segmentId);
+				return addresses.isEmpty() ? null : addresses;
+			});
+		}
+	}
+
+	private Path segmentPath(long id) {
+		return directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+	}
+
+	private static long address(long segmentId, int position) {
+		return (segmentId << 32) | position;
+	}
+
+	private static int checksum(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return (int) crc.getValue();
+	}
+
+	private static final class Segment {
+		private final long id;
+		private final Path path;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private volatile int writePosition;
+
+		private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+			this.id = id;
+			this.path = path;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		static Segment open(long id, Path path, int segmentSize) throws IOException {
+			FileChannel channel = FileChannel.open(path,
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			// Existing segments keep their size, new ones are pre-allocated (zero filled)
+			long size = channel.size() > 0 ? channel.size() : segmentSize;
+			return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+		}
+
+		void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.ecommerce.notification_service;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class NotificationPreferences {
+
+	private String userId;
+    private boolean optedOut;
+    private Set<Channel> channels = EnumSet.of(Channel.EMAIL, Channel.PUSH);
+    private LocalDateTime updatedAt;
+
+    public static NotificationPreferences defaults(String userId) {
+        NotificationPreferences preferences = new NotificationPreferences();
+        preferences.setUserId(userId);
+        return preferences;
+    }
+
+    public boolean allows(Channel channel) {
+        return !optedOut && channels != null && channels.contains(channel);
+    }
+
+    public enum Channel {
+        EMAIL,
+        SMS,
+        PUSH
+    }
+}
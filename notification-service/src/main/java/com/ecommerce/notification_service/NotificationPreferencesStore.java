@@ -0,0 +1,86 @@
+package com.ecommerce.notification_service;
+
+import java.time.LocalDateTime;
+
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.stereotype.Component;
+
+import com.ecommerce.common.ProducerProfiles;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read and write side of the preferences table built by {@link NotificationPreferencesStream}.
+ * Lookups go to the local store; users without an entry get the defaults, but while the
+ * store is still restoring lookups fail instead, an opt-out may not have been restored yet.
+ */
+@Component
+@Slf4j
+public class NotificationPreferencesStore {
+
+	private final StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+	private final ProducerProfiles producerProfiles;
+	private final Timer lookupTimer;
+	private final Counter unavailableCounter;
+	private volatile ReadOnlyKeyValueStore<String, NotificationPreferences> store;
+
+	public NotificationPreferencesStore(StreamsBuilderFactoryBean streamsBuilderFactoryBean,
+			ProducerProfiles producerProfiles,
+			MeterRegistry meterRegistry) {
+		this.streamsBuilderFactoryBean = streamsBuilderFactoryBean;
+		this.producerProfiles = producerProfiles;
+		this.lookupTimer = Timer.builder("notification.preferences.lookup")
+				.description("Local preference store lookup latency")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.unavailableCounter = Counter.builder("notification.preferences.lookup.unavailable")
+				.description("Lookups refused while the store was restoring")
+				.register(meterRegistry);
+	}
+
+	// Throws PreferencesUnavailableException while the store restores, defaults would ignore opt-outs
+	public NotificationPreferences lookup(String userId) {
+		return lookupTimer.record(() -> {
+			ReadOnlyKeyValueStore<String, NotificationPreferences> current = store();
+			if (current == null) {
+				unavailableCounter.increment();
+				throw new PreferencesUnavailableException(userId);
+			}
+			try {
+				NotificationPreferences preferences = current.get(userId);
+				return preferences != null ? preferences : NotificationPreferences.defaults(userId);
+			} catch (InvalidStateStoreException e) {
+				store = null;
+				unavailableCounter.increment();
+				throw new PreferencesUnavailableException(userId);
+			}
+		});
+	}
+
+	public void update(String userId, NotificationPreferences preferences) {
+		preferences.setUserId(userId);
+		preferences.setUpdatedAt(LocalDateTime.now());
+		producerProfiles.templateFor(NotificationPreferencesStream.TOPIC).send(NotificationPreferencesStream.TOPIC, userId, preferences);
+		log.info("Published notification preferences for user: {}", userId);
+	}
+
+	private ReadOnlyKeyValueStore<String, NotificationPreferences> store() {
+		if (store == null) {
+			KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+			if (streams == null || streams.state() != KafkaStreams.State.RUNNING) {
+				return null;
+			}
+			store = streams.store(StoreQueryParameters.fromNameAndType(NotificationPreferencesStream.STORE_NAME,
+					QueryableStoreTypes.<String, NotificationPreferences>keyValueStore()));
+		}
+		return store;
+	}
+}
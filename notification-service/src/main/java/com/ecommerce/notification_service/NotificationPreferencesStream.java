@@ -0,0 +1,43 @@
+package com.ecommerce.notification_service;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.GlobalKTable;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.support.serializer.JsonSerde;
+
+/**
+ * User notification preferences live in a compacted topic keyed by userId and are
+ * replicated into a local RocksDB store by a GlobalKTable. Every instance holds the full
+ * table, so lookups on the consumer path never leave the process. The store and its
+ * checkpoint live in the Kafka Streams state dir, so a restart only replays what changed
+ * since the last checkpoint.
+ */
+@Configuration
+public class NotificationPreferencesStream {
+
+	public static final String TOPIC = "user-notification-preferences";
+	public static final String STORE_NAME = "user-notification-preferences-store";
+
+	@Bean
+	public NewTopic userNotificationPreferencesTopic() {
+		return TopicBuilder.name(TOPIC).partitions(3).compact().build();
+	}
+
+	@Bean
+	public GlobalKTable<String, NotificationPreferences> userNotificationPreferences(StreamsBuilder builder) {
+		JsonSerde<NotificationPreferences> serde = new JsonSerde<>(NotificationPreferences.class).ignoreTypeHeaders();
+		return builder.globalTable(TOPIC,
+				Consumed.with(Serdes.String(), serde),
+				Materialized.<String, NotificationPreferences, KeyValueStore<Bytes, byte[]>>as(STORE_NAME)
+						.withKeySerde(Serdes.String())
+						.withValueSerde(serde));
+	}
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.notification_service;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class NotificationRecord {
+
+	private String orderId;
+    private String userId;
+    private OrderEvent.OrderStatus status;
+    private NotificationType type;
+    private String message;
+    private LocalDateTime sentAt;
+
+    public enum NotificationType {
+        ORDER_CONFIRMATION,
+        CANCELLATION,
+        SHIPPING,
+        DELIVERY,
+        USER_UPDATE
+    }
+}
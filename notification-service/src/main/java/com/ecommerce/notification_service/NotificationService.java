@@ -1,159 +1,190 @@
 package com.ecommerce.notification_service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
 
+	private final NotificationJournal notificationJournal;
+	private final OrderStatusBroadcaster orderStatusBroadcaster;
+	private final NotificationPreferencesStore notificationPreferencesStore;
 	
 	private final ObjectMapper objectMapper = new ObjectMapper()
             .registerModule(new JavaTimeModule());
 	
+	@RetryableTopic(
+			attempts = "${kafka.retry.attempts:4}",
+			backoff = @Backoff(delayExpression = "${kafka.retry.delay-ms:1000}",
+					multiplierExpression = "${kafka.retry.multiplier:2.0}",
+					maxDelayExpression = "${kafka.retry.max-delay-ms:30000}"),
+			numPartitions = "${kafka.retry.partitions:3}",
+			retryTopicSuffix = "-${spring.application.name}-retry",
+			dltTopicSuffix = "-${spring.application.name}-dlt",
+			topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+			kafkaTemplate = "retryKafkaTemplate")
 	@KafkaListener(topics = "user-orders", groupId = "notification-service-group")
     public void handleUserOrdersTopic(@Payload OrderEvent message,
-                                      ConsumerRecord<String, String> record
-                                      //,Acknowledgment acknowledgment
-                                      ) {
-        try {
-            log.info("Received message from 'user-orders': Key={}, Partition={}, Offset={}", 
-                    record.key(), record.partition(), record.offset());
-            
-            // Parse the JSON message
-            //OrderEvent event = objectMapper.readValue(message, OrderEvent.class);
-            
-            log.info("Processed user order: User={}, Order={}, Status={}", 
-            		message.getUserId(), message.getOrderId(), message.getStatus());
-            
-            // Process the event
-            processUserOrderEvent(message);
-            
-            // Manually acknowledge the message
-            //acknowledgment.acknowledge();
-            
-        } catch (Exception e) {
-            log.error("❌ ERROR processing message from 'user-orders' topic. Message: {}, Error: {}", 
-                    message, e.getMessage(), e);
-            
-            // Log the raw message for debugging
-            System.err.println("RAW MESSAGE THAT FAILED:");
-            System.err.println(message);
-            System.err.println("ERROR: " + e.getMessage());
-            
-            // Still acknowledge to move past the bad message
-            //acknowledgment.acknowledge();
-        }
+                                      ConsumerRecord<String, String> record) {
+        log.info("Received message from 'user-orders': Key={}, Partition={}, Offset={}", 
+                record.key(), record.partition(), record.offset());
+        
+        log.info("Processed user order: User={}, Order={}, Status={}", 
+        		message.getUserId(), message.getOrderId(), message.getStatus());
+        
+        // Failures are retried from the retry topics, the main partition keeps moving
+        processUserOrderEvent(message);
     }
     
+	@RetryableTopic(
+			attempts = "${kafka.retry.attempts:4}",
+			backoff = @Backoff(delayExpression = "${kafka.retry.delay-ms:1000}",
+					multiplierExpression = "${kafka.retry.multiplier:2.0}",
+					maxDelayExpression = "${kafka.retry.max-delay-ms:30000}"),
+			numPartitions = "${kafka.retry.partitions:3}",
+			retryTopicSuffix = "-${spring.application.name}-retry",
+			dltTopicSuffix = "-${spring.application.name}-dlt",
+			topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+			kafkaTemplate = "retryKafkaTemplate")
     @KafkaListener(topics = "orders", groupId = "notification-service-group")
     public void handleOrdersTopic(@Payload OrderEvent message,
-                                  ConsumerRecord<String, String> record
-                                  //,Acknowledgment acknowledgment
-                                  ) {
-        try {
-            log.info("Received message from 'orders': Key={}, Partition={}, Offset={}", 
-                    record.key(), record.partition(), record.offset());
-            
-            //OrderEvent event = objectMapper.readValue(message, OrderEvent.class);
-            
-            log.info("Processed order: Order={}, Status={}", 
-            		message.getOrderId(), message.getStatus());
-            
-            processOrderEvent(message);
-            
-            //acknowledgment.acknowledge();
-            
-        } catch (Exception e) {
-            log.error("❌ ERROR processing message from 'orders' topic. Message: {}, Error: {}", 
-                    message, e.getMessage(), e);
-            
-            // Print the problematic message
-            System.err.println("PROBLEMATIC ORDER MESSAGE:");
-            System.err.println(message);
-            
-            //acknowledgment.acknowledge(); // Acknowledge to continue
-        }
+                                  ConsumerRecord<String, String> record) {
+        log.info("Received message from 'orders': Key={}, Partition={}, Offset={}", 
+                record.key(), record.partition(), record.offset());
+        
+        log.info("Processed order: Order={}, Status={}", 
+        		message.getOrderId(), message.getStatus());
+        
+        processOrderEvent(message);
+    }
+    
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, ?> record) {
+        log.error("❌ Dead-lettered record from '{}': Key={}, DLT Offset={}, Error={}", 
+                headerValue(record, KafkaHeaders.DLT_ORIGINAL_TOPIC), record.key(), 
+                record.offset(), headerValue(record, KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+    }
+    
+    private String headerValue(ConsumerRecord<?, ?> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
     }
     
     private void processOrderEvent(OrderEvent event) {
-        try {
-            switch (event.getStatus()) {
-                case CREATED:
-                    sendOrderConfirmation(event);
-                    break;
-                case INVENTORY_RESERVED:
-                    log.info("📦 Inventory reserved for order: {}", event.getOrderId());
-                    break;
-                case CANCELLED:
-                    sendCancellationNotification(event);
-                    break;
-                case SHIPPED:
-                    sendShippingNotification(event);
-                    break;
-                case DELIVERED:
-                    sendDeliveryNotification(event);
-                    break;
-                default:
-                    log.info("Order {} status: {}", event.getOrderId(), event.getStatus());
-            }
-        } catch (Exception e) {
-            log.error("Error processing order event: {}", event.getOrderId(), e);
+        if (!notificationPreferencesStore.lookup(event.getUserId()).allows(NotificationPreferences.Channel.EMAIL)) {
+            log.info("Skipping order {} notification, user {} has email notifications off", 
+                    event.getOrderId(), event.getUserId());
+            return;
+        }
+        
+        switch (event.getStatus()) {
+            case CREATED:
+                sendOrderConfirmation(event);
+                break;
+            case INVENTORY_RESERVED:
+                log.info("📦 Inventory reserved for order: {}", event.getOrderId());
+                break;
+            case CANCELLED:
+                sendCancellationNotification(event);
+                break;
+            case SHIPPED:
+                sendShippingNotification(event);
+                break;
+            case DELIVERED:
+                sendDeliveryNotification(event);
+                break;
+            default:
+                log.info("Order {} status: {}", event.getOrderId(), event.getStatus());
         }
     }
     
     private void processUserOrderEvent(OrderEvent event) {
-        try {
-            log.info("👤 User-specific notification for user: {}, order: {}", 
+        // Joined against the local replica of the preferences table, no remote call per event
+        NotificationPreferences preferences = notificationPreferencesStore.lookup(event.getUserId());
+        if (preferences.isOptedOut()) {
+            log.info("User {} opted out of notifications, skipping order: {}", 
                     event.getUserId(), event.getOrderId());
-        } catch (Exception e) {
-            log.error("Error processing user order event: {}", event.getUserId(), e);
+            return;
+        }
+        
+        log.info("👤 User-specific notification for user: {}, order: {}, channels: {}", 
+                event.getUserId(), event.getOrderId(), preferences.getChannels());
+        journal(event, NotificationRecord.NotificationType.USER_UPDATE, 
+                String.format("Order %s is now %s", event.getOrderId(), event.getStatus()));
+        
+        if (preferences.allows(NotificationPreferences.Channel.PUSH)) {
+            orderStatusBroadcaster.publish(event);
+        }
+        if (preferences.allows(NotificationPreferences.Channel.SMS)) {
+            log.info("📱 SMS to user {}: order {} is now {}", 
+                    event.getUserId(), event.getOrderId(), event.getStatus());
         }
     }
     
+    private void journal(OrderEvent event, NotificationRecord.NotificationType type, String message) {
+        notificationJournal.append(new NotificationRecord(
+                event.getOrderId(),
+                event.getUserId(),
+                event.getStatus(),
+                type,
+                message,
+                LocalDateTime.now()));
+    }
+    
     private void sendOrderConfirmation(OrderEvent event) {
-        try {
-            String message = String.format(
-                    "📧 ORDER CONFIRMATION\n" +
-                    "Order ID: %s\n" +
-                    "Total: $%s\n" +
-                    "Thank you!",
-                    event.getOrderId(),
-                    event.getTotalAmount()
-            );
-            
-            log.info("Sending order confirmation: {}", event.getOrderId());
-            System.out.println("=".repeat(50));
-            System.out.println(message);
-            System.out.println("=".repeat(50));
-        } catch (Exception e) {
-            log.error("Error sending order confirmation: {}", event.getOrderId(), e);
-        }
+        String message = String.format(
+                "📧 ORDER CONFIRMATION\n" +
+                "Order ID: %s\n" +
+                "Total: $%s\n" +
+                "Thank you!",
+                event.getOrderId(),
+                event.getTotalAmount()
+        );
+        
+        log.info("Sending order confirmation: {}", event.getOrderId());
+        System.out.println("=".repeat(50));
+        System.out.println(message);
+        System.out.println("=".repeat(50));
+        journal(event, NotificationRecord.NotificationType.ORDER_CONFIRMATION, message);
     }
     
     private void sendCancellationNotification(OrderEvent event) {
         String message = String.format("Order %s cancelled", event.getOrderId());
         log.info(message);
         System.out.println("❌ " + message);
+        journal(event, NotificationRecord.NotificationType.CANCELLATION, message);
     }
     
     private void sendShippingNotification(OrderEvent event) {
         String message = String.format("Order %s shipped", event.getOrderId());
         log.info(message);
         System.out.println("🚚 " + message);
+        journal(event, NotificationRecord.NotificationType.SHIPPING, message);
     }
     
     private void sendDeliveryNotification(OrderEvent event) {
         String message = String.format("Order %s delivered", event.getOrderId());
         log.info(message);
         System.out.println("✅ " + message);
+        journal(event, NotificationRecord.NotificationType.DELIVERY, message);
     }
 }
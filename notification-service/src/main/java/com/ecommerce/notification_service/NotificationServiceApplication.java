@@ -2,10 +2,32 @@ package com.ecommerce.notification_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.annotation.EnableKafkaStreams;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.ecommerce.common.JwksKeyCache;
+import com.ecommerce.common.JwtClaimsVerifier;
+import com.ecommerce.common.KafkaMetricsConfig;
+import com.ecommerce.common.KafkaRetryConfig;
+import com.ecommerce.common.ListenerLatencyInterceptor;
+import com.ecommerce.common.ProducerProfileConfig;
+import com.ecommerce.common.TokenRevocationList;
 
 @SpringBootApplication
 @EnableKafka
+@EnableKafkaStreams
+@EnableScheduling
+@Import({
+		KafkaRetryConfig.class,
+		ListenerLatencyInterceptor.class,
+		KafkaMetricsConfig.class,
+		ProducerProfileConfig.class,
+		TokenRevocationList.class,
+		JwksKeyCache.class,
+		JwtClaimsVerifier.class
+})
 public class NotificationServiceApplication {
 
 	public static void main(String[] args) {
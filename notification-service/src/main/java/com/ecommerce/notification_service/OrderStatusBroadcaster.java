@@ -0,0 +1,183 @@
+package com.ecommerce.notification_service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes order status changes to the SSE connections of the owning user. Connections
+ * are held as async servlet requests, so no thread is parked per client. Each event is
+ * encoded once and handed to a small bounded queue per connection, drained by a shared
+ * writer pool; a client whose queue is full is evicted instead of slowing the others.
+ */
+@Component
+@Slf4j
+public class OrderStatusBroadcaster {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+	private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+	private final AtomicInteger connectionCount = new AtomicInteger();
+	private final ExecutorService writers;
+	private final long emitterTimeoutMs;
+	private final int bufferSize;
+	private final int maxConnectionsPerUser;
+
+	public OrderStatusBroadcaster(@Value("${notification.push.writer-threads:4}") int writerThreads,
+			@Value("${notification.push.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+			@Value("${notification.push.buffer-size:32}") int bufferSize,
+			@Value("${notification.push.max-connections-per-user:5}") int maxConnectionsPerUser) {
+		this.writers = Executors.newFixedThreadPool(writerThreads);
+		this.emitterTimeoutMs = emitterTimeoutMs;
+		this.bufferSize = bufferSize;
+		this.maxConnectionsPerUser = maxConnectionsPerUser;
+	}
+
+	public SseEmitter subscribe(String userId) {
+		SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+		Subscriber subscriber = new Subscriber(userId, emitter, new ArrayBlockingQueue<>(bufferSize));
+
+		Subscriber[] evicted = new Subscriber[1];
+		subscribers.compute(userId, (key, existing) -> {
+			Set<Subscriber> userSubscribers = existing == null ? ConcurrentHashMap.newKeySet() : existing;
+			if (userSubscribers.size() >= maxConnectionsPerUser) {
+				// Drop one existing connection to stay within the per-user limit
+				evicted[0] = userSubscribers.iterator().next();
+				userSubscribers.remove(evicted[0]);
+				connectionCount.decrementAndGet();
+			}
+			userSubscribers.add(subscriber);
+			connectionCount.incrementAndGet();
+			return userSubscribers;
+		});
+		if (evicted[0] != null) {
+			evicted[0].emitter.complete();
+		}
+
+		emitter.onCompletion(() -> remove(subscriber));
+		emitter.onTimeout(() -> remove(subscriber));
+		emitter.onError(ex -> remove(subscriber));
+
+		enqueue(subscriber, SseEmitter.event().comment("subscribed").build());
+		log.debug("User {} subscribed to order status updates ({} open connections)", userId, connectionCount.get());
+		return emitter;
+	}
+
+	public void publish(OrderEvent event) {
+		Set<Subscriber> userSubscribers = subscribers.get(event.getUserId());
+		if (userSubscribers == null || userSubscribers.isEmpty()) {
+			return;
+		}
+
+		Set<DataWithMediaType> frame;
+		try {
+			frame = SseEmitter.event()
+					.name("order-status")
+					.id(event.getOrderId() + ":" + event.getStatus())
+					.data(objectMapper.writeValueAsString(event), MediaType.APPLICATION_JSON)
+					.build();
+		} catch (JsonProcessingException e) {
+			log.error("Could not encode order status update for order: {}", event.getOrderId(), e);
+			return;
+		}
+
+		for (Subscriber subscriber : userSubscribers) {
+			enqueue(subscriber, frame);
+		}
+	}
+
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	@Scheduled(fixedRateString = "${notification.push.heartbeat-interval-ms:30000}")
+	public void heartbeat() {
+		Set<DataWithMediaType> ping = SseEmitter.event().comment("ping").build();
+		subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> enqueue(subscriber, ping)));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+		writers.shutdown();
+	}
+
+	private void enqueue(Subscriber subscriber, Set<DataWithMediaType> frame) {
+		if (!subscriber.queue.offer(frame)) {
+			log.warn("Evicting slow order status subscriber for user: {}", subscriber.userId);
+			evict(subscriber);
+			return;
+		}
+		if (subscriber.draining.compareAndSet(false, true)) {
+			writers.execute(() -> drain(subscriber));
+		}
+	}
+
+	private void drain(Subscriber subscriber) {
+		try {
+			Set<DataWithMediaType> frame;
+			while ((frame = subscriber.queue.poll()) != null) {
+				subscriber.emitter.send(frame);
+			}
+		} catch (IOException | IllegalStateException e) {
+			log.debug("Order status subscriber for user {} disconnected: {}", subscriber.userId, e.getMessage());
+			evict(subscriber);
+			return;
+		} finally {
+			subscriber.draining.set(false);
+		}
+
+		// A frame may have been queued between the last poll and releasing the flag
+		if (!subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+			writers.execute(() -> drain(subscriber));
+		}
+	}
+
+	private void evict(Subscriber subscriber) {
+		remove(subscriber);
+		subscriber.queue.clear();
+		subscriber.emitter.complete();
+	}
+
+	private void remove(Subscriber subscriber) {
+		subscribers.computeIfPresent(subscriber.userId, (key, userSubscribers) -> {
+			if (userSubscribers.remove(subscriber)) {
+				connectionCount.decrementAndGet();
+			}
+			return userSubscribers.isEmpty() ? null : userSubscribers;
+		});
+	}
+
+	private static final class Subscriber {
+		private final String userId;
+		private final SseEmitter emitter;
+		private final BlockingQueue<Set<DataWithMediaType>> queue;
+		private final AtomicBoolean draining = new AtomicBoolean();
+
+		private Subscriber(String userId, SseEmitter emitter, BlockingQueue<Set<DataWithMediaType>> queue) {
+			this.userId = userId;
+			this.emitter = emitter;
+			this.queue = queue;
+		}
+	}
+}
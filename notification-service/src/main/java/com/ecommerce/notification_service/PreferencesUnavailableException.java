@@ -0,0 +1,13 @@
+package com.ecommerce.notification_service;
+
+/**
+ * The preferences table is still restoring, so whether the user opted out is not known yet.
+ * Thrown on the consumer path so the event is retried from the retry topics instead of
+ * being sent with default preferences.
+ */
+public class PreferencesUnavailableException extends RuntimeException {
+
+	public PreferencesUnavailableException(String userId) {
+		super("Notification preferences not available yet for user: " + userId);
+	}
+}
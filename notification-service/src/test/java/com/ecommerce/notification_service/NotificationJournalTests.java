@@ -0,0 +1,177 @@
+package com.ecommerce.notification_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NotificationJournalTests {
+
+	private static final int SEGMENT_SIZE = 4096;
+	private static final int HEADER_SIZE = 8;
+
+	@TempDir
+	Path directory;
+
+	private NotificationJournal journal;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		journal = open();
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		journal.close();
+	}
+
+	@Test
+	void entriesSurviveAReopen() throws IOException {
+		append("o1", "o2", "o3");
+
+		reopen();
+
+		assertThat(orderIds(journal.findByUserId("alice", 10))).containsExactly("o1", "o2", "o3");
+		assertThat(journal.findByOrderId("o2", 10)).singleElement()
+				.satisfies(record -> assertThat(record.getMessage()).isEqualTo("Order o2 confirmed"));
+	}
+
+	@Test
+	void tornPayloadIsTruncatedAndOverwritten() throws IOException {
+		append("o1", "o2", "o3");
+		journal.close();
+		List<Integer> frames = frames();
+		// A payload byte that never made it to disk
+		corrupt(frames.get(2) + HEADER_SIZE + 5, (byte) 'X');
+
+		journal = open();
+		assertThat(orderIds(journal.findByUserId("alice", 10))).containsExactly("o1", "o2");
+		assertThat(journal.findByOrderId("o3", 10)).isEmpty();
+
+		append("o4");
+		reopen();
+		assertThat(orderIds(journal.findByUserId("alice", 10))).containsExactly("o1", "o2", "o4");
+	}
+
+	@Test
+	void frameWithLengthButNoPayloadIsIgnored() throws IOException {
+		append("o1");
+		journal.close();
+		int end = frames().get(0) + HEADER_SIZE + payloadLength(0);
+		// The length reached the disk, the crc and payload pages did not
+		writeInt(end, 120);
+
+		journal = open();
+		assertThat(orderIds(journal.findByUserId("alice", 10))).containsExactly("o1");
+
+		append("o2");
+		reopen();
+		assertThat(orderIds(journal.findByUserId("alice", 10))).containsExactly("o1", "o2");
+	}
+
+	@Test
+	void lengthRunningPastTheSegmentIsIgnored() throws IOException {
+		append("o1");
+		journal.close();
+		writeInt(frames().get(0) + HEADER_SIZE + payloadLength(0), SEGMENT_SIZE);
+
+		journal = open();
+
+		assertThat(orderIds(journal.findByUserId("alice", 10))).containsExactly("o1");
+	}
+
+	@Test
+	void entriesAcrossRolledSegmentsAreRecovered() throws IOException {
+		List<String> orderIds = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			orderIds.add("o" + i);
+		}
+		append(orderIds.toArray(String[]::new));
+
+		reopen();
+
+		try (Stream<Path> files = Files.list(directory)) {
+			assertThat(files.count()).isGreaterThan(1);
+		}
+		assertThat(orderIds(journal.findByUserId("alice", 100))).containsExactlyElementsOf(orderIds);
+		assertThat(orderIds(journal.findByUserId("alice", 2))).containsExactly("o58", "o59");
+	}
+
+	private NotificationJournal open() throws IOException {
+		NotificationJournal opened = new NotificationJournal(directory.toString(), SEGMENT_SIZE, 30);
+		opened.open();
+		return opened;
+	}
+
+	private void reopen() throws IOException {
+		journal.close();
+		journal = open();
+	}
+
+	private void append(String... orderIds) {
+		for (String orderId : orderIds) {
+			journal.append(new NotificationRecord(orderId, "alice", OrderEvent.OrderStatus.CREATED,
+					NotificationRecord.NotificationType.ORDER_CONFIRMATION, "Order " + orderId + " confirmed",
+					LocalDateTime.of(2024, 5, 1, 12, 0)));
+		}
+	}
+
+	private static List<String> orderIds(List<NotificationRecord> records) {
+		return records.stream().map(NotificationRecord::getOrderId).toList();
+	}
+
+	// Frame offsets in the first segment, walked the way recovery does
+	private List<Integer> frames() throws IOException {
+		ByteBuffer segment = firstSegment();
+		List<Integer> frames = new ArrayList<>();
+		int position = 0;
+		int length;
+		while ((length = segment.getInt(position)) > 0) {
+			frames.add(position);
+			position += HEADER_SIZE + length;
+		}
+		return frames;
+	}
+
+	private int payloadLength(int frame) throws IOException {
+		return firstSegment().getInt(frames().get(frame));
+	}
+
+	private ByteBuffer firstSegment() throws IOException {
+		return ByteBuffer.wrap(Files.readAllBytes(segmentPath())).order(ByteOrder.BIG_ENDIAN);
+	}
+
+	private void corrupt(int position, byte value) throws IOException {
+		write(position, ByteBuffer.wrap(new byte[] { value }));
+	}
+
+	private void writeInt(int position, int value) throws IOException {
+		write(position, ByteBuffer.allocate(Integer.BYTES).putInt(0, value));
+	}
+
+	private void write(int position, ByteBuffer bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(segmentPath(), StandardOpenOption.WRITE)) {
+			channel.write(bytes, position);
+		}
+	}
+
+	private Path segmentPath() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.sorted().findFirst().orElseThrow();
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.ecommerce.notification_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.EnumSet;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+
+import com.ecommerce.common.ProducerProfiles;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class NotificationPreferencesStoreTests {
+
+	private final StreamsBuilderFactoryBean factoryBean = mock(StreamsBuilderFactoryBean.class);
+	private final KafkaStreams streams = mock(KafkaStreams.class);
+	@SuppressWarnings("unchecked")
+	private final ReadOnlyKeyValueStore<String, NotificationPreferences> table = mock(ReadOnlyKeyValueStore.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private NotificationPreferencesStore store;
+
+	@BeforeEach
+	void setUp() {
+		when(factoryBean.getKafkaStreams()).thenReturn(streams);
+		when(streams.store(any(StoreQueryParameters.class))).thenReturn(table);
+		store = new NotificationPreferencesStore(factoryBean, mock(ProducerProfiles.class), meterRegistry);
+	}
+
+	@Test
+	void lookupFailsUntilTheStreamsClientIsCreated() {
+		when(factoryBean.getKafkaStreams()).thenReturn(null);
+
+		assertThatThrownBy(() -> store.lookup("alice")).isInstanceOf(PreferencesUnavailableException.class);
+		assertThat(unavailable()).isEqualTo(1);
+	}
+
+	@Test
+	void lookupFailsWhileTheStoreRestores() {
+		when(streams.state()).thenReturn(KafkaStreams.State.REBALANCING);
+
+		assertThatThrownBy(() -> store.lookup("alice")).isInstanceOf(PreferencesUnavailableException.class);
+		assertThat(unavailable()).isEqualTo(1);
+		verify(streams, never()).store(any(StoreQueryParameters.class));
+	}
+
+	@Test
+	void storedPreferencesAreReturnedOnceRunning() {
+		when(streams.state()).thenReturn(KafkaStreams.State.RUNNING);
+		NotificationPreferences optedOut = preferences("alice", true, NotificationPreferences.Channel.EMAIL);
+		when(table.get("alice")).thenReturn(optedOut);
+
+		assertThat(store.lookup("alice")).isSameAs(optedOut);
+		assertThat(unavailable()).isZero();
+	}
+
+	@Test
+	void usersWithoutAnEntryGetTheDefaults() {
+		when(streams.state()).thenReturn(KafkaStreams.State.RUNNING);
+
+		NotificationPreferences preferences = store.lookup("bob");
+
+		assertThat(preferences.getUserId()).isEqualTo("bob");
+		assertThat(preferences.isOptedOut()).isFalse();
+		assertThat(preferences.getChannels()).containsExactlyInAnyOrder(NotificationPreferences.Channel.EMAIL,
+				NotificationPreferences.Channel.PUSH);
+	}
+
+	@Test
+	void storeMigratingAwayFailsTheLookupAndIsLookedUpAgain() {
+		when(streams.state()).thenReturn(KafkaStreams.State.RUNNING);
+		when(table.get("alice")).thenThrow(new InvalidStateStoreException("migrated"))
+				.thenReturn(preferences("alice", false, NotificationPreferences.Channel.SMS));
+
+		assertThatThrownBy(() -> store.lookup("alice")).isInstanceOf(PreferencesUnavailableException.class);
+		assertThat(unavailable()).isEqualTo(1);
+		// The next lookup asks the streams client for the store again instead of reusing the stale one
+		assertThat(store.lookup("alice").getChannels()).containsExactly(NotificationPreferences.Channel.SMS);
+		verify(streams, times(2)).store(any(StoreQueryParameters.class));
+	}
+
+	@Test
+	void optOutOverridesEveryChannel() {
+		NotificationPreferences optedOut = preferences("alice", true, NotificationPreferences.Channel.EMAIL,
+				NotificationPreferences.Channel.SMS, NotificationPreferences.Channel.PUSH);
+
+		for (NotificationPreferences.Channel channel : NotificationPreferences.Channel.values()) {
+			assertThat(optedOut.allows(channel)).isFalse();
+		}
+	}
+
+	@Test
+	void onlyChosenChannelsAreAllowed() {
+		NotificationPreferences smsOnly = preferences("alice", false, NotificationPreferences.Channel.SMS);
+
+		assertThat(smsOnly.allows(NotificationPreferences.Channel.SMS)).isTrue();
+		assertThat(smsOnly.allows(NotificationPreferences.Channel.EMAIL)).isFalse();
+		assertThat(smsOnly.allows(NotificationPreferences.Channel.PUSH)).isFalse();
+		smsOnly.setChannels(null);
+		assertThat(smsOnly.allows(NotificationPreferences.Channel.SMS)).isFalse();
+	}
+
+	@Test
+	void optedOutUserIsNeitherJournalledNorPushed() {
+		NotificationJournal journal = mock(NotificationJournal.class);
+		OrderStatusBroadcaster broadcaster = mock(OrderStatusBroadcaster.class);
+		NotificationPreferencesStore preferencesStore = mock(NotificationPreferencesStore.class);
+		when(preferencesStore.lookup("alice")).thenReturn(
+				preferences("alice", true, NotificationPreferences.Channel.EMAIL, NotificationPreferences.Channel.PUSH));
+		NotificationService service = new NotificationService(journal, broadcaster, preferencesStore);
+
+		service.handleUserOrdersTopic(event("alice"), new ConsumerRecord<>("user-orders", 0, 0L, "alice", "{}"));
+
+		verify(journal, never()).append(any());
+		verify(broadcaster, never()).publish(any());
+	}
+
+	@Test
+	void eventDuringRestoreFailsSoItIsRetried() {
+		NotificationJournal journal = mock(NotificationJournal.class);
+		NotificationPreferencesStore preferencesStore = mock(NotificationPreferencesStore.class);
+		when(preferencesStore.lookup("alice")).thenThrow(new PreferencesUnavailableException("alice"));
+		NotificationService service = new NotificationService(journal, mock(OrderStatusBroadcaster.class),
+				preferencesStore);
+
+		assertThatThrownBy(() -> service.handleUserOrdersTopic(event("alice"),
+				new ConsumerRecord<>("user-orders", 0, 0L, "alice", "{}")))
+				.isInstanceOf(PreferencesUnavailableException.class);
+		verify(journal, never()).append(any());
+	}
+
+	private double unavailable() {
+		return meterRegistry.get("notification.preferences.lookup.unavailable").counter().count();
+	}
+
+	private static NotificationPreferences preferences(String userId, boolean optedOut,
+			NotificationPreferences.Channel... channels) {
+		NotificationPreferences preferences = NotificationPreferences.defaults(userId);
+		preferences.setOptedOut(optedOut);
+		preferences.setChannels(EnumSet.of(channels[0], channels));
+		return preferences;
+	}
+
+	private static OrderEvent event(String userId) {
+		OrderEvent event = new OrderEvent();
+		event.setOrderId("order-1");
+		event.setUserId(userId);
+		event.setStatus(OrderEvent.OrderStatus.SHIPPED);
+		return event;
+	}
+}
@@ -0,0 +1,115 @@
+package com.ecommerce.order_service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows measured latency, after the gradient algorithm: per
+ * window, the average latency of completed requests (short RTT) is compared with a slow
+ * moving average (long RTT). While short stays within tolerance of long the limit grows
+ * by a small queue allowance; when requests start to queue inside the service short RTT
+ * rises and the limit shrinks in proportion. A window with failed requests cuts the
+ * limit multiplicatively, like AIMD. The limit never grows while the service is not using it.
+ */
+public class AdaptiveConcurrencyLimit {
+
+	private static final int MIN_WINDOW_SAMPLES = 10;
+	private static final double LONG_RTT_WEIGHT = 0.05;
+	private static final double SMOOTHING = 0.2;
+	private static final double DROP_BACKOFF = 0.9;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final long windowNanos;
+	private volatile double limit;
+
+	// Guarded by this
+	private double longRttNanos;
+	private long windowStart = System.nanoTime();
+	private long windowRttSum;
+	private int windowSamples;
+	private int windowMaxInFlight;
+	private boolean windowDropped;
+
+	public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, long windowMs) {
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+	}
+
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= (int) limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases a permit taken with {@link #tryAcquire}. Dropped means the request failed
+	 * in a way that points at overload (server error, timeout), its latency is not sampled.
+	 */
+	public void release(long rttNanos, boolean dropped) {
+		int current = inFlight.getAndDecrement();
+		synchronized (this) {
+			windowMaxInFlight = Math.max(windowMaxInFlight, current);
+			if (dropped) {
+				windowDropped = true;
+			} else {
+				windowRttSum += rttNanos;
+				windowSamples++;
+			}
+			long now = System.nanoTime();
+			if (now - windowStart >= windowNanos && (windowSamples >= MIN_WINDOW_SAMPLES || windowDropped)) {
+				update();
+				windowStart = now;
+				windowRttSum = 0;
+				windowSamples = 0;
+				windowMaxInFlight = 0;
+				windowDropped = false;
+			}
+		}
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	private void update() {
+		double current = limit;
+		if (windowDropped) {
+			limit = Math.max(minLimit, current * DROP_BACKOFF);
+			return;
+		}
+		double shortRtt = (double) windowRttSum / windowSamples;
+		if (longRttNanos == 0) {
+			longRttNanos = shortRtt;
+		}
+		// A much faster window means the baseline is stale (e.g. after a slow spell), catch up
+		if (longRttNanos / shortRtt > 2) {
+			longRttNanos *= 0.95;
+		} else {
+			longRttNanos += (shortRtt - longRttNanos) * LONG_RTT_WEIGHT;
+		}
+		// Only probe upwards when the limit is actually being reached
+		if (windowMaxInFlight < current / 2) {
+			return;
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+		double next = current * gradient + Math.sqrt(current);
+		next = current * (1 - SMOOTHING) + next * SMOOTHING;
+		limit = Math.max(minLimit, Math.min(maxLimit, next));
+	}
+}
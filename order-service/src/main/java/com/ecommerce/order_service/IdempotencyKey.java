@@ -0,0 +1,38 @@
+package com.ecommerce.order_service;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Claim on an Idempotency-Key for order creation, scoped to the user. Holds the response
+ * once the order is created, until expiresAt. An incomplete claim whose lockedUntil has
+ * passed belonged to an instance that died mid-request and can be taken over.
+ */
+@Entity
+@Table(name = "order_idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyKey {
+    // userId:Idempotency-Key
+    @Id
+    private String id;
+    
+    // Set by whoever holds the claim, fences the previous holder after a take-over
+    private String claimToken;
+    private String requestHash;
+    private String orderId;
+    @Column(columnDefinition = "text")
+    private String response;
+    private boolean completed;
+    private LocalDateTime lockedUntil;
+    private LocalDateTime expiresAt;
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -0,0 +1,22 @@
+package com.ecommerce.order_service;
+
+import org.springframework.http.HttpStatus;
+
+import lombok.Getter;
+
+/**
+ * Order creation refused because of its Idempotency-Key: reused with a different request
+ * (422), still being processed elsewhere (409 with Retry-After) or malformed (400).
+ */
+@Getter
+public class IdempotencyKeyException extends RuntimeException {
+
+	private final HttpStatus status;
+	private final long retryAfterSeconds;
+
+	public IdempotencyKeyException(HttpStatus status, String message, long retryAfterSeconds) {
+		super(message);
+		this.status = status;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.order_service;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+	@Modifying
+	@Transactional
+	@Query("delete from IdempotencyKey k where k.expiresAt < :now and (k.completed = true or k.lockedUntil < :now)")
+	int deleteExpired(@Param("now") LocalDateTime now);
+}
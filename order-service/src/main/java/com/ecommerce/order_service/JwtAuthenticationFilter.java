@@ -1,101 +1,31 @@
 package com.ecommerce.order_service;
 
 import java.io.IOException;
-import java.security.Key;
-import java.util.List;
-import java.util.stream.Collectors;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
 
 @Component
-@Slf4j
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter{
 
-	 @Value("${jwt.secret:ThisIsMySuperSecretKeyForJWTGeneration2024MustBeAtLeast32Chars}")
-	    private String jwtSecret;
-	    
-	    private Key getSigningKey() {
-	        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
-	    }
-	    
+	private final JwtTokenVerifier jwtTokenVerifier;
+
 	@Override
 	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
 			throws ServletException, IOException {
-String token = getJwtFromRequest(request);
-        
-        if (token != null && validateToken(token)) {
-            String username = getUsernameFromToken(token);
-            List<String> roles = getRolesFromToken(token);
-            
-            List<SimpleGrantedAuthority> authorities = roles.stream()
-                    .map(SimpleGrantedAuthority::new)
-                    .collect(Collectors.toList());
-            
-            UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(username, null, authorities);
-            
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-            log.debug("Authenticated user: {} with roles: {}", username, roles);
-        }
-        
+		jwtTokenVerifier.authenticate(request.getHeader("Authorization"))
+				.ifPresent(authentication -> SecurityContextHolder.getContext().setAuthentication(authentication));
+
         filterChain.doFilter(request, response);
-		
 	}
-
-	
-	private String getJwtFromRequest(HttpServletRequest request) {
-        String bearerToken = request.getHeader("Authorization");
-        if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
-            return bearerToken.substring(7);
-        }
-        return null;
-    }
-    
-    private boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (Exception ex) {
-            log.error("Invalid JWT token: {}", ex.getMessage());
-            return false;
-        }
-    }
-    
-    private String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        
-        return claims.getSubject();
-    }
-    
-    @SuppressWarnings("unchecked")
-    private List<String> getRolesFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        
-        return claims.get("roles", List.class);
-    }
 }
@@ -0,0 +1,38 @@
+package com.ecommerce.order_service;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import com.ecommerce.common.JwtClaimsVerifier;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Turns the Authorization header into an authentication, for the servlet filter and the
+ * reactive one alike. Tokens are checked by {@link JwtClaimsVerifier}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JwtTokenVerifier {
+
+	private final JwtClaimsVerifier jwtClaimsVerifier;
+
+	public Optional<Authentication> authenticate(String authorizationHeader) {
+		return jwtClaimsVerifier.verifyBearer(authorizationHeader).map(claims -> {
+			String username = claims.getSubject();
+			List<String> roles = JwtClaimsVerifier.roles(claims);
+			List<SimpleGrantedAuthority> authorities = roles.stream()
+					.map(SimpleGrantedAuthority::new)
+					.toList();
+			log.debug("Authenticated user: {} with roles: {}", username, roles);
+			return new UsernamePasswordAuthenticationToken(username, null, authorities);
+		});
+	}
+}
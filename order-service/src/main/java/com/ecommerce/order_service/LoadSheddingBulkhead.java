@@ -0,0 +1,56 @@
+package com.ecommerce.order_service;
+
+import org.springframework.http.HttpStatus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One bulkhead's adaptive limit and meters, plus the request rules both web stacks shed
+ * by; see {@link LoadSheddingFilter} and {@link ReactiveLoadSheddingFilter}.
+ */
+@Slf4j
+final class LoadSheddingBulkhead {
+
+	final LoadSheddingProperties.Bulkhead config;
+	final AdaptiveConcurrencyLimit limit;
+	final Counter rejected;
+
+	LoadSheddingBulkhead(String name, LoadSheddingProperties.Bulkhead config, LoadSheddingProperties properties,
+			MeterRegistry meterRegistry) {
+		this.config = config;
+		this.limit = new AdaptiveConcurrencyLimit(config.getInitialLimit(), config.getMinLimit(),
+				config.getMaxLimit(), properties.getTolerance(), properties.getWindowMs());
+		this.rejected = Counter.builder("order.concurrency.rejected")
+				.description("Order API requests turned away over the concurrency limit")
+				.tag("bulkhead", name)
+				.register(meterRegistry);
+		Gauge.builder("order.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+				.description("Current adaptive concurrency limit")
+				.tag("bulkhead", name)
+				.register(meterRegistry);
+		Gauge.builder("order.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+				.description("Order API requests currently admitted")
+				.tag("bulkhead", name)
+				.register(meterRegistry);
+		log.info("Order {} bulkhead: limit {} ({}..{})", name, config.getInitialLimit(), config.getMinLimit(),
+				config.getMaxLimit());
+	}
+
+	// Exports run for minutes on purpose, they would only skew the latency the limits follow
+	static boolean isShed(String path) {
+		return path.startsWith("/api/orders") && !path.equals("/api/orders/health")
+				&& !path.equals("/api/orders/export");
+	}
+
+	static boolean isRead(String method) {
+		return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+	}
+
+	// 503 is also how the history read model says it is restoring, that is not overload
+	static boolean isOverloaded(int status) {
+		return status >= 500 && status != HttpStatus.SERVICE_UNAVAILABLE.value();
+	}
+}
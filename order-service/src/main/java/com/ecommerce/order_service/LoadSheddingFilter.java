@@ -0,0 +1,99 @@
+package com.ecommerce.order_service;
+
+import java.io.IOException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Admits order API requests up to the read or write bulkhead's adaptive limit and turns
+ * the rest away at once with Retry-After, before authentication or a database connection
+ * is spent on them. Excess load is rejected instead of queuing in Tomcat or for a Hikari
+ * connection, so accepted requests keep their latency whatever the offered load.
+ * Exported as order.concurrency.limit, order.concurrency.in-flight and
+ * order.concurrency.rejected, tagged by bulkhead. {@link ReactiveLoadSheddingFilter} does
+ * the same under the reactive profile.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@EnableConfigurationProperties(LoadSheddingProperties.class)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+	private final LoadSheddingProperties properties;
+	private final LoadSheddingBulkhead read;
+	private final LoadSheddingBulkhead write;
+
+	public LoadSheddingFilter(LoadSheddingProperties properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.read = new LoadSheddingBulkhead("read", properties.getRead(), properties, meterRegistry);
+		this.write = new LoadSheddingBulkhead("write", properties.getWrite(), properties, meterRegistry);
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !properties.isEnabled() || !LoadSheddingBulkhead.isShed(request.getRequestURI());
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		LoadSheddingBulkhead bulkhead = LoadSheddingBulkhead.isRead(request.getMethod()) ? read : write;
+		if (!bulkhead.limit.tryAcquire()) {
+			bulkhead.rejected.increment();
+			response.setStatus(bulkhead.config.getRejectStatus());
+			response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getRetryAfterSeconds()));
+			return;
+		}
+
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			filterChain.doFilter(request, response);
+			failed = false;
+		} finally {
+			if (!failed && request.isAsyncStarted()) {
+				// Streamed responses hold their permit until they complete
+				request.getAsyncContext().addListener(new AsyncListener() {
+					private volatile boolean aborted;
+
+					@Override
+					public void onComplete(AsyncEvent event) {
+						bulkhead.limit.release(System.nanoTime() - start, aborted
+								|| LoadSheddingBulkhead.isOverloaded(response.getStatus()));
+					}
+
+					@Override
+					public void onTimeout(AsyncEvent event) {
+						aborted = true;
+					}
+
+					@Override
+					public void onError(AsyncEvent event) {
+						aborted = true;
+					}
+
+					@Override
+					public void onStartAsync(AsyncEvent event) {
+					}
+				});
+			} else {
+				bulkhead.limit.release(System.nanoTime() - start, failed
+						|| LoadSheddingBulkhead.isOverloaded(response.getStatus()));
+			}
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.ecommerce.order_service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Bulkheads in front of the order endpoints, see {@link LoadSheddingFilter}. Reads and
+ * writes each get their own adaptive limit, so a burst of history polling cannot take the
+ * capacity checkout needs, and the other way round.
+ */
+@Data
+@ConfigurationProperties(prefix = "order-load-shedding")
+public class LoadSheddingProperties {
+
+	private boolean enabled = true;
+	// Latency growth over the baseline accepted before limits shrink
+	private double tolerance = 1.5;
+	private long windowMs = 250;
+	private long retryAfterSeconds = 1;
+	private Bulkhead read = new Bulkhead(40, 8, 400, 429);
+	private Bulkhead write = new Bulkhead(10, 2, 40, 503);
+
+	@Data
+	public static class Bulkhead {
+		private int initialLimit;
+		private int minLimit;
+		private int maxLimit;
+		private int rejectStatus;
+
+		public Bulkhead() {
+		}
+
+		public Bulkhead(int initialLimit, int minLimit, int maxLimit, int rejectStatus) {
+			this.initialLimit = initialLimit;
+			this.minLimit = minLimit;
+			this.maxLimit = maxLimit;
+			this.rejectStatus = rejectStatus;
+		}
+	}
+}
@@ -6,11 +6,16 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
+// Range partitioned by month on createdAt, see schema-postgres.sql
 @Entity
 @Table(name="orders")
 @Data
@@ -18,8 +23,9 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class Order {
 
+	// uuid column, assigned from OrderIdGenerator: time-ordered, so inserts append to the primary key index
 	@Id
-    private String id = UUID.randomUUID().toString();
+    private UUID id;
     
     private String userId;
     
@@ -31,6 +37,11 @@ public class Order {
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt = LocalDateTime.now();
     
+    // Bumped on every update and carried on the order events, rows from before the column start at 0
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+    
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER, mappedBy = "order")
     private List<OrderItem> items = new ArrayList<>();
 	
@@ -48,8 +59,15 @@ public class Order {
 	        private String productName;
 	        private Integer quantity;
 	        private BigDecimal price;
+	        // Partition key of order_items, the order's createdAt
+	        @JsonIgnore
+	        @Column(nullable = false)
+	        private LocalDateTime orderCreatedAt;
 	        @ManyToOne  
-	        @JoinColumn(name = "order_id")  
+	        @JoinColumn(name = "order_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))  
+	        @JsonIgnore
+	        @ToString.Exclude
+	        @EqualsAndHashCode.Exclude
 	        private Order order;
 	    }
 }
@@ -0,0 +1,330 @@
+package com.ecommerce.order_service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cold orders, one segment per archived month partition. A segment holds the month's orders
+ * as NDJSON sorted by id, in blocks of order-archive.block-size orders that are each their
+ * own gzip member (the file as a whole is still a valid .ndjson.gz). The .idx next to it
+ * lists every block's first and last id and byte range, so a lookup decompresses a single
+ * block per segment. Indexes are kept in memory; an .idx is only written once its segment
+ * is complete. The directory is shared storage written by whichever instance archives, so
+ * every instance rescans it each order-archive.refresh-ms and picks up new or rewritten
+ * segments; {@link OrderArchiver} keeps the rows in the database until then.
+ */
+@Component
+@Slf4j
+public class OrderArchive {
+
+	private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+	private static final String INDEX_SUFFIX = ".idx";
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+	private final Path directory;
+	private final int blockSize;
+	// Newest month first, recent orders are the likelier ones to be asked for
+	private final ConcurrentNavigableMap<String, Segment> segments = new ConcurrentSkipListMap<>(Collections.reverseOrder());
+
+	public OrderArchive(@Value("${order-archive.dir:./data/order-archive}") String directory,
+			@Value("${order-archive.block-size:1000}") int blockSize) {
+		this.directory = Paths.get(directory);
+		this.blockSize = blockSize;
+	}
+
+	@PostConstruct
+	public void open() throws IOException {
+		Files.createDirectories(directory);
+		refresh();
+		log.info("Order archive opened: {} segments in {}", segments.size(), directory);
+	}
+
+	/** Loads indexes that are new or were rewritten since the last scan and forgets removed ones. */
+	@Scheduled(initialDelayString = "${order-archive.refresh-ms:60000}",
+			fixedDelayString = "${order-archive.refresh-ms:60000}")
+	public void refresh() throws IOException {
+		Set<String> present = new HashSet<>();
+		try (Stream<Path> listing = Files.list(directory)) {
+			for (Path path : listing.filter(path -> path.getFileName().toString().endsWith(INDEX_SUFFIX)).toList()) {
+				String name = path.getFileName().toString();
+				String segment = name.substring(0, name.length() - INDEX_SUFFIX.length());
+				present.add(segment);
+				Segment loaded = segments.get(segment);
+				if (loaded == null || !loaded.modified().equals(Files.getLastModifiedTime(path))) {
+					load(segment);
+				}
+			}
+		}
+		segments.keySet().retainAll(present);
+	}
+
+	public Optional<Order> find(String orderId) {
+		for (var segment : segments.entrySet()) {
+			Block block = candidate(segment.getValue().blocks(), orderId);
+			if (block == null) {
+				continue;
+			}
+			try {
+				Optional<Order> order = readBlock(segment.getKey(), block, orderId);
+				if (order.isPresent()) {
+					return order;
+				}
+			} catch (IOException e) {
+				// Most likely rewritten by another instance since the last scan
+				log.error("Could not read order archive segment {} at offset {}", segment.getKey(), block.getOffset(), e);
+				reload(segment.getKey());
+			}
+		}
+		return Optional.empty();
+	}
+
+	/** When the segment's index was written, empty while there is none. */
+	public Optional<FileTime> committedAt(String segment) throws IOException {
+		Path index = indexPath(segment);
+		return Files.exists(index) ? Optional.of(Files.getLastModifiedTime(index)) : Optional.empty();
+	}
+
+	/** Orders in the segment and the sum of their versions, as its index on disk lists them. */
+	public Contents contents(String segment) throws IOException {
+		List<Block> blocks = readIndex(indexPath(segment));
+		return new Contents(blocks.stream().mapToLong(Block::getCount).sum(),
+				blocks.stream().mapToLong(Block::getVersions).sum());
+	}
+
+	// Orders have to be appended in id order
+	public SegmentWriter openSegment(String segment) throws IOException {
+		return new SegmentWriter(segment);
+	}
+
+	private void load(String segment) throws IOException {
+		Path index = indexPath(segment);
+		// The timestamp first, a rewrite racing with the read is then seen as a change next time
+		FileTime modified = Files.getLastModifiedTime(index);
+		segments.put(segment, new Segment(readIndex(index), modified));
+	}
+
+	private void reload(String segment) {
+		try {
+			load(segment);
+		} catch (IOException e) {
+			log.error("Could not reload order archive index of {}", segment, e);
+		}
+	}
+
+	private List<Block> readIndex(Path index) throws IOException {
+		return objectMapper.readValue(index.toFile(), new TypeReference<List<Block>>() {});
+	}
+
+	private Block candidate(List<Block> blocks, String orderId) {
+		int low = 0;
+		int high = blocks.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			Block block = blocks.get(middle);
+			if (orderId.compareTo(block.getFirstId()) < 0) {
+				high = middle - 1;
+			} else if (orderId.compareTo(block.getLastId()) > 0) {
+				low = middle + 1;
+			} else {
+				return block;
+			}
+		}
+		return null;
+	}
+
+	private Optional<Order> readBlock(String segment, Block block, String orderId) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(block.getLength());
+		try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, block.getOffset() + buffer.position()) < 0) {
+					throw new IOException("Order archive segment " + segment + " is truncated");
+				}
+			}
+		}
+		// Only the matching line is parsed
+		String idField = "\"id\":\"" + orderId + "\"";
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(new ByteArrayInputStream(buffer.array())), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.contains(idField)) {
+					return Optional.of(objectMapper.readValue(line, Order.class));
+				}
+			}
+		}
+		return Optional.empty();
+	}
+
+	private Path segmentPath(String segment) {
+		return directory.resolve(segment + SEGMENT_SUFFIX);
+	}
+
+	private Path indexPath(String segment) {
+		return directory.resolve(segment + INDEX_SUFFIX);
+	}
+
+	/**
+	 * Writes a segment to a temporary file; {@link #commit} syncs it, moves it into place,
+	 * writes its index and makes it visible to lookups. Closing without commit discards it.
+	 */
+	public class SegmentWriter implements Closeable {
+
+		private final String segment;
+		private final Path temporary;
+		private final FileChannel channel;
+		private final List<Block> blocks = new ArrayList<>();
+		private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+		private String firstId;
+		private String lastId;
+		private int count;
+		private long versions;
+		private long offset;
+		private long orders;
+		private boolean committed;
+
+		private SegmentWriter(String segment) throws IOException {
+			this.segment = segment;
+			this.temporary = directory.resolve(segment + SEGMENT_SUFFIX + ".tmp");
+			this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		public void append(Order order) throws IOException {
+			// Lowercase UUID strings sort like the uuid values do
+			String id = order.getId().toString();
+			if (lastId != null && id.compareTo(lastId) <= 0) {
+				throw new IllegalArgumentException("Orders must be appended in id order: " + id);
+			}
+			if (count == 0) {
+				firstId = id;
+			}
+			pending.write(objectMapper.writeValueAsBytes(order));
+			pending.write('\n');
+			lastId = id;
+			count++;
+			versions += order.getVersion() == null ? 0 : order.getVersion();
+			orders++;
+			if (count == blockSize) {
+				flushBlock();
+			}
+		}
+
+		public long commit() throws IOException {
+			flushBlock();
+			channel.force(true);
+			channel.close();
+			Files.move(temporary, segmentPath(segment), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			Path index = directory.resolve(segment + INDEX_SUFFIX + ".tmp");
+			try (FileChannel indexChannel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.wrap(objectMapper.writeValueAsBytes(blocks));
+				while (buffer.hasRemaining()) {
+					indexChannel.write(buffer);
+				}
+				indexChannel.force(true);
+			}
+			Files.move(index, indexPath(segment), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			syncDirectory();
+			load(segment);
+			committed = true;
+			log.info("Archived {} orders to {} in {} blocks", orders, segmentPath(segment), blocks.size());
+			return orders;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!committed) {
+				channel.close();
+				Files.deleteIfExists(temporary);
+			}
+		}
+
+		// The renames are only durable once the directory entry is
+		private void syncDirectory() throws IOException {
+			try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+				directoryChannel.force(true);
+			} catch (IOException e) {
+				// Not every platform can open a directory, the files themselves are synced
+				log.debug("Could not sync order archive directory {}", directory, e);
+			}
+		}
+
+		private void flushBlock() throws IOException {
+			if (count == 0) {
+				return;
+			}
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(pending.size() / 4);
+			try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+				pending.writeTo(gzip);
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(compressed.toByteArray());
+			int length = buffer.remaining();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			blocks.add(new Block(firstId, lastId, offset, length, count, versions));
+			offset += length;
+			pending.reset();
+			count = 0;
+			versions = 0;
+		}
+	}
+
+	private record Segment(List<Block> blocks, FileTime modified) {
+	}
+
+	public record Contents(long orders, long versions) {
+	}
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Block {
+		private String firstId;
+		private String lastId;
+		private long offset;
+		private int length;
+		private int count;
+		// Sum of the orders' versions, tells whether the rows changed after the block was written
+		private long versions;
+	}
+}
@@ -0,0 +1,276 @@
+package com.ecommerce.order_service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the monthly partitions of orders and order_items (schema-postgres.sql) ahead of
+ * time, and moves months that ended more than order-archive.age-days ago to the
+ * {@link OrderArchive}: the partition is streamed out in id order and the segment committed
+ * to the shared archive dir. Once the segment is older than order-archive.visible-after-ms,
+ * so every instance has rescanned it, and still holds what the partition holds, both
+ * partitions are detached concurrently. The detached tables keep their rows until dropped by
+ * hand; the hot tables stay the size of the retained months and nothing is left to vacuum.
+ * Only runs against PostgreSQL; instances take an advisory lock so one archives at a time.
+ */
+@Component
+@Slf4j
+public class OrderArchiver {
+
+	private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+	private static final String PARTITION_PREFIX = "orders_p";
+	private static final long ADVISORY_LOCK_KEY = 0x6f72646572L;
+
+	private static final String LIST_PARTITIONS = "SELECT c.relname FROM pg_inherits i "
+			+ "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'orders'::regclass ORDER BY c.relname";
+	// No row once detached, true while a concurrent detach was interrupted and needs finalizing
+	private static final String DETACH_PENDING = "SELECT inhdetachpending FROM pg_inherits WHERE inhrelid = to_regclass(?)";
+	private static final String PARTITION_CONTENTS = "SELECT count(*), coalesce(sum(version), 0) FROM %s";
+	// Items arrive ordered by their order's id, so each order is complete when the id changes;
+	// uuid order is the order of the archive's id strings
+	private static final String SELECT_PARTITION = "SELECT o.id, o.user_id, o.status, o.total_amount, "
+			+ "o.shipping_address, o.created_at, o.updated_at, o.version, i.item_id, i.product_id, i.product_name, "
+			+ "i.quantity, i.price FROM %s o LEFT JOIN %s i ON i.order_id = o.id "
+			+ "ORDER BY o.id, i.item_id";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final OrderArchive orderArchive;
+	private final boolean enabled;
+	private final int ageDays;
+	private final int monthsAhead;
+	private final long visibleAfterMs;
+	private Boolean postgres;
+
+	public OrderArchiver(DataSource dataSource, PlatformTransactionManager transactionManager, OrderArchive orderArchive,
+			@Value("${order-archive.enabled:true}") boolean enabled,
+			@Value("${order-archive.age-days:180}") int ageDays,
+			@Value("${order-archive.months-ahead:3}") int monthsAhead,
+			@Value("${order-archive.fetch-size:1000}") int fetchSize,
+			@Value("${order-archive.visible-after-ms:300000}") long visibleAfterMs) {
+		// Own template, the fetch size lets PostgreSQL stream a partition instead of loading it
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(fetchSize);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+		this.transactionTemplate.setReadOnly(true);
+		this.orderArchive = orderArchive;
+		this.enabled = enabled;
+		this.ageDays = ageDays;
+		this.monthsAhead = monthsAhead;
+		this.visibleAfterMs = visibleAfterMs;
+	}
+
+	@Scheduled(initialDelayString = "${order-archive.initial-delay-ms:60000}",
+			fixedDelayString = "${order-archive.interval-ms:3600000}")
+	public void run() {
+		if (!enabled || !isPostgres()) {
+			return;
+		}
+		createPartitions();
+
+		// A session lock on a connection of its own, DETACH ... CONCURRENTLY cannot run in a transaction
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			if (!advisoryLock(connection, "SELECT pg_try_advisory_lock(?)")) {
+				log.info("Another instance is archiving orders, skipping this run");
+				return null;
+			}
+			try {
+				archivePartitions();
+			} finally {
+				advisoryLock(connection, "SELECT pg_advisory_unlock(?)");
+			}
+			return null;
+		});
+	}
+
+	private void archivePartitions() {
+		// A month is archived once all of it is older than the cutoff
+		YearMonth lastArchivable = YearMonth.from(LocalDate.now().minusDays(ageDays)).minusMonths(1);
+		for (String partition : jdbcTemplate.queryForList(LIST_PARTITIONS, String.class)) {
+			if (!partition.startsWith(PARTITION_PREFIX)) {
+				continue;
+			}
+			String suffix = partition.substring(PARTITION_PREFIX.length());
+			if (YearMonth.parse(suffix, PARTITION_SUFFIX).isAfter(lastArchivable)) {
+				continue;
+			}
+			try {
+				archive(suffix);
+			} catch (IOException | RuntimeException e) {
+				log.error("Archiving orders partition {} failed, will retry on the next run", partition, e);
+				return;
+			}
+		}
+	}
+
+	private void createPartitions() {
+		YearMonth current = YearMonth.now();
+		for (int month = 0; month <= monthsAhead; month++) {
+			jdbcTemplate.queryForList("SELECT create_order_partition(?)", current.plusMonths(month).atDay(1));
+		}
+	}
+
+	private void archive(String suffix) throws IOException {
+		String orders = PARTITION_PREFIX + suffix;
+		String items = "order_items_p" + suffix;
+		String segment = "orders-" + suffix;
+
+		Optional<FileTime> committedAt = orderArchive.committedAt(segment);
+		if (committedAt.isEmpty() || !orderArchive.contents(segment).equals(contents(orders))) {
+			long archived = writeSegment(segment, orders, items);
+			log.info("Archived {} orders of partition {}, it stays attached until every instance has the segment",
+					archived, orders);
+			return;
+		}
+		if (committedAt.get().toInstant().isAfter(Instant.now().minusMillis(visibleAfterMs))) {
+			return;
+		}
+
+		detach("order_items", items);
+		detach("orders", orders);
+		// Nothing reaches the detached tables any more, catch updates made while detaching
+		if (!orderArchive.contents(segment).equals(contents(orders))) {
+			log.warn("Partition {} changed while it was detached, rewriting segment {}", orders, segment);
+			writeSegment(segment, orders, items);
+		}
+		log.info("Detached partitions {} and {}, their rows are in archive segment {}; drop them once the archive "
+				+ "is backed up", orders, items, segment);
+	}
+
+	private long writeSegment(String segment, String orders, String items) throws IOException {
+		// One snapshot, so the rows read are the ones the segment's contents are compared with later
+		return transactionTemplate.execute(status -> {
+			try (OrderArchive.SegmentWriter writer = orderArchive.openSegment(segment)) {
+				PartitionReader reader = new PartitionReader(writer);
+				jdbcTemplate.query(String.format(SELECT_PARTITION, orders, items), reader);
+				reader.finish();
+				return writer.commit();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not write order archive segment " + segment, e);
+			}
+		});
+	}
+
+	private OrderArchive.Contents contents(String table) {
+		return jdbcTemplate.queryForObject(String.format(PARTITION_CONTENTS, table),
+				(rs, row) -> new OrderArchive.Contents(rs.getLong(1), rs.getLong(2)));
+	}
+
+	// Concurrently, so orders of the other months can be written meanwhile; an interrupted
+	// detach leaves the partition pending and is finished on the next run
+	private void detach(String parent, String partition) {
+		List<Boolean> pending = jdbcTemplate.queryForList(DETACH_PENDING, Boolean.class, partition);
+		if (pending.isEmpty()) {
+			return;
+		}
+		jdbcTemplate.execute("ALTER TABLE " + parent + " DETACH PARTITION " + partition
+				+ (Boolean.TRUE.equals(pending.get(0)) ? " FINALIZE" : " CONCURRENTLY"));
+	}
+
+	private static boolean advisoryLock(Connection connection, String sql) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setLong(1, ADVISORY_LOCK_KEY);
+			try (ResultSet rs = statement.executeQuery()) {
+				return rs.next() && rs.getBoolean(1);
+			}
+		}
+	}
+
+	private boolean isPostgres() {
+		if (postgres == null) {
+			String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+					connection.getMetaData().getDatabaseProductName());
+			postgres = "PostgreSQL".equals(product);
+			if (!postgres) {
+				log.info("Order partitioning and archiving disabled on {}", product);
+			}
+		}
+		return postgres;
+	}
+
+	private static class PartitionReader implements RowCallbackHandler {
+
+		private final OrderArchive.SegmentWriter writer;
+		private Order current;
+
+		PartitionReader(OrderArchive.SegmentWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void processRow(ResultSet rs) throws SQLException {
+			UUID id = rs.getObject("id", UUID.class);
+			if (current == null || !current.getId().equals(id)) {
+				append();
+				current = new Order();
+				current.setId(id);
+				current.setUserId(rs.getString("user_id"));
+				String status = rs.getString("status");
+				current.setStatus(status == null ? null : OrderEvent.OrderStatus.valueOf(status));
+				current.setTotalAmount(rs.getBigDecimal("total_amount"));
+				current.setShippingAddress(rs.getString("shipping_address"));
+				current.setCreatedAt(toLocalDateTime(rs.getTimestamp("created_at")));
+				current.setUpdatedAt(toLocalDateTime(rs.getTimestamp("updated_at")));
+				current.setVersion(rs.getLong("version"));
+			}
+			if (rs.getObject("item_id") != null) {
+				Order.OrderItem item = new Order.OrderItem();
+				item.setItemId(rs.getLong("item_id"));
+				item.setProductId(rs.getString("product_id"));
+				item.setProductName(rs.getString("product_name"));
+				item.setQuantity((Integer) rs.getObject("quantity"));
+				item.setPrice(rs.getBigDecimal("price"));
+				current.getItems().add(item);
+			}
+		}
+
+		void finish() {
+			append();
+			current = null;
+		}
+
+		private void append() {
+			if (current == null) {
+				return;
+			}
+			try {
+				writer.append(current);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+			return timestamp == null ? null : timestamp.toLocalDateTime();
+		}
+	}
+}
@@ -1,32 +1,58 @@
 package com.ecommerce.order_service;
 
+import java.net.URI;
+import java.security.Principal;
 import java.util.List;
+import java.util.Optional;
 
+import org.apache.kafka.streams.state.HostInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.ecommerce.common.DeadLetterReplayService;
+import com.ecommerce.common.JwtClaimsVerifier;
 
 import lombok.AllArgsConstructor;
 
+// Servlet stack; ReactiveOrderController serves the same API under the reactive profile
 @RestController
 @RequestMapping("/api/orders")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @AllArgsConstructor
 public class OrderController {
 
 	private final OrderService orderService;
 	private final CircuitBreakerService CircuitBreakerService;
+	private final DeadLetterReplayService deadLetterReplayService;
+	private final OrderHistoryStore orderHistoryStore;
+	private final OrderIdempotency orderIdempotency;
 
 	
 	  @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE,MediaType.TEXT_PLAIN_VALUE}, 
             produces = MediaType.APPLICATION_JSON_VALUE) 
 	  public ResponseEntity<Order> createOrder(@RequestBody
-	  OrderService.OrderRequest request) { Order order =
-	  orderService.createOrder(request); return ResponseEntity.ok(order); }
+	  OrderService.OrderRequest request,
+	  @RequestHeader(value = "X-Correlation-Id", required = false) String correlationId,
+	  @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+	  Principal principal) { Order order = idempotencyKey == null
+	  ? orderService.createOrder(request, correlationId)
+	  : orderIdempotency.createOrder(idempotencyKey, principal != null ? principal.getName() : request.getUserId(),
+	          request, correlationId); return ResponseEntity.ok()
+	  .header(OrderHistoryStore.VERSION_HEADER, order.getId() + ":" + order.getVersion()).body(order); }
 	  
 	  @GetMapping(value="/{orderId}",consumes = {MediaType.APPLICATION_JSON_VALUE,MediaType.TEXT_PLAIN_VALUE}, 
 	            produces = MediaType.APPLICATION_JSON_VALUE) 
@@ -46,11 +72,96 @@ public class OrderController {
 	  cancelOrder(@PathVariable String orderId) {
 	  orderService.cancelOrder(orderId); return ResponseEntity.ok().build(); }
 	  
+	  // Served from the order history read model, present X-Order-Version to read your own write
+	  @GetMapping(value = "/history/users/{userId}", produces = MediaType.APPLICATION_JSON_VALUE)
+	  public ResponseEntity<List<OrderEvent>> getOrderHistory(@PathVariable String userId,
+	          @RequestParam(defaultValue = "100") int limit,
+	          @RequestHeader(value = OrderHistoryStore.VERSION_HEADER, required = false) String version,
+	          Authentication caller) {
+	      if (!mayRead(caller, userId)) {
+	          return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+	      }
+	      Optional<ResponseEntity<List<OrderEvent>>> unavailable = checkOrderHistory(userId, version);
+	      if (unavailable.isPresent()) {
+	          return unavailable.get();
+	      }
+	      return orderHistoryStore.history(userId, limit)
+	              .map(ResponseEntity::ok)
+	              .orElseGet(this::orderHistoryUnavailable);
+	  }
+	  
+	  @GetMapping(value = "/history/users/{userId}/orders/{orderId}", produces = MediaType.APPLICATION_JSON_VALUE)
+	  public ResponseEntity<OrderEvent> getOrderFromHistory(@PathVariable String userId, @PathVariable String orderId,
+	          @RequestHeader(value = OrderHistoryStore.VERSION_HEADER, required = false) String version,
+	          Authentication caller) {
+	      if (!mayRead(caller, userId)) {
+	          return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+	      }
+	      Optional<ResponseEntity<OrderEvent>> unavailable = checkOrderHistory(userId, version);
+	      if (unavailable.isPresent()) {
+	          return unavailable.get();
+	      }
+	      return orderHistoryStore.order(userId, orderId)
+	              .map(ResponseEntity::ok)
+	              .orElse(ResponseEntity.notFound().build());
+	  }
+	  
 	  @GetMapping("/test-circuit-breaker/{orderId}")
 	  public String testCircuitBreaker(@PathVariable String orderId) {
 	      return CircuitBreakerService.processOrder(orderId);
 	  }
 	  
+	  @PostMapping("/dlt/{topic}/replay")
+	  public ResponseEntity<String> replayDeadLetters(@PathVariable String topic,
+	          @RequestParam(defaultValue = "100") int maxRecords,
+	          @RequestParam(defaultValue = "10") int ratePerSecond) {
+	      if (!deadLetterReplayService.isReplayable(topic)) {
+	          return ResponseEntity.notFound().build();
+	      }
+	      int replayed = deadLetterReplayService.replay(topic, maxRecords, ratePerSecond);
+	      return ResponseEntity.ok("Replayed " + replayed + " records from " + deadLetterReplayService.deadLetterTopic(topic));
+	  }
+	  
+	  // Users read their own history, admins everyone's
+	  static boolean mayRead(Authentication caller, String userId) {
+	      return caller != null && (userId.equals(caller.getName()) || caller.getAuthorities().stream()
+	              .anyMatch(authority -> JwtClaimsVerifier.ADMIN_ROLE.equals(authority.getAuthority())));
+	  }
+	  
+	  // Redirects to the instance that holds the user, 503 while the store is restoring or behind the version
+	  private <T> Optional<ResponseEntity<T>> checkOrderHistory(String userId, String version) {
+	      Optional<HostInfo> owner = orderHistoryStore.remoteOwner(userId);
+	      if (owner.isPresent()) {
+	          URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+	                  .host(owner.get().host()).port(owner.get().port()).build().toUri();
+	          return Optional.of(ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(location).build());
+	      }
+	      if (!orderHistoryStore.isAvailable()) {
+	          return Optional.of(orderHistoryUnavailable());
+	      }
+	      try {
+	          if (!orderHistoryStore.awaitVersion(userId, version)) {
+	              return Optional.of(orderHistoryUnavailable());
+	          }
+	      } catch (IllegalArgumentException e) {
+	          return Optional.of(ResponseEntity.badRequest().build());
+	      }
+	      return Optional.empty();
+	  }
+	  
+	  private <T> ResponseEntity<T> orderHistoryUnavailable() {
+	      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+	  }
+	  
+	  @ExceptionHandler(IdempotencyKeyException.class)
+	  public ResponseEntity<String> idempotencyKeyRejected(IdempotencyKeyException ex) {
+	      ResponseEntity.BodyBuilder response = ResponseEntity.status(ex.getStatus());
+	      if (ex.getRetryAfterSeconds() > 0) {
+	          response.header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+	      }
+	      return response.body(ex.getMessage());
+	  }
+	  
 	  @GetMapping("/health") 
 	  public ResponseEntity<String> health() { return
 	  ResponseEntity.ok("Order Service is healthy"); }
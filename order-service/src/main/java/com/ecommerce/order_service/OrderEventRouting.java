@@ -0,0 +1,73 @@
+package com.ecommerce.order_service;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Derives user-orders from orders, so an order event is serialized and sent once on the
+ * request path. Events meant for user-orders carry the user id in {@value #USER_ID_HEADER};
+ * the stream re-keys them by it and writes the payload bytes and headers on unchanged.
+ * Events without the header were sent to user-orders directly (by an older version, or with
+ * order-events.derive-user-orders off) and are not copied again.
+ *
+ * <p>Also the one source of the orders topic in this streams application, which cannot read
+ * a topic twice; {@link SalesStream} builds on {@link #orderEvents}.
+ */
+@Configuration
+public class OrderEventRouting {
+
+	public static final String SOURCE_TOPIC = "orders";
+	public static final String USER_ORDERS_TOPIC = "user-orders";
+	public static final String USER_ID_HEADER = "user-id";
+
+	private final boolean deriveUserOrders;
+
+	public OrderEventRouting(@Value("${order-events.derive-user-orders:true}") boolean deriveUserOrders) {
+		this.deriveUserOrders = deriveUserOrders;
+	}
+
+	// Whether publishers send to orders only, with the header, and leave user-orders to the stream
+	public boolean isDeriveUserOrders() {
+		return deriveUserOrders;
+	}
+
+	@Bean
+	public KStream<String, byte[]> orderEvents(StreamsBuilder builder) {
+		KStream<String, byte[]> orders = builder.stream(SOURCE_TOPIC, Consumed.with(Serdes.String(), Serdes.ByteArray()));
+		orders.process(UserOrdersRouter::new)
+				.to(USER_ORDERS_TOPIC, Produced.with(Serdes.String(), Serdes.ByteArray()));
+		return orders;
+	}
+
+	static class UserOrdersRouter implements Processor<String, byte[], String, byte[]> {
+
+		private ProcessorContext<String, byte[]> context;
+
+		@Override
+		public void init(ProcessorContext<String, byte[]> context) {
+			this.context = context;
+		}
+
+		@Override
+		public void process(Record<String, byte[]> record) {
+			Header userId = record.headers().lastHeader(USER_ID_HEADER);
+			if (userId == null || userId.value() == null || record.value() == null) {
+				return;
+			}
+			// Same value, headers and timestamp; only the key changes
+			context.forward(record.withKey(new String(userId.value(), StandardCharsets.UTF_8)));
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package com.ecommerce.order_service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes orders with their items as NDJSON (one order per line) or CSV (one line per item)
+ * straight from a JDBC cursor: rows are fetched order-export.fetch-size at a time inside
+ * a read-only transaction, which is what makes PostgreSQL use a server-side cursor, and
+ * written as they are read, so memory use does not depend on the size of the export.
+ * Rows come in (created_at, id) order and every order carries its cursor; passing the
+ * last one back as {@code after} resumes an interrupted export. Only orders still in the
+ * database are exported, archived months are in order-archive.dir already.
+ */
+@Component
+@Slf4j
+public class OrderExport {
+
+	public enum Format {
+		NDJSON("application/x-ndjson", "ndjson"),
+		CSV("text/csv", "csv");
+
+		private final String contentType;
+		private final String extension;
+
+		Format(String contentType, String extension) {
+			this.contentType = contentType;
+			this.extension = extension;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public String getExtension() {
+			return extension;
+		}
+	}
+
+	/**
+	 * Orders created in [from, to), optionally of one status or user, after the given
+	 * cursor, at most limit of them. Null means no bound.
+	 */
+	public record Query(LocalDateTime from, LocalDateTime to, OrderEvent.OrderStatus status, String userId,
+			String after, Integer limit) {
+	}
+
+	private static final String SELECT = "SELECT o.id, o.user_id, o.status, o.total_amount, o.shipping_address, "
+			+ "o.created_at, o.updated_at, o.version, i.item_id, i.product_id, i.product_name, i.quantity, i.price "
+			+ "FROM orders o LEFT JOIN order_items i ON i.order_id = o.id AND i.order_created_at = o.created_at";
+	private static final String ORDER_BY = " ORDER BY o.created_at, o.id, i.item_id";
+	private static final String CSV_HEADER = "cursor,order_id,user_id,status,total_amount,shipping_address,"
+			+ "created_at,updated_at,version,item_id,product_id,product_name,quantity,price";
+	private static final char CURSOR_SEPARATOR = '_';
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final ReadReplicaRouting readReplicaRouting;
+
+	public OrderExport(DataSource dataSource, PlatformTransactionManager transactionManager,
+			ReadReplicaRouting readReplicaRouting, @Value("${order-export.fetch-size:1000}") int fetchSize) {
+		this.readReplicaRouting = readReplicaRouting;
+		// Own template, the fetch size is what lets the driver stream instead of buffering the result
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(fetchSize);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+	}
+
+	// Checked before the response starts, a bad cursor should be a 400 rather than a cut-off body
+	public static void validate(Query query) {
+		if (query.after() != null) {
+			parseCursor(query.after());
+		}
+		if (query.limit() != null && query.limit() <= 0) {
+			throw new IllegalArgumentException("limit must be positive");
+		}
+	}
+
+	public long write(Query query, Format format, boolean gzip, OutputStream target) {
+		long start = System.currentTimeMillis();
+		List<Object> arguments = new ArrayList<>();
+		String sql = SELECT + where(query, arguments) + ORDER_BY;
+		try {
+			OutputStream stream = gzip ? new GZIPOutputStream(target, 65536) : target;
+			Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 65536);
+			RowWriter rows = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(jsonFactory, writer);
+			// A read replica when there is one, an export does not need the last second of orders
+			Long exported = readReplicaRouting.replicaRead(() -> transactionTemplate.execute(status ->
+					jdbcTemplate.query(sql, new OrderExtractor(rows, query.limit()), arguments.toArray())));
+			rows.finish();
+			writer.flush();
+			if (stream instanceof GZIPOutputStream compressed) {
+				compressed.finish();
+			}
+			log.info("Exported {} orders as {} in {} ms", exported, format, System.currentTimeMillis() - start);
+			return exported;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Order export failed after " + (System.currentTimeMillis() - start) + " ms", e);
+		}
+	}
+
+	private static String where(Query query, List<Object> arguments) {
+		List<String> conditions = new ArrayList<>();
+		if (query.from() != null) {
+			conditions.add("o.created_at >= ?");
+			arguments.add(Timestamp.valueOf(query.from()));
+		}
+		if (query.to() != null) {
+			conditions.add("o.created_at < ?");
+			arguments.add(Timestamp.valueOf(query.to()));
+		}
+		if (query.status() != null) {
+			conditions.add("o.status = ?");
+			arguments.add(query.status().name());
+		}
+		if (query.userId() != null) {
+			conditions.add("o.user_id = ?");
+			arguments.add(query.userId());
+		}
+		if (query.after() != null) {
+			Cursor cursor = parseCursor(query.after());
+			conditions.add("(o.created_at > ? OR (o.created_at = ? AND o.id > ?))");
+			arguments.add(Timestamp.valueOf(cursor.createdAt()));
+			arguments.add(Timestamp.valueOf(cursor.createdAt()));
+			arguments.add(cursor.id());
+		}
+		return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+	}
+
+	private static Cursor parseCursor(String after) {
+		int separator = after.lastIndexOf(CURSOR_SEPARATOR);
+		try {
+			return new Cursor(LocalDateTime.parse(after.substring(0, separator)), UUID.fromString(after.substring(separator + 1)));
+		} catch (DateTimeParseException | IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("after must be a cursor from an earlier export: " + after);
+		}
+	}
+
+	private record Cursor(LocalDateTime createdAt, UUID id) {
+		@Override
+		public String toString() {
+			return createdAt.toString() + CURSOR_SEPARATOR + id;
+		}
+	}
+
+	// Order columns are read once per order, item columns once per row
+	private static class OrderExtractor implements ResultSetExtractor<Long> {
+
+		private final RowWriter rows;
+		private final Integer limit;
+
+		OrderExtractor(RowWriter rows, Integer limit) {
+			this.rows = rows;
+			this.limit = limit;
+		}
+
+		@Override
+		public Long extractData(ResultSet rs) throws SQLException {
+			long orders = 0;
+			UUID current = null;
+			try {
+				while (rs.next()) {
+					UUID id = rs.getObject("id", UUID.class);
+					if (!id.equals(current)) {
+						if (limit != null && orders == limit) {
+							break;
+						}
+						current = id;
+						orders++;
+						LocalDateTime createdAt = toLocalDateTime(rs.getTimestamp("created_at"));
+						rows.startOrder(new Cursor(createdAt, id).toString(), id, rs.getString("user_id"),
+								rs.getString("status"), rs.getBigDecimal("total_amount"), rs.getString("shipping_address"),
+								createdAt, toLocalDateTime(rs.getTimestamp("updated_at")), rs.getLong("version"));
+					}
+					if (rs.getObject("item_id") != null) {
+						rows.item(rs.getLong("item_id"), rs.getString("product_id"), rs.getString("product_name"),
+								(Integer) rs.getObject("quantity"), rs.getBigDecimal("price"));
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return orders;
+		}
+
+		private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+			return timestamp == null ? null : timestamp.toLocalDateTime();
+		}
+	}
+
+	private interface RowWriter {
+
+		void startOrder(String cursor, UUID id, String userId, String status, BigDecimal totalAmount,
+				String shippingAddress, LocalDateTime createdAt, LocalDateTime updatedAt, long version) throws IOException;
+
+		void item(long itemId, String productId, String productName, Integer quantity, BigDecimal price) throws IOException;
+
+		void finish() throws IOException;
+	}
+
+	private static class NdjsonRowWriter implements RowWriter {
+
+		private final JsonGenerator json;
+		private boolean open;
+
+		NdjsonRowWriter(JsonFactory jsonFactory, Writer writer) throws IOException {
+			this.json = jsonFactory.createGenerator(writer);
+			this.json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		}
+
+		@Override
+		public void startOrder(String cursor, UUID id, String userId, String status, BigDecimal totalAmount,
+				String shippingAddress, LocalDateTime createdAt, LocalDateTime updatedAt, long version) throws IOException {
+			endOrder();
+			json.writeStartObject();
+			json.writeStringField("cursor", cursor);
+			json.writeStringField("id", id.toString());
+			json.writeStringField("userId", userId);
+			json.writeStringField("status", status);
+			writeNumber("totalAmount", totalAmount);
+			json.writeStringField("shippingAddress", shippingAddress);
+			json.writeStringField("createdAt", createdAt == null ? null : createdAt.toString());
+			json.writeStringField("updatedAt", updatedAt == null ? null : updatedAt.toString());
+			json.writeNumberField("version", version);
+			json.writeArrayFieldStart("items");
+			open = true;
+		}
+
+		@Override
+		public void item(long itemId, String productId, String productName, Integer quantity, BigDecimal price)
+				throws IOException {
+			json.writeStartObject();
+			json.writeNumberField("itemId", itemId);
+			json.writeStringField("productId", productId);
+			json.writeStringField("productName", productName);
+			if (quantity == null) {
+				json.writeNullField("quantity");
+			} else {
+				json.writeNumberField("quantity", quantity);
+			}
+			writeNumber("price", price);
+			json.writeEndObject();
+		}
+
+		@Override
+		public void finish() throws IOException {
+			endOrder();
+			json.flush();
+		}
+
+		private void endOrder() throws IOException {
+			if (open) {
+				json.writeEndArray();
+				json.writeEndObject();
+				json.writeRaw('\n');
+				open = false;
+			}
+		}
+
+		private void writeNumber(String field, BigDecimal value) throws IOException {
+			if (value == null) {
+				json.writeNullField(field);
+			} else {
+				json.writeNumberField(field, value);
+			}
+		}
+	}
+
+	private static class CsvRowWriter implements RowWriter {
+
+		private final Writer writer;
+		private String order;
+		private boolean hasItems;
+
+		CsvRowWriter(Writer writer) throws IOException {
+			this.writer = writer;
+			writer.write(CSV_HEADER);
+			writer.write("\r\n");
+		}
+
+		@Override
+		public void startOrder(String cursor, UUID id, String userId, String status, BigDecimal totalAmount,
+				String shippingAddress, LocalDateTime createdAt, LocalDateTime updatedAt, long version) throws IOException {
+			endOrder();
+			// Repeated on every item line of the order
+			order = String.join(",", cursor, id.toString(), escape(userId), escape(status), toString(totalAmount),
+					escape(shippingAddress), toString(createdAt), toString(updatedAt), String.valueOf(version));
+			hasItems = false;
+		}
+
+		@Override
+		public void item(long itemId, String productId, String productName, Integer quantity, BigDecimal price)
+				throws IOException {
+			hasItems = true;
+			writer.write(order);
+			writer.write(',');
+			writer.write(String.join(",", String.valueOf(itemId), escape(productId), escape(productName),
+					toString(quantity), toString(price)));
+			writer.write("\r\n");
+		}
+
+		@Override
+		public void finish() throws IOException {
+			endOrder();
+		}
+
+		// An order without items still gets its line
+		private void endOrder() throws IOException {
+			if (order != null && !hasItems) {
+				writer.write(order);
+				writer.write(",,,,,\r\n");
+			}
+			order = null;
+		}
+
+		private static String escape(String value) {
+			if (value == null) {
+				return "";
+			}
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+				return value;
+			}
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+
+		private static String toString(Object value) {
+			if (value instanceof BigDecimal decimal) {
+				return decimal.toPlainString();
+			}
+			return value == null ? "" : value.toString();
+		}
+	}
+}
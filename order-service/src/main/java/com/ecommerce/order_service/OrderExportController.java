@@ -0,0 +1,59 @@
+package com.ecommerce.order_service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+// Admin only (SecurityConfig), streamed by OrderExport; the reactive profile has ReactiveOrderExportController
+@RestController
+@RequestMapping("/api/orders/export")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequiredArgsConstructor
+public class OrderExportController {
+
+	private final OrderExport orderExport;
+
+	@GetMapping
+	public void export(@RequestParam(defaultValue = "ndjson") String format,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+			@RequestParam(required = false) OrderEvent.OrderStatus status,
+			@RequestParam(required = false) String userId,
+			@RequestParam(required = false) String after,
+			@RequestParam(required = false) Integer limit,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+			HttpServletResponse response) throws IOException {
+		OrderExport.Format exportFormat = OrderExport.Format.valueOf(format.toUpperCase());
+		OrderExport.Query query = new OrderExport.Query(from, to, status, userId, after, limit);
+		OrderExport.validate(query);
+
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		response.setContentType(exportFormat.getContentType());
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders." + exportFormat.getExtension() + "\"");
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (gzip) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		// Written on this request thread; a failure midway cuts the body off after the last complete order
+		orderExport.write(query, exportFormat, gzip, response.getOutputStream());
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<String> invalidExport(IllegalArgumentException ex) {
+		return ResponseEntity.badRequest().body(ex.getMessage());
+	}
+}
@@ -0,0 +1,164 @@
+package com.ecommerce.order_service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Queries the order history built by {@link OrderHistoryStream}. A user's orders live on
+ * the instance that owns the user's user-orders partition, {@link #remoteOwner} names it
+ * when that is not this one. Read-your-writes: writes return the order version as
+ * {@value #VERSION_HEADER} (orderId:version), a read presenting it waits until the store
+ * has caught up to that version.
+ */
+@Component
+@Slf4j
+public class OrderHistoryStore {
+
+	public static final String VERSION_HEADER = "X-Order-Version";
+
+	private final StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+	private final HostInfo self;
+	private final long readYourWritesTimeoutMs;
+	private final Timer queryTimer;
+	private final Counter staleCounter;
+	private volatile ReadOnlyKeyValueStore<String, OrderEvent> store;
+
+	public OrderHistoryStore(StreamsBuilderFactoryBean streamsBuilderFactoryBean, MeterRegistry meterRegistry,
+			@Value("${spring.kafka.streams.properties.application.server:}") String applicationServer,
+			@Value("${order-history.read-your-writes-timeout-ms:1000}") long readYourWritesTimeoutMs) {
+		this.streamsBuilderFactoryBean = streamsBuilderFactoryBean;
+		this.self = applicationServer.isBlank() ? null : HostInfo.buildFromEndpoint(applicationServer);
+		this.readYourWritesTimeoutMs = readYourWritesTimeoutMs;
+		this.queryTimer = Timer.builder("order.history.query")
+				.description("Order history store query latency")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.staleCounter = Counter.builder("order.history.read-your-writes.timeout")
+				.description("Reads that gave up waiting for the store to reach the presented version")
+				.register(meterRegistry);
+	}
+
+	// Empty when this instance owns the user, or when there is only one instance
+	public Optional<HostInfo> remoteOwner(String userId) {
+		KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+		if (self == null || streams == null) {
+			return Optional.empty();
+		}
+		KeyQueryMetadata metadata = streams.queryMetadataForKey(OrderHistoryStream.STORE_NAME, userId,
+				Serdes.String().serializer());
+		if (metadata == null || metadata.equals(KeyQueryMetadata.NOT_AVAILABLE) || self.equals(metadata.activeHost())) {
+			return Optional.empty();
+		}
+		return Optional.of(metadata.activeHost());
+	}
+
+	// Empty while the store is restoring or rebalancing
+	public Optional<List<OrderEvent>> history(String userId, int limit) {
+		return queryTimer.record(() -> {
+			ReadOnlyKeyValueStore<String, OrderEvent> current = store();
+			if (current == null) {
+				return Optional.empty();
+			}
+			List<OrderEvent> orders = new ArrayList<>();
+			try (KeyValueIterator<String, OrderEvent> iterator = current.prefixScan(OrderHistoryStream.prefix(userId),
+					new StringSerializer())) {
+				while (iterator.hasNext()) {
+					KeyValue<String, OrderEvent> entry = iterator.next();
+					orders.add(entry.value);
+				}
+			} catch (InvalidStateStoreException e) {
+				store = null;
+				return Optional.empty();
+			}
+			orders.sort(Comparator.comparing(OrderEvent::getTimestamp, Comparator.nullsLast(Comparator.reverseOrder())));
+			return Optional.of(orders.size() > limit ? orders.subList(0, limit) : orders);
+		});
+	}
+
+	public boolean isAvailable() {
+		return store() != null;
+	}
+
+	public Optional<OrderEvent> order(String userId, String orderId) {
+		ReadOnlyKeyValueStore<String, OrderEvent> current = store();
+		if (current == null) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.ofNullable(current.get(OrderHistoryStream.key(userId, orderId)));
+		} catch (InvalidStateStoreException e) {
+			store = null;
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Waits until the store holds the order in the token at that version or later. True
+	 * straight away without a token; false when the wait times out.
+	 */
+	public boolean awaitVersion(String userId, String versionToken) {
+		if (versionToken == null || versionToken.isBlank()) {
+			return true;
+		}
+		int separator = versionToken.lastIndexOf(':');
+		if (separator < 0) {
+			throw new IllegalArgumentException(VERSION_HEADER + " must be orderId:version");
+		}
+		String orderId = versionToken.substring(0, separator);
+		long version = Long.parseLong(versionToken.substring(separator + 1));
+
+		long deadline = System.currentTimeMillis() + readYourWritesTimeoutMs;
+		while (true) {
+			Optional<OrderEvent> order = order(userId, orderId);
+			if (order.isPresent() && order.get().getVersion() != null && order.get().getVersion() >= version) {
+				return true;
+			}
+			if (System.currentTimeMillis() >= deadline) {
+				staleCounter.increment();
+				log.debug("Order history for {} did not reach {} within {} ms", userId, versionToken,
+						readYourWritesTimeoutMs);
+				return false;
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+
+	private ReadOnlyKeyValueStore<String, OrderEvent> store() {
+		if (store == null) {
+			KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+			if (streams == null || streams.state() != KafkaStreams.State.RUNNING) {
+				return null;
+			}
+			store = streams.store(StoreQueryParameters.fromNameAndType(OrderHistoryStream.STORE_NAME,
+					QueryableStoreTypes.<String, OrderEvent>keyValueStore()));
+		}
+		return store;
+	}
+}
@@ -0,0 +1,82 @@
+package com.ecommerce.order_service;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.serializer.JsonSerde;
+
+/**
+ * Read side of the orders table: the latest event of every order, projected from
+ * user-orders into a local RocksDB store keyed by userId and orderId, so a user's history
+ * is one prefix scan. user-orders is keyed by userId, each instance holds the users of the
+ * partitions it is assigned (see {@link OrderHistoryStore} for routing). Events only
+ * replace a stored one with a higher or equal version, so replays and rebuilds are
+ * idempotent.
+ */
+@Configuration
+public class OrderHistoryStream {
+
+	public static final String TOPIC = "user-orders";
+	public static final String STORE_NAME = "order-history-store";
+	// Cannot appear in a userId, so one user's prefix never matches another's
+	private static final char SEPARATOR = '\u0000';
+
+	@Bean
+	public KStream<String, OrderEvent> orderHistory(StreamsBuilder builder) {
+		JsonSerde<OrderEvent> serde = new JsonSerde<>(OrderEvent.class).ignoreTypeHeaders();
+		builder.addStateStore(Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(STORE_NAME),
+				Serdes.String(), serde));
+		KStream<String, OrderEvent> stream = builder.stream(TOPIC, Consumed.with(Serdes.String(), serde));
+		stream.process(OrderHistoryProcessor::new, STORE_NAME);
+		return stream;
+	}
+
+	public static String key(String userId, String orderId) {
+		return userId + SEPARATOR + orderId;
+	}
+
+	public static String prefix(String userId) {
+		return userId + SEPARATOR;
+	}
+
+	static boolean isNewer(OrderEvent event, OrderEvent current) {
+		if (event.getVersion() != null || current.getVersion() != null) {
+			return event.getVersion() != null
+					&& (current.getVersion() == null || event.getVersion() >= current.getVersion());
+		}
+		// Events from before versioning, the later one wins
+		return current.getTimestamp() == null
+				|| (event.getTimestamp() != null && !event.getTimestamp().isBefore(current.getTimestamp()));
+	}
+
+	static class OrderHistoryProcessor implements Processor<String, OrderEvent, Void, Void> {
+
+		private KeyValueStore<String, OrderEvent> store;
+
+		@Override
+		public void init(ProcessorContext<Void, Void> context) {
+			store = context.getStateStore(STORE_NAME);
+		}
+
+		@Override
+		public void process(Record<String, OrderEvent> record) {
+			OrderEvent event = record.value();
+			if (record.key() == null || event == null || event.getOrderId() == null) {
+				return;
+			}
+			String key = key(record.key(), event.getOrderId());
+			OrderEvent current = store.get(key);
+			if (current == null || isNewer(event, current)) {
+				store.put(key, event);
+			}
+		}
+	}
+}
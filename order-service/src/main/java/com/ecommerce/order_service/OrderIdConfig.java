@@ -0,0 +1,25 @@
+package com.ecommerce.order_service;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Configuration
+@Slf4j
+public class OrderIdConfig {
+
+	@Bean
+	public OrderIdGenerator orderIdGenerator(@Value("${order-id.generator:time-ordered}") String generator) {
+		log.info("Order ids generated {}", generator);
+		return switch (generator) {
+			case "time-ordered" -> new UuidV7Generator();
+			// UUIDv4 as before, scatters inserts over the index
+			case "random" -> UUID::randomUUID;
+			default -> throw new IllegalStateException("Unknown order-id.generator: " + generator);
+		};
+	}
+}
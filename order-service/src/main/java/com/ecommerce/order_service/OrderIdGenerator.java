@@ -0,0 +1,26 @@
+package com.ecommerce.order_service;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Source of new order ids, chosen with order-id.generator (see OrderIdConfig). Ids are
+ * stored as uuid and used as strings in the API, the Kafka keys and the events.
+ */
+@FunctionalInterface
+public interface OrderIdGenerator {
+
+	UUID nextId();
+
+	// Ids that are not UUIDs match no order
+	static Optional<UUID> parse(String orderId) {
+		if (orderId == null) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(UUID.fromString(orderId));
+		} catch (IllegalArgumentException e) {
+			return Optional.empty();
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package com.ecommerce.order_service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Idempotency-Key handling for order creation. Within an instance, concurrent requests with
+ * the same key share one creation and completed responses are replayed from memory. Across
+ * instances the order_idempotency_keys row is the claim: inserted before the order is
+ * created, completed with the response in the same transaction as the order, and replayed
+ * from there until it expires. A claim left incomplete by a crashed instance is taken over
+ * once its lease runs out; each claim carries a token, so a slow owner whose lease was taken
+ * over can neither complete nor release it, and its order rolls back.
+ */
+@Component
+@Slf4j
+public class OrderIdempotency {
+
+	private static final int MAX_KEY_LENGTH = 200;
+
+	private static final String CLAIM = "INSERT INTO order_idempotency_keys "
+			+ "(id, claim_token, request_hash, completed, locked_until, expires_at, created_at) "
+			+ "VALUES (?, ?, ?, false, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+	// Only succeeds for a claim that expired or whose lease ran out, leases are not renewed
+	private static final String TAKE_OVER = "UPDATE order_idempotency_keys SET claim_token = ?, request_hash = ?, "
+			+ "completed = false, order_id = NULL, response = NULL, locked_until = ?, expires_at = ?, created_at = ? "
+			+ "WHERE id = ? AND ((completed AND expires_at < ?) OR (NOT completed AND locked_until < ?))";
+	// Matches nothing once the claim was taken over
+	private static final String COMPLETE = "UPDATE order_idempotency_keys SET completed = true, order_id = ?, "
+			+ "response = ?, expires_at = ? WHERE id = ? AND claim_token = ? AND NOT completed";
+	private static final String RELEASE = "DELETE FROM order_idempotency_keys WHERE id = ? AND claim_token = ? AND NOT completed";
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+	private final Map<String, Pending> inFlight = new ConcurrentHashMap<>();
+	private final Map<String, Completed> completed = new ConcurrentHashMap<>();
+	private final OrderService orderService;
+	private final IdempotencyKeyRepository repository;
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final long ttlMs;
+	private final long leaseMs;
+	private final long waitMs;
+	private final int maxCached;
+	private final Counter created;
+	private final Counter replayed;
+	private final Counter coalesced;
+
+	public OrderIdempotency(OrderService orderService, IdempotencyKeyRepository repository, JdbcTemplate jdbcTemplate,
+			TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+			@Value("${order-idempotency.ttl-ms:86400000}") long ttlMs,
+			@Value("${order-idempotency.lease-ms:30000}") long leaseMs,
+			@Value("${order-idempotency.wait-ms:10000}") long waitMs,
+			@Value("${order-idempotency.cache-size:10000}") int maxCached) {
+		this.orderService = orderService;
+		this.repository = repository;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.ttlMs = ttlMs;
+		this.leaseMs = leaseMs;
+		this.waitMs = waitMs;
+		this.maxCached = maxCached;
+		this.created = counter(meterRegistry, "created");
+		this.replayed = counter(meterRegistry, "replayed");
+		this.coalesced = counter(meterRegistry, "coalesced");
+	}
+
+	public Order createOrder(String key, String userId, OrderService.OrderRequest request, String correlationId) {
+		if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+			throw new IdempotencyKeyException(HttpStatus.BAD_REQUEST,
+					"Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters", 0);
+		}
+		String id = userId + ":" + key;
+		String hash = hash(request);
+
+		Completed done = completed.get(id);
+		if (done != null && done.expiresAt - System.nanoTime() > 0) {
+			checkSameRequest(done.hash, hash);
+			replayed.increment();
+			return done.order;
+		}
+
+		Pending mine = new Pending(hash);
+		Pending running = inFlight.putIfAbsent(id, mine);
+		if (running != null) {
+			checkSameRequest(running.hash, hash);
+			coalesced.increment();
+			return await(running);
+		}
+		try {
+			Order order = claimAndCreate(id, hash, request, correlationId);
+			remember(id, new Completed(hash, order, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+			mine.result.complete(order);
+			return order;
+		} catch (RuntimeException e) {
+			mine.result.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(id, mine);
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${order-idempotency.cleanup-interval-ms:600000}")
+	public void removeExpired() {
+		long now = System.nanoTime();
+		completed.values().removeIf(entry -> entry.expiresAt - now <= 0);
+		int deleted = repository.deleteExpired(LocalDateTime.now());
+		if (deleted > 0) {
+			log.info("Deleted {} expired idempotency keys", deleted);
+		}
+	}
+
+	private Order claimAndCreate(String id, String hash, OrderService.OrderRequest request, String correlationId) {
+		long deadline = System.currentTimeMillis() + waitMs;
+		while (true) {
+			LocalDateTime now = LocalDateTime.now();
+			Timestamp lockedUntil = Timestamp.valueOf(now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs)));
+			Timestamp expiresAt = Timestamp.valueOf(now.plusNanos(TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+			String token = UUID.randomUUID().toString();
+			if (jdbcTemplate.update(CLAIM, id, token, hash, lockedUntil, expiresAt, Timestamp.valueOf(now)) == 1) {
+				return create(id, token, request, correlationId);
+			}
+
+			Optional<IdempotencyKey> existing = repository.findById(id);
+			if (existing.isEmpty()) {
+				continue;
+			}
+			IdempotencyKey claim = existing.get();
+			boolean expired = claim.isCompleted() ? claim.getExpiresAt().isBefore(now) : claim.getLockedUntil().isBefore(now);
+			if (expired) {
+				if (jdbcTemplate.update(TAKE_OVER, token, hash, lockedUntil, expiresAt, Timestamp.valueOf(now), id,
+						Timestamp.valueOf(now), Timestamp.valueOf(now)) == 1) {
+					return create(id, token, request, correlationId);
+				}
+				continue;
+			}
+
+			checkSameRequest(claim.getRequestHash(), hash);
+			if (claim.isCompleted()) {
+				replayed.increment();
+				return readResponse(claim.getResponse());
+			}
+			// Another instance is creating this order right now
+			if (System.currentTimeMillis() >= deadline) {
+				throw new IdempotencyKeyException(HttpStatus.CONFLICT, "Order for this Idempotency-Key is still being created", 1);
+			}
+			sleep(50);
+		}
+	}
+
+	private Order create(String id, String token, OrderService.OrderRequest request, String correlationId) {
+		try {
+			// The order and the completed claim commit together, the order event is sent after the commit
+			Order order = transactionTemplate.execute(status -> {
+				Order created = orderService.createOrder(request, correlationId);
+				int completedRows = jdbcTemplate.update(COMPLETE, created.getId().toString(), writeResponse(created),
+						Timestamp.valueOf(LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(ttlMs))), id, token);
+				if (completedRows != 1) {
+					// Our lease ran out and another request took the key over, it creates the order
+					throw new IdempotencyKeyException(HttpStatus.CONFLICT,
+							"Order for this Idempotency-Key is being created by another request", 1);
+				}
+				return created;
+			});
+			created.increment();
+			return order;
+		} catch (RuntimeException e) {
+			// Let the client's retry try again instead of waiting out the lease
+			jdbcTemplate.update(RELEASE, id, token);
+			throw e;
+		}
+	}
+
+	private Order await(Pending running) {
+		try {
+			return running.result.get(waitMs, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			throw new IdempotencyKeyException(HttpStatus.CONFLICT, "Order for this Idempotency-Key is still being created", 1);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for order creation", e);
+		}
+	}
+
+	private void checkSameRequest(String expected, String actual) {
+		if (!expected.equals(actual)) {
+			throw new IdempotencyKeyException(HttpStatus.UNPROCESSABLE_ENTITY,
+					"Idempotency-Key was already used for a different order", 0);
+		}
+	}
+
+	private void remember(String id, Completed entry) {
+		if (completed.size() >= maxCached) {
+			long now = System.nanoTime();
+			completed.values().removeIf(cached -> cached.expiresAt - now <= 0);
+			// Still full: drop a few arbitrary entries, the table still has them
+			Iterator<String> keys = completed.keySet().iterator();
+			for (int i = 0; completed.size() >= maxCached && keys.hasNext() && i < 16; i++) {
+				keys.next();
+				keys.remove();
+			}
+		}
+		completed.put(id, entry);
+	}
+
+	private String hash(OrderService.OrderRequest request) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+			return HexFormat.of().formatHex(digest);
+		} catch (JsonProcessingException | NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Could not hash order request", e);
+		}
+	}
+
+	private String writeResponse(Order order) {
+		try {
+			return objectMapper.writeValueAsString(order);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Could not serialize order " + order.getId(), e);
+		}
+	}
+
+	private Order readResponse(String response) {
+		try {
+			return objectMapper.readValue(response, Order.class);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Could not read stored order response", e);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for order creation", e);
+		}
+	}
+
+	private static Counter counter(MeterRegistry meterRegistry, String result) {
+		return Counter.builder("order.idempotency.requests")
+				.description("Order creations carrying an Idempotency-Key, by outcome")
+				.tag("result", result)
+				.register(meterRegistry);
+	}
+
+	private static final class Pending {
+		private final String hash;
+		private final CompletableFuture<Order> result = new CompletableFuture<>();
+
+		private Pending(String hash) {
+			this.hash = hash;
+		}
+	}
+
+	private static final class Completed {
+		private final String hash;
+		private final Order order;
+		private final long expiresAt;
+
+		private Completed(String hash, Order order, long expiresAt) {
+			this.hash = hash;
+			this.order = order;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -1,24 +1,35 @@
 package com.ecommerce.order_service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.annotation.DltHandler;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.ecommerce.common.ProducerProfiles;
 import com.ecommerce.order_service.Order.OrderItem;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
-import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,20 +39,45 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class OrderService {
 	
+	// Carried from the X-Correlation-Id request header onto every event of the order
+	public static final String CORRELATION_ID_HEADER = "correlation-id";
+	
 	private final OrderRepository orderRepository;
-	private final KafkaTemplate<String, Object> kafkaTemplate;
+	private final ProducerProfiles producerProfiles;
+	private final OrderArchive orderArchive;
+	private final OrderIdGenerator orderIdGenerator;
+	private final OrderEventRouting orderEventRouting;
+	private final ReadReplicaRouting readReplicaRouting;
 	private final ObjectMapper objectMapper = new ObjectMapper()
             .registerModule(new JavaTimeModule());
 	
 	@Transactional
 	@Qualifier("transactionManager")
-	public Order createOrder(OrderRequest orderRequest) {
+	public Order createOrder(OrderRequest orderRequest, String correlationId) {
+		
+		Order order = toOrder(orderIdGenerator.nextId(), orderRequest);
+		
+		orderRepository.saveAndFlush(order);
+		readReplicaRouting.wrote(order.getUserId());
+		log.info("Order created: {}", order.getId());
+		
+		try {
+		publishOrderEvent(order, OrderEvent.OrderStatus.CREATED, correlationId != null ? correlationId : order.getId().toString());
+		}catch(Exception e) {
+			log.error("Failed to publish Kafka event for order: {}", order.getId(), e);
+		}
+		return order;
+	}
+	
+	// Shared with ReactiveOrderService
+	static Order toOrder(UUID id, OrderRequest orderRequest) {
 		
 		BigDecimal total = orderRequest.getItems().stream()
 				.map( item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
 				.reduce(BigDecimal.ZERO, BigDecimal::add);
 		
 		Order order = new Order();
+		order.setId(id);
 		order.setUserId(orderRequest.getUserId());
 		order.setTotalAmount(total);
 		order.setShippingAddress(orderRequest.getShippingAddress());
@@ -55,30 +91,69 @@ public class OrderService {
 			orderItem.setProductName(item.getProductName());
 			orderItem.setProductId(item.getProductId());
 			orderItem.setPrice(item.getPrice());
+			orderItem.setOrder(order);
+			orderItem.setOrderCreatedAt(order.getCreatedAt());
 			
 			order.getItems().add(orderItem);
 		});
-		
-		orderRepository.save(order);
-		log.info("Order created: {}", order.getId());
-		
-		try {
-		publishOrderEvent(order, OrderEvent.OrderStatus.CREATED);
-		}catch(Exception e) {
-			log.error("Failed to publish Kafka event for order: {}", order.getId(), e);
-		}
 		return order;
 	}
 	
-	private void publishOrderEvent(Order order, OrderEvent.OrderStatus status){
+	private void publishOrderEvent(Order order, OrderEvent.OrderStatus status, String correlationId){
 		
+		OrderEvent event = toEvent(order, status);
+        
+        // Inside a transaction the event waits for the commit, so a rolled back order is never announced
+        afterCommit(() -> {
+        	try {
+        		// Send to orders topic; user-orders is derived from it by OrderEventRouting unless turned off
+        		send("orders", event.getOrderId(), event, correlationId, orderEventRouting.isDeriveUserOrders() ? order.getUserId() : null)
+        				.whenComplete((result, ex) -> logSend("orders", order, result, ex));
+        		
+        		if (!orderEventRouting.isDeriveUserOrders()) {
+        			send("user-orders", order.getUserId(), event, correlationId, null)
+        					.whenComplete((result, ex) -> logSend("user-orders", order, result, ex));
+        		}
+        	} catch (RuntimeException e) {
+        		log.error("Failed to publish Kafka event for order: {}", order.getId(), e);
+        	}
+        });
+        
+	}
+	
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+	
+	private static void logSend(String topic, Order order, SendResult<String, Object> result, Throwable ex) {
+		if (ex == null) {
+            log.info("Order event published to '{}' topic: {} offset: {}", 
+                    topic, order.getId(), result.getRecordMetadata().offset());
+        } else {
+            log.error("Failed to send order event to '{}' topic: {}", 
+                    topic, order.getId(), ex.getMessage());
+        }
+	}
+	
+	// Shared with ReactiveOrderPublisher
+	static OrderEvent toEvent(Order order, OrderEvent.OrderStatus status) {
 		OrderEvent event = new OrderEvent();
-        event.setOrderId(order.getId());
+        event.setOrderId(order.getId().toString());
         event.setUserId(order.getUserId());
         event.setStatus(status);
         event.setTotalAmount(order.getTotalAmount());
         event.setShippingAddress(order.getShippingAddress());
         event.setTimestamp(LocalDateTime.now());
+        event.setVersion(order.getVersion());
         
         List<com.ecommerce.order_service.OrderEvent.OrderItem> orderItems = order.getItems().stream()
         		.map( item ->  
@@ -86,45 +161,32 @@ public class OrderService {
         		).toList();
         
         event.setItems(orderItems);
-        
-        // Send to orders topic
-        CompletableFuture<SendResult<String, Object>> future1 = kafkaTemplate.send("orders", order.getId(), event);
-        
-        future1.whenComplete((result, ex) -> {
-            if (ex == null) {
-                log.info("Order event published to 'orders' topic: {} offset: {}", 
-                        order.getId(), result.getRecordMetadata().offset());
-            } else {
-                log.error("Failed to send order event to 'orders' topic: {}", 
-                        order.getId(), ex.getMessage());
-            }
-        });
-        
-        // Send to user-specific topic
-        CompletableFuture<SendResult<String, Object>> future2 = kafkaTemplate.send("user-orders", order.getUserId(), event);
-        
-        future2.whenComplete((result, ex) -> {
-            if (ex == null) {
-                log.info("Order event published to 'user-orders' topic: {} offset: {}", 
-                        order.getId(), result.getRecordMetadata().offset());
-            } else {
-                log.error("Failed to send order event to 'user-orders' topic: {}", 
-                        order.getId(), ex.getMessage());
-            }
-        });
-        
+        return event;
 	}
 	
-	@Transactional
+	private CompletableFuture<SendResult<String, Object>> send(String topic, String key, Object event, String correlationId,
+			String routeToUser) {
+		ProducerRecord<String, Object> record = new ProducerRecord<>(topic, key, event);
+		record.headers().add(CORRELATION_ID_HEADER, correlationId.getBytes(StandardCharsets.UTF_8));
+		if (routeToUser != null) {
+			record.headers().add(OrderEventRouting.USER_ID_HEADER, routeToUser.getBytes(StandardCharsets.UTF_8));
+		}
+		return producerProfiles.templateFor(topic).send(record);
+	}
+	
+	@Transactional(readOnly = true)
 	@Qualifier("transactionManager")
 	public Optional<Order> getOrder(String orderId) {
-        return orderRepository.findById(orderId);
+        // Orders of archived months are only in the archive
+        return OrderIdGenerator.parse(orderId).flatMap(id ->
+        		readReplicaRouting.replicaRead(() -> orderRepository.findById(id)).or(() -> orderArchive.find(id.toString())));
     }
 	
-	@Transactional
+	@Transactional(readOnly = true)
 	@Qualifier("transactionManager")
 	public List<Order> gerUserOrders(String userId){
-		return orderRepository.findAll().stream().filter( order -> order.getUserId().equals(userId)).toList();
+		return readReplicaRouting.replicaRead(() -> orderRepository.findAll()).stream()
+				.filter( order -> order.getUserId().equals(userId)).toList();
 	}
 	
 
@@ -132,17 +194,31 @@ public class OrderService {
 	@Qualifier("transactionManager")
 	public void cancelOrder(String orderId){
 		
-		orderRepository.findById(orderId).ifPresent( order -> {
+		OrderIdGenerator.parse(orderId).flatMap(orderRepository::findById).ifPresent( order -> {
 			order.setStatus(OrderEvent.OrderStatus.CANCELLED);
             order.setUpdatedAt(LocalDateTime.now());
-            orderRepository.save(order);
+            // Flushed so the event carries the version the update was written with
+            orderRepository.saveAndFlush(order);
+            readReplicaRouting.wrote(order.getUserId());
             
-            publishOrderEvent(order, OrderEvent.OrderStatus.CANCELLED);
+            publishOrderEvent(order, OrderEvent.OrderStatus.CANCELLED, orderId);
             log.info("Order cancelled: {}", orderId);
 		});
 	}
 	
 	 // Listen to inventory events
+    @RetryableTopic(
+            attempts = "${kafka.retry.attempts:4}",
+            backoff = @Backoff(delayExpression = "${kafka.retry.delay-ms:1000}",
+                    multiplierExpression = "${kafka.retry.multiplier:2.0}",
+                    maxDelayExpression = "${kafka.retry.max-delay-ms:30000}"),
+            numPartitions = "${kafka.retry.partitions:3}",
+            retryTopicSuffix = "-${spring.application.name}-retry",
+            dltTopicSuffix = "-${spring.application.name}-dlt",
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            exclude = JsonProcessingException.class,
+            traversingCauses = "true",
+            kafkaTemplate = "retryKafkaTemplate")
     @org.springframework.kafka.annotation.KafkaListener(
             topics = "inventory-events",
             groupId = "order-service-group",
@@ -150,33 +226,34 @@ public class OrderService {
                     "value.deserializer=org.apache.kafka.common.serialization.StringDeserializer"
                 }
     )
-    public void handleInventoryEvent( String message) {
-    	
-    	InventoryEvent event;
-		try {
-			event = objectMapper.readValue(message, InventoryEvent.class);
-			
-			log.info("Received inventory event for order: {}", event.getOrderId());
-	        
-	        orderRepository.findById(event.getOrderId()).ifPresent(order -> {
-	            if (event.getUpdateType() == InventoryEvent.InventoryUpdateType.RESERVED) {
-	                order.setStatus(OrderEvent.OrderStatus.INVENTORY_RESERVED);
-	                order.setUpdatedAt(LocalDateTime.now());
-	                orderRepository.save(order);
-	                
-	                publishOrderEvent(order, OrderEvent.OrderStatus.INVENTORY_RESERVED);
-	                log.info("Order {} inventory reserved", order.getId());
-	            }
-	        });
-		} catch (JsonMappingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (JsonProcessingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+    public void handleInventoryEvent( String message,
+    		@org.springframework.messaging.handler.annotation.Header(name = CORRELATION_ID_HEADER, required = false) byte[] correlationId) throws JsonProcessingException {
     	
+    	// Unparseable payloads are not retried, they go straight to the DLT
+    	InventoryEvent event = objectMapper.readValue(message, InventoryEvent.class);
+		
+		log.info("Received inventory event for order: {}", event.getOrderId());
         
+        OrderIdGenerator.parse(event.getOrderId()).flatMap(orderRepository::findById).ifPresent(order -> {
+            if (event.getUpdateType() == InventoryEvent.InventoryUpdateType.RESERVED) {
+                order.setStatus(OrderEvent.OrderStatus.INVENTORY_RESERVED);
+                order.setUpdatedAt(LocalDateTime.now());
+                Order saved = orderRepository.saveAndFlush(order);
+                readReplicaRouting.wrote(saved.getUserId());
+                
+                publishOrderEvent(saved, OrderEvent.OrderStatus.INVENTORY_RESERVED, correlationId != null
+                		? new String(correlationId, StandardCharsets.UTF_8) : event.getOrderId());
+                log.info("Order {} inventory reserved", saved.getId());
+            }
+        });
+    }
+    
+    @DltHandler
+    public void handleDeadLetter(ConsumerRecord<String, String> record) {
+        Header error = record.headers().lastHeader(KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+        log.error("Inventory event dead-lettered: Key={}, DLT Offset={}, Error={}", 
+                record.key(), record.offset(), 
+                error == null ? null : new String(error.value(), StandardCharsets.UTF_8));
     }
 	
 	 @lombok.Data
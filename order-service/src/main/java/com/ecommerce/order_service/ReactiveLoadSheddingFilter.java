@@ -0,0 +1,65 @@
+package com.ecommerce.order_service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * {@link LoadSheddingFilter}'s bulkheads for the reactive profile. A permit is held until
+ * the exchange completes, errors or is cancelled, so the limits follow the time a request
+ * spends in flight rather than on an event loop thread.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@EnableConfigurationProperties(LoadSheddingProperties.class)
+public class ReactiveLoadSheddingFilter implements WebFilter {
+
+	private final LoadSheddingProperties properties;
+	private final LoadSheddingBulkhead read;
+	private final LoadSheddingBulkhead write;
+
+	public ReactiveLoadSheddingFilter(LoadSheddingProperties properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.read = new LoadSheddingBulkhead("read", properties.getRead(), properties, meterRegistry);
+		this.write = new LoadSheddingBulkhead("write", properties.getWrite(), properties, meterRegistry);
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		if (!properties.isEnabled()
+				|| !LoadSheddingBulkhead.isShed(exchange.getRequest().getPath().pathWithinApplication().value())) {
+			return chain.filter(exchange);
+		}
+		return Mono.defer(() -> {
+			LoadSheddingBulkhead bulkhead = LoadSheddingBulkhead.isRead(exchange.getRequest().getMethod().name())
+					? read : write;
+			ServerHttpResponse response = exchange.getResponse();
+			if (!bulkhead.limit.tryAcquire()) {
+				bulkhead.rejected.increment();
+				response.setStatusCode(HttpStatusCode.valueOf(bulkhead.config.getRejectStatus()));
+				response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getRetryAfterSeconds()));
+				return response.setComplete();
+			}
+
+			long start = System.nanoTime();
+			return chain.filter(exchange).doFinally(signal -> {
+				HttpStatusCode status = response.getStatusCode();
+				bulkhead.limit.release(System.nanoTime() - start, signal != SignalType.ON_COMPLETE
+						|| (status != null && LoadSheddingBulkhead.isOverloaded(status.value())));
+			});
+		});
+	}
+}
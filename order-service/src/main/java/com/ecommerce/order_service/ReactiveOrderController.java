@@ -0,0 +1,175 @@
+package com.ecommerce.order_service;
+
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+import org.apache.kafka.streams.state.HostInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.ecommerce.common.DeadLetterReplayService;
+
+import lombok.AllArgsConstructor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * {@link OrderController}'s API on WebFlux, active under the reactive profile. Orders are
+ * created, read and cancelled without blocking; the endpoints backed by blocking code
+ * (Idempotency-Key claims, read-your-writes waits on the history read model, dead letter
+ * replay) run on the bounded elastic scheduler so they never hold an event loop thread.
+ */
+@RestController
+@RequestMapping("/api/orders")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@AllArgsConstructor
+public class ReactiveOrderController {
+
+	private final ReactiveOrderService orderService;
+	private final CircuitBreakerService circuitBreakerService;
+	private final DeadLetterReplayService deadLetterReplayService;
+	private final OrderHistoryStore orderHistoryStore;
+	private final OrderIdempotency orderIdempotency;
+
+	@PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE},
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public Mono<ResponseEntity<Order>> createOrder(@RequestBody OrderService.OrderRequest request,
+			@RequestHeader(value = "X-Correlation-Id", required = false) String correlationId,
+			@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+			Principal principal) {
+		Mono<Order> order = idempotencyKey == null
+				? orderService.createOrder(request, correlationId)
+				: blocking(() -> orderIdempotency.createOrder(idempotencyKey,
+						principal != null ? principal.getName() : request.getUserId(), request, correlationId));
+		return order.map(created -> ResponseEntity.ok()
+				.header(OrderHistoryStore.VERSION_HEADER, created.getId() + ":" + created.getVersion())
+				.body(created));
+	}
+
+	@GetMapping(value = "/{orderId}", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE},
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public Mono<ResponseEntity<Order>> getOrder(@PathVariable String orderId) {
+		return orderService.getOrder(orderId)
+				.map(ResponseEntity::ok)
+				.defaultIfEmpty(ResponseEntity.notFound().build());
+	}
+
+	@GetMapping(value = "/user/{userId}", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE},
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public Mono<ResponseEntity<List<Order>>> getUserOrders(@PathVariable String userId) {
+		return orderService.getUserOrders(userId).collectList().map(ResponseEntity::ok);
+	}
+
+	@PostMapping(value = "/{orderId}/cancel", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE},
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public Mono<ResponseEntity<Void>> cancelOrder(@PathVariable String orderId) {
+		return orderService.cancelOrder(orderId).then(Mono.just(ResponseEntity.ok().build()));
+	}
+
+	@GetMapping(value = "/history/users/{userId}", produces = MediaType.APPLICATION_JSON_VALUE)
+	public Mono<ResponseEntity<List<OrderEvent>>> getOrderHistory(@PathVariable String userId,
+			@RequestParam(defaultValue = "100") int limit,
+			@RequestHeader(value = OrderHistoryStore.VERSION_HEADER, required = false) String version,
+			ServerHttpRequest request, Authentication caller) {
+		if (!OrderController.mayRead(caller, userId)) {
+			return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+		}
+		return blocking(() -> this.<List<OrderEvent>>checkOrderHistory(request, userId, version)
+				.orElseGet(() -> orderHistoryStore.history(userId, limit)
+						.map(ResponseEntity::ok)
+						.orElseGet(this::orderHistoryUnavailable)));
+	}
+
+	@GetMapping(value = "/history/users/{userId}/orders/{orderId}", produces = MediaType.APPLICATION_JSON_VALUE)
+	public Mono<ResponseEntity<OrderEvent>> getOrderFromHistory(@PathVariable String userId,
+			@PathVariable String orderId,
+			@RequestHeader(value = OrderHistoryStore.VERSION_HEADER, required = false) String version,
+			ServerHttpRequest request, Authentication caller) {
+		if (!OrderController.mayRead(caller, userId)) {
+			return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+		}
+		return blocking(() -> this.<OrderEvent>checkOrderHistory(request, userId, version)
+				.orElseGet(() -> orderHistoryStore.order(userId, orderId)
+						.map(ResponseEntity::ok)
+						.orElse(ResponseEntity.notFound().build())));
+	}
+
+	@GetMapping("/test-circuit-breaker/{orderId}")
+	public Mono<String> testCircuitBreaker(@PathVariable String orderId) {
+		return blocking(() -> circuitBreakerService.processOrder(orderId));
+	}
+
+	@PostMapping("/dlt/{topic}/replay")
+	public Mono<ResponseEntity<String>> replayDeadLetters(@PathVariable String topic,
+			@RequestParam(defaultValue = "100") int maxRecords,
+			@RequestParam(defaultValue = "10") int ratePerSecond) {
+		if (!deadLetterReplayService.isReplayable(topic)) {
+			return Mono.just(ResponseEntity.notFound().build());
+		}
+		return blocking(() -> {
+			int replayed = deadLetterReplayService.replay(topic, maxRecords, ratePerSecond);
+			return ResponseEntity.ok("Replayed " + replayed + " records from " + deadLetterReplayService.deadLetterTopic(topic));
+		});
+	}
+
+	@GetMapping("/health")
+	public Mono<ResponseEntity<String>> health() {
+		return Mono.just(ResponseEntity.ok("Order Service is healthy"));
+	}
+
+	@ExceptionHandler(IdempotencyKeyException.class)
+	public ResponseEntity<String> idempotencyKeyRejected(IdempotencyKeyException ex) {
+		ResponseEntity.BodyBuilder response = ResponseEntity.status(ex.getStatus());
+		if (ex.getRetryAfterSeconds() > 0) {
+			response.header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+		}
+		return response.body(ex.getMessage());
+	}
+
+	// Redirects to the instance that holds the user, 503 while the store is restoring or behind the version
+	private <T> Optional<ResponseEntity<T>> checkOrderHistory(ServerHttpRequest request, String userId, String version) {
+		Optional<HostInfo> owner = orderHistoryStore.remoteOwner(userId);
+		if (owner.isPresent()) {
+			URI location = UriComponentsBuilder.fromUri(request.getURI())
+					.host(owner.get().host()).port(owner.get().port()).build().toUri();
+			return Optional.of(ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(location).build());
+		}
+		if (!orderHistoryStore.isAvailable()) {
+			return Optional.of(orderHistoryUnavailable());
+		}
+		try {
+			if (!orderHistoryStore.awaitVersion(userId, version)) {
+				return Optional.of(orderHistoryUnavailable());
+			}
+		} catch (IllegalArgumentException e) {
+			return Optional.of(ResponseEntity.badRequest().build());
+		}
+		return Optional.empty();
+	}
+
+	private <T> ResponseEntity<T> orderHistoryUnavailable() {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+	}
+
+	private static <T> Mono<T> blocking(Callable<T> call) {
+		return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+	}
+}
@@ -0,0 +1,68 @@
+package com.ecommerce.order_service;
+
+import java.time.LocalDateTime;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * {@link OrderExportController} for the reactive profile. The JDBC cursor is read on the
+ * bounded elastic scheduler and the writer waits for demand, so a slow client holds back
+ * the cursor instead of filling the heap.
+ */
+@RestController
+@RequestMapping("/api/orders/export")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveOrderExportController {
+
+	private final OrderExport orderExport;
+
+	@GetMapping
+	public ResponseEntity<Flux<DataBuffer>> export(@RequestParam(defaultValue = "ndjson") String format,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+			@RequestParam(required = false) OrderEvent.OrderStatus status,
+			@RequestParam(required = false) String userId,
+			@RequestParam(required = false) String after,
+			@RequestParam(required = false) Integer limit,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+		OrderExport.Format exportFormat = OrderExport.Format.valueOf(format.toUpperCase());
+		OrderExport.Query query = new OrderExport.Query(from, to, status, userId, after, limit);
+		OrderExport.validate(query);
+
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		Flux<DataBuffer> body = Flux.from(DataBufferUtils.outputStreamPublisher(
+				output -> orderExport.write(query, exportFormat, gzip, output),
+				DefaultDataBufferFactory.sharedInstance, Schedulers.boundedElastic()::schedule));
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders." + exportFormat.getExtension() + "\"")
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (gzip) {
+			response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+		return response.body(body);
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<String> invalidExport(IllegalArgumentException ex) {
+		return ResponseEntity.badRequest().body(ex.getMessage());
+	}
+}
@@ -0,0 +1,82 @@
+package com.ecommerce.order_service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.stereotype.Component;
+
+import com.ecommerce.common.ProducerProfileProperties;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+
+/**
+ * Order events for the reactive stack, sent with reactor-kafka so neither a request nor an
+ * event loop thread waits for metadata, buffer space or acks. Senders are built from the
+ * same producer settings as the KafkaTemplates, one per producer profile in use (see
+ * {@link com.ecommerce.common.ProducerProfiles}).
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveOrderPublisher {
+
+	private final Map<String, KafkaSender<String, Object>> senders = new ConcurrentHashMap<>();
+	private final ProducerProfileProperties properties;
+	private final ProducerFactory<Object, Object> producerFactory;
+	private final OrderEventRouting orderEventRouting;
+
+	public ReactiveOrderPublisher(ProducerProfileProperties properties, ProducerFactory<Object, Object> producerFactory,
+			OrderEventRouting orderEventRouting) {
+		this.properties = properties;
+		this.producerFactory = producerFactory;
+		this.orderEventRouting = orderEventRouting;
+	}
+
+	// Like OrderService, the order does not wait for its events; failures are logged
+	public void publishOrderEvent(Order order, OrderEvent.OrderStatus status, String correlationId) {
+		OrderEvent event = OrderService.toEvent(order, status);
+		if (orderEventRouting.isDeriveUserOrders()) {
+			send("orders", event.getOrderId(), event, correlationId, order.getUserId());
+		} else {
+			send("orders", event.getOrderId(), event, correlationId, null);
+			send("user-orders", order.getUserId(), event, correlationId, null);
+		}
+	}
+
+	private void send(String topic, String key, Object event, String correlationId, String routeToUser) {
+		ProducerRecord<String, Object> record = new ProducerRecord<>(topic, key, event);
+		record.headers().add(OrderService.CORRELATION_ID_HEADER, correlationId.getBytes(StandardCharsets.UTF_8));
+		if (routeToUser != null) {
+			record.headers().add(OrderEventRouting.USER_ID_HEADER, routeToUser.getBytes(StandardCharsets.UTF_8));
+		}
+		senderFor(topic).send(Flux.just(SenderRecord.create(record, key)))
+				.subscribe(result -> log.info("Order event published to '{}' topic: {} offset: {}",
+								topic, key, result.recordMetadata().offset()),
+						ex -> log.error("Failed to send order event to '{}' topic: {}", topic, key, ex));
+	}
+
+	private KafkaSender<String, Object> senderFor(String topic) {
+		return senders.computeIfAbsent(properties.profileFor(topic), profile -> {
+			// The factory's configs already carry the service profile, see ProducerProfileConfig
+			Map<String, Object> configs = new HashMap<>(producerFactory.getConfigurationProperties());
+			configs.putAll(properties.configs(profile));
+			log.info("Created reactive Kafka sender for profile {}", profile);
+			return KafkaSender.create(SenderOptions.<String, Object>create(configs));
+		});
+	}
+
+	@PreDestroy
+	public void close() {
+		senders.values().forEach(KafkaSender::close);
+	}
+}
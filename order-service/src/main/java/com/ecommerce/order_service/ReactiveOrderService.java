@@ -0,0 +1,195 @@
+package com.ecommerce.order_service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * {@link OrderService}'s request side on R2DBC, for the reactive profile: same tables and
+ * same events, but no thread is held while waiting on PostgreSQL or Kafka. Inventory
+ * events are still handled by OrderService on its listener threads.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveOrderService {
+
+	private static final String INSERT_ORDER = "INSERT INTO orders (id, user_id, status, total_amount, "
+			+ "shipping_address, created_at, updated_at, version) VALUES (:id, :userId, :status, :totalAmount, "
+			+ ":shippingAddress, :createdAt, :updatedAt, :version)";
+	private static final String INSERT_ITEM = "INSERT INTO order_items (order_id, order_created_at, product_id, "
+			+ "product_name, quantity, price) VALUES (:orderId, :orderCreatedAt, :productId, :productName, :quantity, :price)";
+	// Version is bumped the way the JPA entity's @Version would
+	private static final String CANCEL = "UPDATE orders SET status = :status, updated_at = :updatedAt, "
+			+ "version = version + 1 WHERE id = :id";
+	// Rows of one order are adjacent, its items follow each other
+	private static final String SELECT_ORDERS = "SELECT o.id, o.user_id, o.status, o.total_amount, o.shipping_address, "
+			+ "o.created_at, o.updated_at, o.version, i.item_id, i.product_id, i.product_name, i.quantity, i.price "
+			+ "FROM orders o LEFT JOIN order_items i ON i.order_id = o.id AND i.order_created_at = o.created_at "
+			+ "WHERE %s ORDER BY o.created_at, o.id, i.item_id";
+
+	private final DatabaseClient databaseClient;
+	private final TransactionalOperator transactionalOperator;
+	private final ReactiveOrderPublisher orderPublisher;
+	private final OrderArchive orderArchive;
+	private final OrderIdGenerator orderIdGenerator;
+
+	public ReactiveOrderService(DatabaseClient databaseClient, ReactiveTransactionManager transactionManager,
+			ReactiveOrderPublisher orderPublisher, OrderArchive orderArchive, OrderIdGenerator orderIdGenerator) {
+		this.databaseClient = databaseClient;
+		this.transactionalOperator = TransactionalOperator.create(transactionManager);
+		this.orderPublisher = orderPublisher;
+		this.orderArchive = orderArchive;
+		this.orderIdGenerator = orderIdGenerator;
+	}
+
+	public Mono<Order> createOrder(OrderService.OrderRequest orderRequest, String correlationId) {
+		return Mono.defer(() -> {
+			Order order = OrderService.toOrder(orderIdGenerator.nextId(), orderRequest);
+			order.setVersion(0L);
+			return insertOrder(order)
+					.thenMany(Flux.fromIterable(order.getItems()).concatMap(this::insertItem))
+					.then(Mono.just(order))
+					.as(transactionalOperator::transactional);
+		}).doOnNext(order -> {
+			log.info("Order created: {}", order.getId());
+			try {
+				orderPublisher.publishOrderEvent(order, OrderEvent.OrderStatus.CREATED,
+						correlationId != null ? correlationId : order.getId().toString());
+			} catch (Exception e) {
+				log.error("Failed to publish Kafka event for order: {}", order.getId(), e);
+			}
+		});
+	}
+
+	public Mono<Order> getOrder(String orderId) {
+		Optional<UUID> id = OrderIdGenerator.parse(orderId);
+		if (id.isEmpty()) {
+			return Mono.empty();
+		}
+		// Orders of archived months are only in the archive, which is read from files
+		return selectOrders("o.id = :value", id.get()).next()
+				.switchIfEmpty(Mono.fromCallable(() -> orderArchive.find(id.get().toString()))
+						.subscribeOn(Schedulers.boundedElastic())
+						.flatMap(Mono::justOrEmpty));
+	}
+
+	public Flux<Order> getUserOrders(String userId) {
+		return selectOrders("o.user_id = :value", userId);
+	}
+
+	public Mono<Void> cancelOrder(String orderId) {
+		Optional<UUID> id = OrderIdGenerator.parse(orderId);
+		if (id.isEmpty()) {
+			return Mono.empty();
+		}
+		return databaseClient.sql(CANCEL)
+				.bind("status", OrderEvent.OrderStatus.CANCELLED.name())
+				.bind("updatedAt", LocalDateTime.now())
+				.bind("id", id.get())
+				.fetch().rowsUpdated()
+				.filter(updated -> updated > 0)
+				.flatMap(updated -> selectOrders("o.id = :value", id.get()).next())
+				.as(transactionalOperator::transactional)
+				// Published once committed, with the version the update was written with
+				.doOnNext(order -> {
+					orderPublisher.publishOrderEvent(order, OrderEvent.OrderStatus.CANCELLED, orderId);
+					log.info("Order cancelled: {}", orderId);
+				})
+				.then();
+	}
+
+	private Mono<Void> insertOrder(Order order) {
+		DatabaseClient.GenericExecuteSpec insert = databaseClient.sql(INSERT_ORDER)
+				.bind("id", order.getId())
+				.bind("userId", order.getUserId())
+				.bind("status", order.getStatus().name())
+				.bind("totalAmount", order.getTotalAmount())
+				.bind("createdAt", order.getCreatedAt())
+				.bind("updatedAt", order.getUpdatedAt())
+				.bind("version", order.getVersion());
+		return bind(insert, "shippingAddress", order.getShippingAddress(), String.class).then();
+	}
+
+	private Mono<Long> insertItem(Order.OrderItem item) {
+		DatabaseClient.GenericExecuteSpec insert = databaseClient.sql(INSERT_ITEM)
+				.filter(statement -> statement.returnGeneratedValues("item_id"))
+				.bind("orderId", item.getOrder().getId())
+				.bind("orderCreatedAt", item.getOrderCreatedAt());
+		insert = bind(insert, "productId", item.getProductId(), String.class);
+		insert = bind(insert, "productName", item.getProductName(), String.class);
+		insert = bind(insert, "quantity", item.getQuantity(), Integer.class);
+		return bind(insert, "price", item.getPrice(), BigDecimal.class)
+				.map(row -> row.get("item_id", Long.class))
+				.one()
+				.doOnNext(item::setItemId);
+	}
+
+	private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, String name,
+			Object value, Class<?> type) {
+		return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+	}
+
+	private Flux<Order> selectOrders(String condition, Object value) {
+		return databaseClient.sql(String.format(SELECT_ORDERS, condition))
+				.bind("value", value)
+				.map((row, metadata) -> readRow(row))
+				.all()
+				.bufferUntilChanged(row -> row.order().getId())
+				.map(ReactiveOrderService::toOrder);
+	}
+
+	private static OrderRow readRow(Row row) {
+		Order order = new Order();
+		order.setId(row.get("id", UUID.class));
+		order.setUserId(row.get("user_id", String.class));
+		String status = row.get("status", String.class);
+		order.setStatus(status == null ? null : OrderEvent.OrderStatus.valueOf(status));
+		order.setTotalAmount(row.get("total_amount", BigDecimal.class));
+		order.setShippingAddress(row.get("shipping_address", String.class));
+		order.setCreatedAt(row.get("created_at", LocalDateTime.class));
+		order.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+		order.setVersion(row.get("version", Long.class));
+
+		Long itemId = row.get("item_id", Long.class);
+		if (itemId == null) {
+			return new OrderRow(order, null);
+		}
+		Order.OrderItem item = new Order.OrderItem();
+		item.setItemId(itemId);
+		item.setProductId(row.get("product_id", String.class));
+		item.setProductName(row.get("product_name", String.class));
+		item.setQuantity(row.get("quantity", Integer.class));
+		item.setPrice(row.get("price", BigDecimal.class));
+		item.setOrderCreatedAt(order.getCreatedAt());
+		return new OrderRow(order, item);
+	}
+
+	private static Order toOrder(List<OrderRow> rows) {
+		Order order = rows.get(0).order();
+		for (OrderRow row : rows) {
+			if (row.item() != null) {
+				row.item().setOrder(order);
+				order.getItems().add(row.item());
+			}
+		}
+		return order;
+	}
+
+	private record OrderRow(Order order, Order.OrderItem item) {
+	}
+}
@@ -0,0 +1,56 @@
+package com.ecommerce.order_service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+// SecurityConfig's rules for the reactive profile
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveSecurityConfig {
+
+    private final JwtTokenVerifier jwtTokenVerifier;
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+            .csrf(csrf -> csrf.disable())
+            .httpBasic(basic -> basic.disable())
+            .formLogin(form -> form.disable())
+            .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.FORBIDDEN)))
+            .authorizeExchange(exchanges -> exchanges
+                .pathMatchers("/actuator/**").permitAll()
+                .pathMatchers("/api/orders/health").permitAll()
+                .pathMatchers("/api/orders/export").hasRole("ADMIN")
+                .pathMatchers("/api/orders/dlt/**").hasRole("ADMIN")
+                .pathMatchers("/api/orders/sales/**").hasRole("ADMIN")
+                .anyExchange().authenticated())
+            .addFilterAt(this::authenticate, SecurityWebFiltersOrder.AUTHENTICATION)
+            .build();
+    }
+
+    private Mono<Void> authenticate(ServerWebExchange exchange, WebFilterChain chain) {
+        return jwtTokenVerifier.authenticate(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+            .map(authentication -> chain.filter(exchange)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+            .orElseGet(() -> chain.filter(exchange));
+    }
+}
@@ -0,0 +1,79 @@
+package com.ecommerce.order_service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Replaces Boot's DataSource with one routing between the primary (spring.datasource)
+ * and the order-db.replicas nodes, as {@link ReadReplicaRouting} decides. Off unless
+ * order-db.replicas.enabled; JDBC only, the reactive profile's R2DBC reads stay on the
+ * primary.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "order-db.replicas", name = "enabled", havingValue = "true")
+public class ReadReplicaDataSourceConfig {
+
+	// Same pool as Boot would build, spring.datasource.hikari applies
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+		return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(HikariDataSource primaryDataSource, DataSourceProperties dataSourceProperties,
+			ReadReplicaProperties properties, ReadReplicaRouting routing) {
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(ReadReplicaRouting.PRIMARY, primaryDataSource);
+		List<ReadReplicaProperties.Node> nodes = properties.getNodes();
+		for (int i = 0; i < nodes.size(); i++) {
+			ReadReplicaProperties.Node node = nodes.get(i);
+			String name = node.getName() != null ? node.getName() : "replica-" + (i + 1);
+			HikariDataSource replica = DataSourceBuilder.create()
+					.type(HikariDataSource.class)
+					.driverClassName(dataSourceProperties.determineDriverClassName())
+					.url(node.getUrl())
+					.username(node.getUsername() != null ? node.getUsername() : dataSourceProperties.determineUsername())
+					.password(node.getPassword() != null ? node.getPassword() : dataSourceProperties.determinePassword())
+					.build();
+			replica.setPoolName(name);
+			replica.setReadOnly(true);
+			replica.setMaximumPoolSize(properties.getPoolSize());
+			replica.setMinimumIdle(1);
+			// A replica that stops answering costs this much once, then the lag check takes it out
+			replica.setConnectionTimeout(properties.getConnectionTimeoutMs());
+			// Start without the replica, a node that is down fails the lag check instead of startup
+			replica.setInitializationFailTimeout(-1);
+			targets.put(name, replica);
+			routing.register(name, replica);
+		}
+
+		AbstractRoutingDataSource routingDataSource = new AbstractRoutingDataSource() {
+			@Override
+			protected Object determineCurrentLookupKey() {
+				return routing.lookupKey();
+			}
+		};
+		routingDataSource.setTargetDataSources(targets);
+		routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+		routingDataSource.afterPropertiesSet();
+		// The transaction manager asks for a connection before the read-only flag is set, this defers it to the first statement
+		return new LazyConnectionDataSourceProxy(routingDataSource);
+	}
+}
@@ -0,0 +1,35 @@
+package com.ecommerce.order_service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * PostgreSQL streaming replicas for order reads, see {@link ReadReplicaRouting}. Nodes
+ * without credentials use spring.datasource's.
+ */
+@Data
+@ConfigurationProperties(prefix = "order-db.replicas")
+public class ReadReplicaProperties {
+
+	private boolean enabled = false;
+	// Replicas further behind the primary than this are skipped until they catch up
+	private long maxLagMs = 1000;
+	private long checkIntervalMs = 2000;
+	// Reads of a user who just wrote go to the primary for this long
+	private long pinAfterWriteMs = 5000;
+	private int poolSize = 10;
+	private long connectionTimeoutMs = 1000;
+	private List<Node> nodes = new ArrayList<>();
+
+	@Data
+	public static class Node {
+		private String name;
+		private String url;
+		private String username;
+		private String password;
+	}
+}
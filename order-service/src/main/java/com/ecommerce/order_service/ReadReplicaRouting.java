@@ -0,0 +1,209 @@
+package com.ecommerce.order_service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decides which database a connection comes from when read replicas are configured (see
+ * {@link ReadReplicaDataSourceConfig}). A read-only transaction started inside
+ * {@link #replicaRead} goes to a replica whose replay lag was within max-lag-ms at the last
+ * check, round robin; everything else, including the read-only transactions Spring Data
+ * opens on its own for writers, goes to the primary. So does a read by a user who wrote in
+ * the last pin-after-write-ms, on this instance, and every read while no replica is healthy.
+ */
+@Component
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+@Slf4j
+public class ReadReplicaRouting {
+
+	public static final String PRIMARY = "primary";
+
+	// Replay lag in ms; null when a standby cannot tell yet. A server not in recovery reports 0
+	private static final String LAG = "SELECT pg_is_in_recovery(), CASE WHEN NOT pg_is_in_recovery() THEN 0 "
+			+ "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+			+ "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END";
+
+	private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+	private final ReadReplicaProperties properties;
+	private final MeterRegistry meterRegistry;
+	private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+	private final Map<String, Long> pinnedUntil = new ConcurrentHashMap<>();
+	private final AtomicInteger next = new AtomicInteger();
+	private final Counter replicaReads;
+	private final Counter pinnedReads;
+	private final Counter fallbackReads;
+
+	public ReadReplicaRouting(ReadReplicaProperties properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.meterRegistry = meterRegistry;
+		this.replicaReads = readCounter("replica");
+		this.pinnedReads = readCounter("pinned");
+		this.fallbackReads = readCounter("fallback");
+	}
+
+	private static class Replica {
+		private final String name;
+		private final DataSource dataSource;
+		private volatile double lagMs = -1;
+		private volatile boolean healthy;
+		private boolean warnedNotStandby;
+
+		Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+	}
+
+	void register(String name, DataSource dataSource) {
+		Replica replica = new Replica(name, dataSource);
+		replicas.add(replica);
+		Gauge.builder("order.db.replica.lag", replica, r -> r.lagMs)
+				.description("Replay lag of the read replica at the last check, -1 when unknown")
+				.baseUnit("milliseconds")
+				.tag("replica", name)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Runs a read that may be served by a replica, and so may not see the last
+	 * max-lag-ms of writes. Only takes effect for a read-only transaction whose first
+	 * statement runs inside.
+	 */
+	public <T> T replicaRead(Supplier<T> read) {
+		Boolean previous = REPLICA_READ.get();
+		REPLICA_READ.set(Boolean.TRUE);
+		try {
+			return read.get();
+		} finally {
+			if (previous == null) {
+				REPLICA_READ.remove();
+			} else {
+				REPLICA_READ.set(previous);
+			}
+		}
+	}
+
+	// Sends the reads of this user, and of the caller if authenticated, to the primary for a while
+	public void wrote(String userId) {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		long until = System.currentTimeMillis() + properties.getPinAfterWriteMs();
+		if (userId != null) {
+			pinnedUntil.put(userId, until);
+		}
+		String caller = currentUser();
+		if (caller != null) {
+			pinnedUntil.put(caller, until);
+		}
+	}
+
+	Object lookupKey() {
+		if (REPLICA_READ.get() == null || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return PRIMARY;
+		}
+		String user = currentUser();
+		Long until = user == null ? null : pinnedUntil.get(user);
+		if (until != null && until > System.currentTimeMillis()) {
+			pinnedReads.increment();
+			return PRIMARY;
+		}
+		List<Replica> healthy = new ArrayList<>();
+		for (Replica replica : replicas) {
+			if (replica.healthy) {
+				healthy.add(replica);
+			}
+		}
+		if (healthy.isEmpty()) {
+			fallbackReads.increment();
+			return PRIMARY;
+		}
+		replicaReads.increment();
+		return healthy.get(Math.floorMod(next.getAndIncrement(), healthy.size())).name;
+	}
+
+	@Scheduled(fixedDelayString = "${order-db.replicas.check-interval-ms:2000}")
+	public void checkLag() {
+		long now = System.currentTimeMillis();
+		pinnedUntil.values().removeIf(until -> until <= now);
+		for (Replica replica : replicas) {
+			boolean wasHealthy = replica.healthy;
+			try (Connection connection = replica.dataSource.getConnection();
+					Statement statement = connection.createStatement();
+					ResultSet rs = statement.executeQuery(LAG)) {
+				rs.next();
+				boolean standby = rs.getBoolean(1);
+				double lag = rs.getDouble(2);
+				boolean known = !rs.wasNull();
+				if (!standby && !replica.warnedNotStandby) {
+					// Fine for trying routing out against a second local instance, not for production
+					log.warn("Read replica {} is not a standby, its data is not kept in sync with the primary", replica.name);
+					replica.warnedNotStandby = true;
+				}
+				replica.lagMs = known ? lag : -1;
+				replica.healthy = known && lag <= properties.getMaxLagMs();
+			} catch (SQLException e) {
+				replica.lagMs = -1;
+				replica.healthy = false;
+				if (wasHealthy) {
+					log.warn("Read replica {} unreachable, reads go elsewhere: {}", replica.name, e.getMessage());
+				}
+			}
+			if (wasHealthy && !replica.healthy) {
+				log.warn("Read replica {} taken out of rotation, lag {} ms", replica.name, replica.lagMs);
+			} else if (!wasHealthy && replica.healthy) {
+				log.info("Read replica {} in rotation, lag {} ms", replica.name, replica.lagMs);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		for (Replica replica : replicas) {
+			if (replica.dataSource instanceof AutoCloseable closeable) {
+				try {
+					closeable.close();
+				} catch (Exception e) {
+					log.debug("Failed to close read replica {}", replica.name, e);
+				}
+			}
+		}
+	}
+
+	private Counter readCounter(String target) {
+		return Counter.builder("order.db.replica.reads")
+				.description("Replica-eligible reads by where they went: replica, pinned (primary after a write) or fallback (primary, no healthy replica)")
+				.tag("target", target)
+				.register(meterRegistry);
+	}
+
+	private static String currentUser() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		return authentication != null && authentication.isAuthenticated() ? authentication.getName() : null;
+	}
+}
@@ -0,0 +1,85 @@
+package com.ecommerce.order_service;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.kafka.streams.state.HostInfo;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Sales figures from {@link SalesStore}, per minute, hour or day, for all orders or for one
+ * product. Reads never touch PostgreSQL and do not block, so the controller serves both the
+ * servlet and the reactive stack.
+ */
+@RestController
+@RequestMapping("/api/orders/sales")
+@RequiredArgsConstructor
+public class SalesController {
+
+	// Windows returned when no range is given
+	private static final int DEFAULT_WINDOWS = 60;
+
+	private final SalesStore salesStore;
+
+	@GetMapping(value = "/{granularity}", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<List<SalesStore.SalesWindow>> totals(@PathVariable String granularity,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+			UriComponentsBuilder uriBuilder) {
+		return figures(granularity, SalesStream.TOTAL, from, to,
+				uriBuilder.path("/api/orders/sales/{granularity}"), granularity);
+	}
+
+	@GetMapping(value = "/{granularity}/products/{productId}", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<List<SalesStore.SalesWindow>> product(@PathVariable String granularity,
+			@PathVariable String productId,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+			UriComponentsBuilder uriBuilder) {
+		return figures(granularity, productId, from, to,
+				uriBuilder.path("/api/orders/sales/{granularity}/products/{productId}"), granularity, productId);
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<String> invalidQuery(IllegalArgumentException ex) {
+		return ResponseEntity.badRequest().body(ex.getMessage());
+	}
+
+	// Redirects to the instance that holds the key, 503 while the stores are restoring
+	private ResponseEntity<List<SalesStore.SalesWindow>> figures(String granularityName, String key, Instant from,
+			Instant to, UriComponentsBuilder location, Object... pathVariables) {
+		SalesStream.Granularity granularity = SalesStream.Granularity.valueOf(granularityName.toUpperCase());
+		Instant end = to != null ? to : Instant.now();
+		Instant start = from != null ? from : end.minus(granularity.getSize().multipliedBy(DEFAULT_WINDOWS));
+		if (start.isAfter(end)) {
+			throw new IllegalArgumentException("from must not be after to");
+		}
+
+		Optional<HostInfo> owner = salesStore.remoteOwner(granularity, key);
+		if (owner.isPresent()) {
+			URI uri = location.host(owner.get().host()).port(owner.get().port())
+					.queryParam("from", start).queryParam("to", end)
+					.buildAndExpand(pathVariables).encode().toUri();
+			return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(uri).build();
+		}
+		return salesStore.figures(granularity, key, start, end)
+				.map(ResponseEntity::ok)
+				.orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+						.header(HttpHeaders.RETRY_AFTER, "1").build());
+	}
+}
@@ -0,0 +1,27 @@
+package com.ecommerce.order_service;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Running sums of one sales window, for all orders or for one product (see SalesStream)
+@Data
+@NoArgsConstructor
+public class SalesFigures {
+
+	private long orders;
+	private BigDecimal revenue = BigDecimal.ZERO;
+	private long units;
+	private long cancelled;
+	private BigDecimal cancelledRevenue = BigDecimal.ZERO;
+
+	public SalesFigures add(SalesFigures other) {
+		orders += other.orders;
+		revenue = revenue.add(other.revenue);
+		units += other.units;
+		cancelled += other.cancelled;
+		cancelledRevenue = cancelledRevenue.add(other.cancelledRevenue);
+		return this;
+	}
+}
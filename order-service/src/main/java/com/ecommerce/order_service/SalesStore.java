@@ -0,0 +1,115 @@
+package com.ecommerce.order_service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Queries the windowed sales figures built by {@link SalesStream}. Figures are keyed by
+ * product (the totals by {@link SalesStream#TOTAL}), each key lives on the instance that
+ * owns its partition of the sales repartition topic; {@link #remoteOwner} names it.
+ */
+@Component
+public class SalesStore {
+
+	private final StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+	private final HostInfo self;
+	private final Timer queryTimer;
+	private final Map<SalesStream.Granularity, ReadOnlyWindowStore<String, SalesFigures>> stores = new ConcurrentHashMap<>();
+
+	public SalesStore(StreamsBuilderFactoryBean streamsBuilderFactoryBean, MeterRegistry meterRegistry,
+			@Value("${spring.kafka.streams.properties.application.server:}") String applicationServer) {
+		this.streamsBuilderFactoryBean = streamsBuilderFactoryBean;
+		this.self = applicationServer.isBlank() ? null : HostInfo.buildFromEndpoint(applicationServer);
+		this.queryTimer = Timer.builder("order.sales.query")
+				.description("Sales store query latency")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+	}
+
+	public record SalesWindow(Instant start, Instant end, long orders, BigDecimal revenue, BigDecimal averageBasket,
+			long units, long cancelled, BigDecimal cancelledRevenue, double cancellationRate) {
+
+		static SalesWindow of(Instant start, SalesStream.Granularity granularity, SalesFigures figures) {
+			BigDecimal averageBasket = figures.getOrders() == 0 ? BigDecimal.ZERO
+					: figures.getRevenue().divide(BigDecimal.valueOf(figures.getOrders()), 2, RoundingMode.HALF_UP);
+			// Cancellations in the window against orders placed in it
+			double cancellationRate = figures.getOrders() == 0 ? 0.0
+					: (double) figures.getCancelled() / figures.getOrders();
+			return new SalesWindow(start, start.plus(granularity.getSize()), figures.getOrders(), figures.getRevenue(),
+					averageBasket, figures.getUnits(), figures.getCancelled(), figures.getCancelledRevenue(),
+					cancellationRate);
+		}
+	}
+
+	// Empty when this instance owns the key, or when there is only one instance
+	public Optional<HostInfo> remoteOwner(SalesStream.Granularity granularity, String key) {
+		KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+		if (self == null || streams == null) {
+			return Optional.empty();
+		}
+		KeyQueryMetadata metadata = streams.queryMetadataForKey(granularity.getStoreName(), key,
+				Serdes.String().serializer());
+		if (metadata == null || metadata.equals(KeyQueryMetadata.NOT_AVAILABLE) || self.equals(metadata.activeHost())) {
+			return Optional.empty();
+		}
+		return Optional.of(metadata.activeHost());
+	}
+
+	// Windows starting in [from, to], oldest first; empty while the stores are restoring or rebalancing
+	public Optional<List<SalesWindow>> figures(SalesStream.Granularity granularity, String key, Instant from, Instant to) {
+		return queryTimer.record(() -> {
+			ReadOnlyWindowStore<String, SalesFigures> current = store(granularity);
+			if (current == null) {
+				return Optional.empty();
+			}
+			List<SalesWindow> windows = new ArrayList<>();
+			try (WindowStoreIterator<SalesFigures> iterator = current.fetch(key, from, to)) {
+				while (iterator.hasNext()) {
+					KeyValue<Long, SalesFigures> entry = iterator.next();
+					windows.add(SalesWindow.of(Instant.ofEpochMilli(entry.key), granularity, entry.value));
+				}
+			} catch (InvalidStateStoreException e) {
+				stores.remove(granularity);
+				return Optional.empty();
+			}
+			return Optional.of(windows);
+		});
+	}
+
+	private ReadOnlyWindowStore<String, SalesFigures> store(SalesStream.Granularity granularity) {
+		ReadOnlyWindowStore<String, SalesFigures> store = stores.get(granularity);
+		if (store == null) {
+			KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+			if (streams == null || streams.state() != KafkaStreams.State.RUNNING) {
+				return null;
+			}
+			store = streams.store(StoreQueryParameters.fromNameAndType(granularity.getStoreName(),
+					QueryableStoreTypes.<String, SalesFigures>windowStore()));
+			stores.put(granularity, store);
+		}
+		return store;
+	}
+}
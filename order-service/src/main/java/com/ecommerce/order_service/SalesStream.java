@@ -0,0 +1,144 @@
+package com.ecommerce.order_service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KGroupedStream;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.state.WindowStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerde;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sales figures per minute, hour and day, aggregated incrementally from the orders topic
+ * into windowed RocksDB stores next to the order history (same streams application).
+ * Every CREATED event adds an order and its total to the overall figures and its items to
+ * their products; every CANCELLED event counts as a cancellation in the window it arrives
+ * in. Windows follow the record timestamp, which the producer sets when the order event is
+ * sent. Queried through {@link SalesStore}.
+ */
+@Configuration
+@Slf4j
+public class SalesStream {
+
+	// Key of the figures over all products; product ids are never empty
+	public static final String TOTAL = "";
+
+	public enum Granularity {
+		MINUTE(Duration.ofMinutes(1), "sales-minute-store"),
+		HOUR(Duration.ofHours(1), "sales-hour-store"),
+		DAY(Duration.ofDays(1), "sales-day-store");
+
+		private final Duration size;
+		private final String storeName;
+
+		Granularity(Duration size, String storeName) {
+			this.size = size;
+			this.storeName = storeName;
+		}
+
+		public Duration getSize() {
+			return size;
+		}
+
+		public String getStoreName() {
+			return storeName;
+		}
+	}
+
+	@Bean
+	public KStream<String, OrderEvent> salesFigures(@Qualifier("orderEvents") KStream<String, byte[]> orderEvents,
+			@Value("${order-sales.grace:5m}") Duration grace,
+			@Value("${order-sales.retention.minute:1d}") Duration minuteRetention,
+			@Value("${order-sales.retention.hour:31d}") Duration hourRetention,
+			@Value("${order-sales.retention.day:400d}") Duration dayRetention) {
+		JsonDeserializer<OrderEvent> eventDeserializer = new JsonDeserializer<>(OrderEvent.class).ignoreTypeHeaders();
+		JsonSerde<SalesFigures> figuresSerde = new JsonSerde<>(SalesFigures.class).ignoreTypeHeaders().noTypeInfo();
+
+		// orders is read as bytes by OrderEventRouting; events that do not parse are skipped
+		KStream<String, OrderEvent> orders = orderEvents.mapValues(value -> {
+			try {
+				return value == null ? null : eventDeserializer.deserialize(OrderEventRouting.SOURCE_TOPIC, value);
+			} catch (RuntimeException e) {
+				log.warn("Skipping order event that could not be read: {}", e.getMessage());
+				return null;
+			}
+		});
+		// Re-keyed by product, so the figures are repartitioned once and shared by all three windows
+		KGroupedStream<String, SalesFigures> grouped = orders
+				.flatMap((orderId, event) -> figures(event))
+				.groupByKey(Grouped.with("sales-figures", Serdes.String(), figuresSerde));
+
+		aggregate(grouped, Granularity.MINUTE, grace, minuteRetention, figuresSerde);
+		aggregate(grouped, Granularity.HOUR, grace, hourRetention, figuresSerde);
+		aggregate(grouped, Granularity.DAY, grace, dayRetention, figuresSerde);
+		return orders;
+	}
+
+	private static void aggregate(KGroupedStream<String, SalesFigures> figures, Granularity granularity,
+			Duration grace, Duration retention, JsonSerde<SalesFigures> serde) {
+		figures.windowedBy(TimeWindows.ofSizeAndGrace(granularity.getSize(), grace))
+				.aggregate(SalesFigures::new, (key, delta, total) -> total.add(delta),
+						Materialized.<String, SalesFigures, WindowStore<Bytes, byte[]>>as(granularity.getStoreName())
+								.withKeySerde(Serdes.String())
+								.withValueSerde(serde)
+								// A window has to outlive its grace period to accept late events
+								.withRetention(retention.compareTo(granularity.getSize().plus(grace)) > 0
+										? retention : granularity.getSize().plus(grace)));
+	}
+
+	static List<KeyValue<String, SalesFigures>> figures(OrderEvent event) {
+		List<KeyValue<String, SalesFigures>> figures = new ArrayList<>();
+		if (event == null || event.getStatus() == null) {
+			return figures;
+		}
+		boolean created = event.getStatus() == OrderEvent.OrderStatus.CREATED;
+		if (!created && event.getStatus() != OrderEvent.OrderStatus.CANCELLED) {
+			return figures;
+		}
+
+		SalesFigures total = new SalesFigures();
+		record(total, created, event.getTotalAmount(), 0);
+		figures.add(KeyValue.pair(TOTAL, total));
+		if (event.getItems() != null) {
+			for (OrderEvent.OrderItem item : event.getItems()) {
+				if (item.getProductId() == null || item.getProductId().isEmpty()) {
+					continue;
+				}
+				int quantity = item.getQuantity() == null ? 0 : item.getQuantity();
+				BigDecimal amount = item.getPrice() == null ? BigDecimal.ZERO
+						: item.getPrice().multiply(BigDecimal.valueOf(quantity));
+				SalesFigures product = new SalesFigures();
+				record(product, created, amount, quantity);
+				figures.add(KeyValue.pair(item.getProductId(), product));
+			}
+		}
+		return figures;
+	}
+
+	private static void record(SalesFigures figures, boolean created, BigDecimal amount, int quantity) {
+		BigDecimal value = amount == null ? BigDecimal.ZERO : amount;
+		if (created) {
+			figures.setOrders(1);
+			figures.setRevenue(value);
+			figures.setUnits(quantity);
+		} else {
+			figures.setCancelled(1);
+			figures.setCancelledRevenue(value);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.ecommerce.order_service;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * UUIDv7 (RFC 9562): 48 bits of Unix milliseconds, then a 12 bit counter within the
+ * millisecond and 62 random bits. Ids from one instance are strictly increasing, also
+ * when the clock steps back, and ids of all instances sort by creation time, so new
+ * orders go to the right-hand end of the primary key index instead of a random page.
+ * The random bits keep instances from colliding without assigning node ids.
+ */
+public class UuidV7Generator implements OrderIdGenerator {
+
+	private static final int MAX_COUNTER = 0xFFF;
+
+	private final SecureRandom random = new SecureRandom();
+	private final LongSupplier clock;
+	// Guarded by this
+	private long lastMillis;
+	private int counter;
+
+	public UuidV7Generator() {
+		this(System::currentTimeMillis);
+	}
+
+	// Tests drive the clock
+	UuidV7Generator(LongSupplier clock) {
+		this.clock = clock;
+	}
+
+	@Override
+	public UUID nextId() {
+		long millis;
+		int sequence;
+		synchronized (this) {
+			long now = clock.getAsLong();
+			if (now > lastMillis) {
+				lastMillis = now;
+				// Starts in the lower half so a burst has room to count up
+				counter = random.nextInt(MAX_COUNTER / 2);
+			} else if (++counter > MAX_COUNTER) {
+				// Counter used up (or the clock went back): borrow the next millisecond
+				lastMillis++;
+				counter = 0;
+			}
+			millis = lastMillis;
+			sequence = counter;
+		}
+		long mostSignificant = (millis << 16) | 0x7000L | sequence;
+		long leastSignificant = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(mostSignificant, leastSignificant);
+	}
+}
@@ -0,0 +1,93 @@
+package com.ecommerce.order_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimitTests {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+	// A zero window closes on every release once it has enough samples
+	private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 5, 100, 1.5, 0);
+
+	@Test
+	void rejectsAboveTheLimitUntilAPermitIsReleased() {
+		for (int i = 0; i < 20; i++) {
+			assertThat(limit.tryAcquire()).isTrue();
+		}
+
+		assertThat(limit.tryAcquire()).isFalse();
+		limit.release(FAST, false);
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.getInFlight()).isEqualTo(20);
+	}
+
+	@Test
+	void growsWhileLatencyHoldsAndTheLimitIsUsed() {
+		runAtLimit(FAST, 5);
+
+		assertThat(limit.getLimit()).isGreaterThan(20);
+	}
+
+	@Test
+	void doesNotGrowWhileIdle() {
+		for (int i = 0; i < 100; i++) {
+			limit.tryAcquire();
+			limit.release(FAST, false);
+		}
+
+		assertThat(limit.getLimit()).isEqualTo(20);
+	}
+
+	@Test
+	void shrinksWhenLatencyRises() {
+		runAtLimit(FAST, 5);
+		int before = limit.getLimit();
+
+		runAtLimit(SLOW, 3);
+
+		assertThat(limit.getLimit()).isLessThan(before);
+	}
+
+	@Test
+	void droppedRequestsCutTheLimit() {
+		limit.tryAcquire();
+		limit.release(FAST, true);
+
+		assertThat(limit.getLimit()).isEqualTo(18);
+	}
+
+	@Test
+	void neverDropsBelowTheMinimum() {
+		for (int i = 0; i < 50; i++) {
+			limit.tryAcquire();
+			limit.release(SLOW, true);
+		}
+
+		assertThat(limit.getLimit()).isEqualTo(5);
+	}
+
+	@Test
+	void neverGrowsAboveTheMaximum() {
+		runAtLimit(FAST, 500);
+
+		assertThat(limit.getLimit()).isEqualTo(100);
+	}
+
+	// Takes every permit, then releases them all with the given latency
+	private void runAtLimit(long rttNanos, int rounds) {
+		for (int round = 0; round < rounds; round++) {
+			int permits = 0;
+			while (limit.tryAcquire()) {
+				permits++;
+			}
+			for (int i = 0; i < permits; i++) {
+				limit.release(rttNanos, false);
+			}
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.ecommerce.order_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OrderArchiveTests {
+
+	private static final int BLOCK_SIZE = 3;
+
+	@TempDir
+	Path directory;
+
+	private OrderArchive archive;
+	private final List<UUID> ids = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() throws IOException {
+		archive = open();
+		UuidV7Generator generator = new UuidV7Generator(() -> 1_700_000_000_000L);
+		for (int i = 0; i < 21; i++) {
+			ids.add(generator.nextId());
+		}
+	}
+
+	@Test
+	void findsEveryArchivedOrderAcrossBlocks() throws IOException {
+		long archived = write(archive, "orders-202301", everyOther(0));
+
+		assertThat(archived).isEqualTo(11);
+		for (UUID id : everyOther(0)) {
+			Order order = archive.find(id.toString()).orElseThrow();
+			assertThat(order.getId()).isEqualTo(id);
+			assertThat(order.getItems()).singleElement()
+					.satisfies(item -> assertThat(item.getProductId()).isEqualTo("p-" + id));
+		}
+	}
+
+	@Test
+	void idsInsideABlockRangeThatWereNotArchivedAreNotFound() throws IOException {
+		write(archive, "orders-202301", everyOther(0));
+
+		for (UUID id : everyOther(1)) {
+			assertThat(archive.find(id.toString())).isEmpty();
+		}
+		assertThat(archive.find("not-an-order")).isEmpty();
+	}
+
+	@Test
+	void indexCountsOrdersAndVersions() throws IOException {
+		write(archive, "orders-202301", everyOther(0));
+
+		// Summed over the four blocks, every order at version 1
+		assertThat(archive.contents("orders-202301")).isEqualTo(new OrderArchive.Contents(11, 11));
+		assertThat(archive.committedAt("orders-202301")).isPresent();
+		assertThat(archive.committedAt("orders-202302")).isEmpty();
+	}
+
+	@Test
+	void segmentsAreSearchedNewestFirstAndAllOfThemAreUsed() throws IOException {
+		write(archive, "orders-202301", ids.subList(0, 10));
+		write(archive, "orders-202302", ids.subList(10, 21));
+
+		assertThat(archive.find(ids.get(3).toString())).isPresent();
+		assertThat(archive.find(ids.get(15).toString())).isPresent();
+	}
+
+	@Test
+	void otherInstancesSeeSegmentsAfterARescan() throws IOException {
+		OrderArchive other = open();
+		write(archive, "orders-202301", everyOther(0));
+
+		assertThat(other.find(ids.get(0).toString())).isEmpty();
+		other.refresh();
+		assertThat(other.find(ids.get(0).toString())).isPresent();
+
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.toList()) {
+				Files.delete(file);
+			}
+		}
+		other.refresh();
+		assertThat(other.find(ids.get(0).toString())).isEmpty();
+	}
+
+	@Test
+	void ordersHaveToBeAppendedInIdOrder() throws IOException {
+		try (OrderArchive.SegmentWriter writer = archive.openSegment("orders-202301")) {
+			writer.append(order(ids.get(1)));
+
+			assertThatThrownBy(() -> writer.append(order(ids.get(0))))
+					.isInstanceOf(IllegalArgumentException.class);
+		}
+	}
+
+	@Test
+	void segmentClosedWithoutCommitLeavesNothingBehind() throws IOException {
+		try (OrderArchive.SegmentWriter writer = archive.openSegment("orders-202301")) {
+			writer.append(order(ids.get(0)));
+		}
+
+		try (Stream<Path> files = Files.list(directory)) {
+			assertThat(files).isEmpty();
+		}
+		assertThat(archive.find(ids.get(0).toString())).isEmpty();
+	}
+
+	private OrderArchive open() throws IOException {
+		OrderArchive opened = new OrderArchive(directory.toString(), BLOCK_SIZE);
+		opened.open();
+		return opened;
+	}
+
+	private List<UUID> everyOther(int start) {
+		List<UUID> selected = new ArrayList<>();
+		for (int i = start; i < ids.size(); i += 2) {
+			selected.add(ids.get(i));
+		}
+		return selected;
+	}
+
+	private static long write(OrderArchive archive, String segment, List<UUID> orderIds) throws IOException {
+		try (OrderArchive.SegmentWriter writer = archive.openSegment(segment)) {
+			for (UUID id : orderIds) {
+				writer.append(order(id));
+			}
+			return writer.commit();
+		}
+	}
+
+	private static Order order(UUID id) {
+		Order order = new Order();
+		order.setId(id);
+		order.setUserId("user-1");
+		order.setStatus(OrderEvent.OrderStatus.DELIVERED);
+		order.setTotalAmount(new BigDecimal("19.99"));
+		order.setVersion(1L);
+		Order.OrderItem item = new Order.OrderItem();
+		item.setItemId(1L);
+		item.setProductId("p-" + id);
+		item.setQuantity(1);
+		item.setPrice(new BigDecimal("19.99"));
+		order.getItems().add(item);
+		return order;
+	}
+}
@@ -0,0 +1,110 @@
+package com.ecommerce.order_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Properties;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OrderEventRoutingTests {
+
+	private static final Instant SENT = Instant.parse("2024-05-01T12:00:00Z");
+
+	private TopologyTestDriver driver;
+	private TestInputTopic<String, byte[]> orders;
+	private TestOutputTopic<String, byte[]> userOrders;
+
+	@BeforeEach
+	void setUp() {
+		StreamsBuilder builder = new StreamsBuilder();
+		new OrderEventRouting(true).orderEvents(builder);
+		Properties properties = new Properties();
+		properties.put(StreamsConfig.APPLICATION_ID_CONFIG, "order-event-routing-test");
+		properties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+		driver = new TopologyTestDriver(builder.build(), properties);
+		orders = driver.createInputTopic(OrderEventRouting.SOURCE_TOPIC, new StringSerializer(),
+				new ByteArraySerializer());
+		userOrders = driver.createOutputTopic(OrderEventRouting.USER_ORDERS_TOPIC, new StringDeserializer(),
+				new ByteArrayDeserializer());
+	}
+
+	@AfterEach
+	void tearDown() {
+		driver.close();
+	}
+
+	@Test
+	void eventWithUserIdIsReKeyedByUserAndCopiedUnchanged() {
+		byte[] payload = "{\"orderId\":\"order-1\",\"status\":\"CREATED\"}".getBytes(StandardCharsets.UTF_8);
+		RecordHeaders headers = new RecordHeaders();
+		headers.add(header(OrderEventRouting.USER_ID_HEADER, "alice"));
+		headers.add(header("correlation-id", "c1"));
+
+		orders.pipeInput(new TestRecord<>("order-1", payload, headers, SENT));
+
+		TestRecord<String, byte[]> routed = userOrders.readRecord();
+		assertThat(routed.key()).isEqualTo("alice");
+		assertThat(routed.value()).isEqualTo(payload);
+		assertThat(routed.getRecordTime()).isEqualTo(SENT);
+		assertThat(value(routed.headers().lastHeader(OrderEventRouting.USER_ID_HEADER))).isEqualTo("alice");
+		assertThat(value(routed.headers().lastHeader("correlation-id"))).isEqualTo("c1");
+		assertThat(userOrders.isEmpty()).isTrue();
+	}
+
+	@Test
+	void eventsOfOneUserKeepTheirOrder() {
+		for (String status : new String[] { "CREATED", "INVENTORY_RESERVED", "CANCELLED" }) {
+			RecordHeaders headers = new RecordHeaders();
+			headers.add(header(OrderEventRouting.USER_ID_HEADER, "alice"));
+			orders.pipeInput(new TestRecord<>("order-1", status.getBytes(StandardCharsets.UTF_8), headers, SENT));
+		}
+
+		assertThat(userOrders.readValuesToList()).extracting(value -> new String(value, StandardCharsets.UTF_8))
+				.containsExactly("CREATED", "INVENTORY_RESERVED", "CANCELLED");
+	}
+
+	// Sent to user-orders directly by an older version or with derive-user-orders off
+	@Test
+	void eventWithoutUserIdIsNotCopied() {
+		orders.pipeInput(new TestRecord<>("order-1", "{}".getBytes(StandardCharsets.UTF_8), new RecordHeaders(), SENT));
+
+		assertThat(userOrders.isEmpty()).isTrue();
+	}
+
+	@Test
+	void tombstonesAndEmptyUserIdsAreNotCopied() {
+		RecordHeaders tombstone = new RecordHeaders();
+		tombstone.add(header(OrderEventRouting.USER_ID_HEADER, "alice"));
+		orders.pipeInput(new TestRecord<>("order-1", null, tombstone, SENT));
+		RecordHeaders noUser = new RecordHeaders();
+		noUser.add(new RecordHeader(OrderEventRouting.USER_ID_HEADER, null));
+		orders.pipeInput(new TestRecord<>("order-2", "{}".getBytes(StandardCharsets.UTF_8), noUser, SENT));
+
+		assertThat(userOrders.isEmpty()).isTrue();
+	}
+
+	private static Header header(String key, String value) {
+		return new RecordHeader(key, value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String value(Header header) {
+		return new String(header.value(), StandardCharsets.UTF_8);
+	}
+}
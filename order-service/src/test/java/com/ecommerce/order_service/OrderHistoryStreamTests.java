@@ -0,0 +1,51 @@
+package com.ecommerce.order_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+class OrderHistoryStreamTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+	@Test
+	void higherVersionWins() {
+		assertThat(OrderHistoryStream.isNewer(event(2L, NOW.minusMinutes(1)), event(1L, NOW))).isTrue();
+		assertThat(OrderHistoryStream.isNewer(event(1L, NOW), event(2L, NOW.minusMinutes(1)))).isFalse();
+	}
+
+	@Test
+	void sameVersionIsRedeliveredAndReplacesTheStoredEvent() {
+		assertThat(OrderHistoryStream.isNewer(event(3L, NOW), event(3L, NOW))).isTrue();
+	}
+
+	@Test
+	void versionedEventsBeatUnversionedOnes() {
+		assertThat(OrderHistoryStream.isNewer(event(0L, NOW.minusDays(1)), event(null, NOW))).isTrue();
+		assertThat(OrderHistoryStream.isNewer(event(null, NOW), event(0L, NOW.minusDays(1)))).isFalse();
+	}
+
+	@Test
+	void eventsFromBeforeVersioningAreOrderedByTimestamp() {
+		assertThat(OrderHistoryStream.isNewer(event(null, NOW), event(null, NOW.minusSeconds(1)))).isTrue();
+		assertThat(OrderHistoryStream.isNewer(event(null, NOW), event(null, NOW))).isTrue();
+		assertThat(OrderHistoryStream.isNewer(event(null, NOW.minusSeconds(1)), event(null, NOW))).isFalse();
+	}
+
+	@Test
+	void missingTimestampsOnUnversionedEvents() {
+		assertThat(OrderHistoryStream.isNewer(event(null, NOW), event(null, null))).isTrue();
+		assertThat(OrderHistoryStream.isNewer(event(null, null), event(null, null))).isTrue();
+		assertThat(OrderHistoryStream.isNewer(event(null, null), event(null, NOW))).isFalse();
+	}
+
+	private static OrderEvent event(Long version, LocalDateTime timestamp) {
+		OrderEvent event = new OrderEvent();
+		event.setOrderId("order-1");
+		event.setVersion(version);
+		event.setTimestamp(timestamp);
+		return event;
+	}
+}
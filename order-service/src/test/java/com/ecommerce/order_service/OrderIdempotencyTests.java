@@ -0,0 +1,252 @@
+package com.ecommerce.order_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The claim, take-over and complete statements against PostgreSQL. Every
+ * {@link OrderIdempotency} built here stands for another instance: it shares the table but
+ * not the in-memory state.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class OrderIdempotencyTests {
+
+	private static final long TTL_MS = 60_000;
+	private static final long LEASE_MS = 30_000;
+	private static final long WAIT_MS = 300;
+
+	@Container
+	static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+	private static DataSource dataSource;
+	private static JdbcTemplate jdbcTemplate;
+
+	private final OrderService orderService = mock(OrderService.class);
+	private final IdempotencyKeyRepository repository = mock(IdempotencyKeyRepository.class);
+
+	@BeforeAll
+	static void createTable() {
+		dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		// As ddl-auto creates it from IdempotencyKey
+		jdbcTemplate.execute("CREATE TABLE order_idempotency_keys (id varchar(255) PRIMARY KEY, "
+				+ "claim_token varchar(255), request_hash varchar(255), order_id varchar(255), response text, "
+				+ "completed boolean NOT NULL, locked_until timestamp(6), expires_at timestamp(6), created_at timestamp(6))");
+	}
+
+	@BeforeEach
+	void setUp() {
+		jdbcTemplate.execute("TRUNCATE order_idempotency_keys");
+		when(repository.findById(anyString())).thenAnswer(invocation -> claim(invocation.getArgument(0)));
+		when(orderService.createOrder(any(), any())).thenAnswer(invocation -> order());
+	}
+
+	@Test
+	void createsOnceAndReplaysOnOtherInstances() {
+		Order created = instance(LEASE_MS, TTL_MS).createOrder("k1", "alice", request("p1"), "c1");
+
+		Order replayed = instance(LEASE_MS, TTL_MS).createOrder("k1", "alice", request("p1"), "c2");
+
+		assertThat(replayed.getId()).isEqualTo(created.getId());
+		verify(orderService, times(1)).createOrder(any(), any());
+		IdempotencyKey claim = claim("alice:k1").orElseThrow();
+		assertThat(claim.isCompleted()).isTrue();
+		assertThat(claim.getOrderId()).isEqualTo(created.getId().toString());
+	}
+
+	@Test
+	void keyReusedForADifferentRequestIsRejected() {
+		instance(LEASE_MS, TTL_MS).createOrder("k1", "alice", request("p1"), "c1");
+
+		IdempotencyKeyException e = catchThrowableOfType(IdempotencyKeyException.class,
+				() -> instance(LEASE_MS, TTL_MS).createOrder("k1", "alice", request("p2"), "c2"));
+
+		assertThat(e.getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
+	@Test
+	void keysAreScopedToTheUser() {
+		Order alice = instance(LEASE_MS, TTL_MS).createOrder("k1", "alice", request("p1"), "c1");
+		Order bob = instance(LEASE_MS, TTL_MS).createOrder("k1", "bob", request("p1"), "c2");
+
+		assertThat(bob.getId()).isNotEqualTo(alice.getId());
+	}
+
+	@Test
+	void claimHeldByAnotherInstanceIsWaitedForThenReplayed() throws Exception {
+		CountDownLatch claimed = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		blockCreation("slow", claimed, proceed);
+		OrderIdempotency other = instance(LEASE_MS, TTL_MS);
+
+		CompletableFuture<Order> slow = CompletableFuture.supplyAsync(
+				() -> instance(LEASE_MS, TTL_MS).createOrder("k1", "alice", request("p1"), "slow"));
+		assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+
+		IdempotencyKeyException e = catchThrowableOfType(IdempotencyKeyException.class,
+				() -> other.createOrder("k1", "alice", request("p1"), "c2"));
+		assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT);
+		assertThat(e.getRetryAfterSeconds()).isEqualTo(1);
+
+		proceed.countDown();
+		Order created = slow.get(10, TimeUnit.SECONDS);
+		assertThat(other.createOrder("k1", "alice", request("p1"), "c3").getId()).isEqualTo(created.getId());
+		verify(orderService, times(1)).createOrder(any(), any());
+	}
+
+	@Test
+	void expiredLeaseIsTakenOverAndTheSlowOwnerIsFencedOut() throws Exception {
+		CountDownLatch claimed = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		blockCreation("slow", claimed, proceed);
+
+		CompletableFuture<Order> slow = CompletableFuture.supplyAsync(
+				() -> instance(200, TTL_MS).createOrder("k1", "alice", request("p1"), "slow"));
+		assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+		String slowToken = claim("alice:k1").orElseThrow().getClaimToken();
+		Thread.sleep(400);
+
+		Order takenOver = instance(200, TTL_MS).createOrder("k1", "alice", request("p1"), "c2");
+		proceed.countDown();
+
+		// The slow owner's completion matches no row, its order rolls back and the claim stays
+		ExecutionException e = catchThrowableOfType(ExecutionException.class, () -> slow.get(10, TimeUnit.SECONDS));
+		assertThat(e.getCause()).isInstanceOfSatisfying(IdempotencyKeyException.class,
+				conflict -> assertThat(conflict.getStatus()).isEqualTo(HttpStatus.CONFLICT));
+		IdempotencyKey claim = claim("alice:k1").orElseThrow();
+		assertThat(claim.getClaimToken()).isNotEqualTo(slowToken);
+		assertThat(claim.isCompleted()).isTrue();
+		assertThat(claim.getOrderId()).isEqualTo(takenOver.getId().toString());
+	}
+
+	@Test
+	void failedCreationReleasesTheClaim() {
+		when(orderService.createOrder(any(), any()))
+				.thenThrow(new IllegalStateException("inventory down"))
+				.thenAnswer(invocation -> order());
+		OrderIdempotency idempotency = instance(LEASE_MS, TTL_MS);
+
+		catchThrowableOfType(IllegalStateException.class,
+				() -> idempotency.createOrder("k1", "alice", request("p1"), "c1"));
+		assertThat(claim("alice:k1")).isEmpty();
+
+		// No lease to wait out
+		assertThat(instance(LEASE_MS, TTL_MS).createOrder("k1", "alice", request("p1"), "c2")).isNotNull();
+	}
+
+	@Test
+	void expiredResponseIsTakenOverByANewRequest() throws InterruptedException {
+		Order first = instance(LEASE_MS, 200).createOrder("k1", "alice", request("p1"), "c1");
+		Thread.sleep(400);
+
+		Order second = instance(LEASE_MS, 200).createOrder("k1", "alice", request("p2"), "c2");
+
+		assertThat(second.getId()).isNotEqualTo(first.getId());
+		assertThat(claim("alice:k1").orElseThrow().getOrderId()).isEqualTo(second.getId().toString());
+	}
+
+	@Test
+	void concurrentRequestsOnOneInstanceShareOneCreation() throws Exception {
+		CountDownLatch claimed = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		blockCreation("first", claimed, proceed);
+		OrderIdempotency idempotency = instance(LEASE_MS, TTL_MS);
+
+		CompletableFuture<Order> first = CompletableFuture.supplyAsync(
+				() -> idempotency.createOrder("k1", "alice", request("p1"), "first"));
+		assertThat(claimed.await(10, TimeUnit.SECONDS)).isTrue();
+		CompletableFuture<Order> second = CompletableFuture.supplyAsync(
+				() -> idempotency.createOrder("k1", "alice", request("p1"), "second"));
+		Thread.sleep(100);
+		proceed.countDown();
+
+		assertThat(second.get(10, TimeUnit.SECONDS).getId()).isEqualTo(first.get(10, TimeUnit.SECONDS).getId());
+		verify(orderService, times(1)).createOrder(any(), any());
+	}
+
+	@Test
+	void malformedKeysAreRejected() {
+		OrderIdempotency idempotency = instance(LEASE_MS, TTL_MS);
+
+		assertThat(catchThrowableOfType(IdempotencyKeyException.class,
+				() -> idempotency.createOrder(" ", "alice", request("p1"), "c1")).getStatus())
+				.isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(catchThrowableOfType(IdempotencyKeyException.class,
+				() -> idempotency.createOrder("k".repeat(201), "alice", request("p1"), "c1")).getStatus())
+				.isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	private OrderIdempotency instance(long leaseMs, long ttlMs) {
+		return new OrderIdempotency(orderService, repository, jdbcTemplate,
+				new TransactionTemplate(new DataSourceTransactionManager(dataSource)), new SimpleMeterRegistry(),
+				ttlMs, leaseMs, WAIT_MS, 100);
+	}
+
+	// Creation for this correlation id signals once it holds the claim and waits to be let through
+	private void blockCreation(String correlationId, CountDownLatch claimed, CountDownLatch proceed) {
+		when(orderService.createOrder(any(), any())).thenAnswer(invocation -> {
+			if (correlationId.equals(invocation.getArgument(1))) {
+				claimed.countDown();
+				assertThat(proceed.await(10, TimeUnit.SECONDS)).isTrue();
+			}
+			return order();
+		});
+	}
+
+	private static Optional<IdempotencyKey> claim(String id) {
+		List<IdempotencyKey> claims = jdbcTemplate.query("SELECT * FROM order_idempotency_keys WHERE id = ?",
+				new BeanPropertyRowMapper<>(IdempotencyKey.class), id);
+		return claims.stream().findFirst();
+	}
+
+	private static Order order() {
+		Order order = new Order();
+		order.setId(UUID.randomUUID());
+		order.setUserId("alice");
+		order.setStatus(OrderEvent.OrderStatus.CREATED);
+		order.setVersion(0L);
+		return order;
+	}
+
+	private static OrderService.OrderRequest request(String productId) {
+		OrderService.OrderRequest.OrderItemRequest item = new OrderService.OrderRequest.OrderItemRequest();
+		item.setProductId(productId);
+		item.setQuantity(1);
+		OrderService.OrderRequest request = new OrderService.OrderRequest();
+		request.setUserId("alice");
+		request.setItems(List.of(item));
+		request.setShippingAddress("1 Main St");
+		return request;
+	}
+}
@@ -0,0 +1,243 @@
+package com.ecommerce.order_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.MountableFile;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Routing against a real primary and a streaming replica set up the way docker-compose does
+ * (init-replication.sh, pg_basebackup -R), plus a replica node that is down.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ReadReplicaRoutingTests {
+
+	private static final String IMAGE = "postgres:15-alpine";
+	private static final long MAX_LAG_MS = 500;
+	private static final long PIN_AFTER_WRITE_MS = 1000;
+	private static final Network NETWORK = Network.newNetwork();
+
+	@Container
+	static final PostgreSQLContainer<?> PRIMARY = new PostgreSQLContainer<>(IMAGE)
+			.withNetwork(NETWORK)
+			.withNetworkAliases("postgres")
+			.withCopyFileToContainer(MountableFile.forHostPath("../init-replication.sh"),
+					"/docker-entrypoint-initdb.d/init-replication.sh");
+
+	@Container
+	static final GenericContainer<?> REPLICA = new GenericContainer<>(IMAGE)
+			.dependsOn(PRIMARY)
+			.withNetwork(NETWORK)
+			.withEnv("PGPASSWORD", "test")
+			.withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres"))
+			.withCommand("sh", "-c", "until pg_basebackup -h postgres -U test -D /var/lib/postgresql/data -R -X stream; "
+					+ "do sleep 1; done; chmod 700 /var/lib/postgresql/data; exec postgres")
+			.withExposedPorts(5432)
+			.waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*\\n", 1));
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private ReadReplicaRouting routing;
+	private HikariDataSource primaryDataSource;
+	private JdbcTemplate jdbcTemplate;
+	private JdbcTemplate replicaAdmin;
+	private TransactionTemplate readOnly;
+	private TransactionTemplate readWrite;
+
+	@BeforeEach
+	void setUp() {
+		ReadReplicaProperties properties = new ReadReplicaProperties();
+		properties.setEnabled(true);
+		properties.setMaxLagMs(MAX_LAG_MS);
+		properties.setPinAfterWriteMs(PIN_AFTER_WRITE_MS);
+		// The node that is down comes first, the check has to get past it
+		properties.setNodes(List.of(node("replica-down", "jdbc:postgresql://localhost:1/test"),
+				node("replica-1", replicaUrl())));
+		DataSourceProperties dataSourceProperties = new DataSourceProperties();
+		dataSourceProperties.setUrl(PRIMARY.getJdbcUrl());
+		dataSourceProperties.setUsername(PRIMARY.getUsername());
+		dataSourceProperties.setPassword(PRIMARY.getPassword());
+
+		routing = new ReadReplicaRouting(properties, meterRegistry);
+		ReadReplicaDataSourceConfig config = new ReadReplicaDataSourceConfig();
+		primaryDataSource = config.primaryDataSource(dataSourceProperties);
+		DataSource dataSource = config.dataSource(primaryDataSource, dataSourceProperties, properties, routing);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		replicaAdmin = new JdbcTemplate(new DriverManagerDataSource(replicaUrl(), PRIMARY.getUsername(),
+				PRIMARY.getPassword()));
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		readWrite = new TransactionTemplate(transactionManager);
+
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS replication_check (id serial PRIMARY KEY)");
+		// A fresh standby reports no lag until it has replayed a transaction
+		await(() -> {
+			routing.checkLag();
+			return replicaRead();
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+		routing.close();
+		primaryDataSource.close();
+	}
+
+	@Test
+	void replicaEligibleReadsGoToTheHealthyReplica() {
+		double before = reads("replica");
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(replicaRead()).isTrue();
+		}
+
+		assertThat(reads("replica") - before).isEqualTo(10);
+		assertThat(meterRegistry.get("order.db.replica.lag").tag("replica", "replica-down").gauge().value())
+				.isEqualTo(-1);
+	}
+
+	@Test
+	void writesAndOtherReadsStayOnThePrimary() {
+		assertThat(readOnly.execute(status -> inRecovery())).isFalse();
+		assertThat(routing.replicaRead(() -> readWrite.execute(status -> inRecovery()))).isFalse();
+		assertThat(inRecovery()).isFalse();
+	}
+
+	@Test
+	void replicaServesWhatWasWrittenToThePrimary() {
+		long id = write();
+
+		await(() -> routing.replicaRead(() -> readOnly.execute(status -> jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM replication_check WHERE id = ?", Long.class, id))) == 1);
+	}
+
+	@Test
+	void laggingReplicaIsSkippedUntilItCatchesUp() throws InterruptedException {
+		replicaAdmin.execute("SELECT pg_wal_replay_pause()");
+		try {
+			// Lag is measured from the last replayed commit, make that old enough
+			Thread.sleep(2 * MAX_LAG_MS);
+			write();
+			double before = reads("fallback");
+
+			await(() -> {
+				routing.checkLag();
+				return !replicaRead();
+			});
+
+			assertThat(reads("fallback")).isGreaterThan(before);
+			assertThat(meterRegistry.get("order.db.replica.lag").tag("replica", "replica-1").gauge().value())
+					.isGreaterThan(MAX_LAG_MS);
+		} finally {
+			replicaAdmin.execute("SELECT pg_wal_replay_resume()");
+		}
+
+		await(() -> {
+			routing.checkLag();
+			return replicaRead();
+		});
+	}
+
+	@Test
+	void userWhoJustWroteReadsTheirWritesFromThePrimary() throws InterruptedException {
+		double before = reads("pinned");
+		routing.wrote("alice");
+
+		assertThat(as("alice", this::replicaRead)).isFalse();
+		assertThat(as("bob", this::replicaRead)).isTrue();
+		assertThat(reads("pinned") - before).isEqualTo(1);
+
+		Thread.sleep(PIN_AFTER_WRITE_MS + 200);
+		assertThat(as("alice", this::replicaRead)).isTrue();
+	}
+
+	@Test
+	void callerWhoWroteForSomeoneElseIsPinnedToo() {
+		as("admin", () -> {
+			routing.wrote("alice");
+			return null;
+		});
+
+		assertThat(as("admin", this::replicaRead)).isFalse();
+		assertThat(as("alice", this::replicaRead)).isFalse();
+	}
+
+	// True when the read ran on the standby
+	private boolean replicaRead() {
+		return routing.replicaRead(() -> readOnly.execute(status -> inRecovery()));
+	}
+
+	private boolean inRecovery() {
+		return jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class);
+	}
+
+	private long write() {
+		return jdbcTemplate.queryForObject("INSERT INTO replication_check DEFAULT VALUES RETURNING id", Long.class);
+	}
+
+	private double reads(String target) {
+		return meterRegistry.get("order.db.replica.reads").tag("target", target).counter().count();
+	}
+
+	private static <T> T as(String user, Supplier<T> action) {
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(user, null, List.of()));
+		try {
+			return action.get();
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 30_000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new AssertionError("Condition not met within 30 s");
+			}
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AssertionError("Interrupted", e);
+			}
+		}
+	}
+
+	private static String replicaUrl() {
+		return "jdbc:postgresql://" + REPLICA.getHost() + ":" + REPLICA.getMappedPort(5432) + "/test";
+	}
+
+	private static ReadReplicaProperties.Node node(String name, String url) {
+		ReadReplicaProperties.Node node = new ReadReplicaProperties.Node();
+		node.setName(name);
+		node.setUrl(url);
+		return node;
+	}
+}
@@ -0,0 +1,109 @@
+package com.ecommerce.order_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.streams.KeyValue;
+import org.junit.jupiter.api.Test;
+
+class SalesStreamTests {
+
+	@Test
+	void createdOrderCountsTowardsTheTotalAndEachProduct() {
+		Map<String, SalesFigures> figures = figures(event(OrderEvent.OrderStatus.CREATED,
+				item("p1", 2, "10.00"), item("p2", 1, "5.50")));
+
+		assertThat(figures).containsOnlyKeys(SalesStream.TOTAL, "p1", "p2");
+		SalesFigures total = figures.get(SalesStream.TOTAL);
+		assertThat(total.getOrders()).isEqualTo(1);
+		assertThat(total.getRevenue()).isEqualByComparingTo("25.50");
+		// Units are counted per product only
+		assertThat(total.getUnits()).isZero();
+		assertThat(figures.get("p1").getUnits()).isEqualTo(2);
+		assertThat(figures.get("p1").getRevenue()).isEqualByComparingTo("20.00");
+		assertThat(figures.get("p2").getRevenue()).isEqualByComparingTo("5.50");
+		assertThat(figures.values()).allSatisfy(product -> assertThat(product.getCancelled()).isZero());
+	}
+
+	@Test
+	void cancelledOrderCountsAsCancellation() {
+		Map<String, SalesFigures> figures = figures(event(OrderEvent.OrderStatus.CANCELLED, item("p1", 2, "10.00")));
+
+		SalesFigures total = figures.get(SalesStream.TOTAL);
+		assertThat(total.getOrders()).isZero();
+		assertThat(total.getCancelled()).isEqualTo(1);
+		assertThat(total.getCancelledRevenue()).isEqualByComparingTo("25.50");
+		assertThat(figures.get("p1").getCancelled()).isEqualTo(1);
+		assertThat(figures.get("p1").getCancelledRevenue()).isEqualByComparingTo("20.00");
+		assertThat(figures.get("p1").getUnits()).isZero();
+	}
+
+	@Test
+	void otherStatusesAndUnreadableEventsAreSkipped() {
+		assertThat(SalesStream.figures(event(OrderEvent.OrderStatus.SHIPPED, item("p1", 1, "1.00")))).isEmpty();
+		assertThat(SalesStream.figures(event(null))).isEmpty();
+		assertThat(SalesStream.figures(null)).isEmpty();
+	}
+
+	@Test
+	void itemsWithoutProductAreLeftOutAndMissingNumbersCountAsZero() {
+		OrderEvent event = event(OrderEvent.OrderStatus.CREATED, item(null, 1, "1.00"), item("", 1, "1.00"),
+				item("p1", null, "3.00"), item("p2", 2, null));
+		event.setTotalAmount(null);
+
+		Map<String, SalesFigures> figures = figures(event);
+
+		assertThat(figures).containsOnlyKeys(SalesStream.TOTAL, "p1", "p2");
+		assertThat(figures.get(SalesStream.TOTAL).getRevenue()).isEqualByComparingTo("0");
+		assertThat(figures.get("p1").getUnits()).isZero();
+		assertThat(figures.get("p1").getRevenue()).isEqualByComparingTo("0");
+		assertThat(figures.get("p2").getUnits()).isEqualTo(2);
+		assertThat(figures.get("p2").getRevenue()).isEqualByComparingTo("0");
+	}
+
+	@Test
+	void orderWithoutItemsOnlyCountsTowardsTheTotal() {
+		OrderEvent event = event(OrderEvent.OrderStatus.CREATED);
+		event.setItems(null);
+
+		assertThat(figures(event)).containsOnlyKeys(SalesStream.TOTAL);
+	}
+
+	@Test
+	void figuresAddUp() {
+		SalesFigures sum = new SalesFigures();
+		for (KeyValue<String, SalesFigures> figure : SalesStream.figures(event(OrderEvent.OrderStatus.CREATED))) {
+			sum.add(figure.value);
+		}
+		for (KeyValue<String, SalesFigures> figure : SalesStream.figures(event(OrderEvent.OrderStatus.CANCELLED))) {
+			sum.add(figure.value);
+		}
+
+		assertThat(sum.getOrders()).isEqualTo(1);
+		assertThat(sum.getCancelled()).isEqualTo(1);
+		assertThat(sum.getRevenue()).isEqualByComparingTo(sum.getCancelledRevenue());
+	}
+
+	private static Map<String, SalesFigures> figures(OrderEvent event) {
+		List<KeyValue<String, SalesFigures>> figures = SalesStream.figures(event);
+		return figures.stream().collect(Collectors.toMap(figure -> figure.key, figure -> figure.value));
+	}
+
+	private static OrderEvent event(OrderEvent.OrderStatus status, OrderEvent.OrderItem... items) {
+		OrderEvent event = new OrderEvent();
+		event.setOrderId("order-1");
+		event.setStatus(status);
+		event.setTotalAmount(new BigDecimal("25.50"));
+		event.setItems(List.of(items));
+		return event;
+	}
+
+	private static OrderEvent.OrderItem item(String productId, Integer quantity, String price) {
+		return new OrderEvent.OrderItem(productId, "Product " + productId, quantity,
+				price == null ? null : new BigDecimal(price));
+	}
+}
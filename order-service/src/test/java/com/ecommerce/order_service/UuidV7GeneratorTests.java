@@ -0,0 +1,82 @@
+package com.ecommerce.order_service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class UuidV7GeneratorTests {
+
+	private static final long NOW = 1_700_000_000_000L;
+
+	private final AtomicLong clock = new AtomicLong(NOW);
+	private final UuidV7Generator generator = new UuidV7Generator(clock::get);
+
+	@Test
+	void idsCarryVersionVariantAndTimestamp() {
+		UUID id = generator.nextId();
+
+		assertThat(id.version()).isEqualTo(7);
+		assertThat(id.variant()).isEqualTo(2);
+		assertThat(millis(id)).isEqualTo(NOW);
+	}
+
+	@Test
+	void idsIncreaseWithinAMillisecond() {
+		List<String> ids = generate(1000);
+
+		assertThat(ids).isSorted().doesNotHaveDuplicates();
+		assertThat(ids).allSatisfy(id -> assertThat(millis(UUID.fromString(id))).isEqualTo(NOW));
+	}
+
+	@Test
+	void exhaustedCounterBorrowsTheNextMillisecond() {
+		// A millisecond holds at most 0x1000 ids, the clock does not move
+		List<String> ids = generate(0x1001);
+
+		assertThat(ids).isSorted().doesNotHaveDuplicates();
+		assertThat(millis(UUID.fromString(ids.get(ids.size() - 1)))).isEqualTo(NOW + 1);
+	}
+
+	@Test
+	void idsKeepIncreasingWhenTheClockStepsBack() {
+		UUID before = generator.nextId();
+		clock.set(NOW - 5_000);
+
+		UUID after = generator.nextId();
+
+		assertThat(after.toString()).isGreaterThan(before.toString());
+		assertThat(millis(after)).isEqualTo(NOW);
+	}
+
+	@Test
+	void newMillisecondRestartsTheCounter() {
+		generate(0x900);
+		clock.set(NOW + 10);
+
+		UUID id = generator.nextId();
+
+		assertThat(millis(id)).isEqualTo(NOW + 10);
+		assertThat(counter(id)).isLessThan(0x800);
+	}
+
+	private List<String> generate(int count) {
+		List<String> ids = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ids.add(generator.nextId().toString());
+		}
+		return ids;
+	}
+
+	private static long millis(UUID id) {
+		return id.getMostSignificantBits() >>> 16;
+	}
+
+	private static int counter(UUID id) {
+		return (int) (id.getMostSignificantBits() & 0xFFF);
+	}
+}